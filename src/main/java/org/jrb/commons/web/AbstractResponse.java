@@ -22,6 +22,7 @@
  */
 package org.jrb.commons.web;
 
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
@@ -33,7 +34,8 @@ import com.fasterxml.jackson.annotation.JsonIgnore;
 
 /**
  * Base RESTFUL resource that supports application identification and status
- * within the response headers.
+ * within the response headers. The standard headers are held in typed fields,
+ * and a map is only allocated for any additional header.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
@@ -45,77 +47,139 @@ public abstract class AbstractResponse extends ResourceSupport implements Respon
 	public final static String HEADER_STATUS = "x-status";
 	public final static String HEADER_VERSION = "x-version";
 
+	private final static long UNSET = -1;
+
 	@JsonIgnore
-	private final Map<String, Object> headers = new HashMap<>();
+	private Map<String, Object> headers;
+
+	private long elapsedTime = UNSET;
+	private String product;
+	private long startNanos;
+	private long startTime = UNSET;
+	private HttpStatus status;
+	private String version;
 
 	@Override
 	public void addHeader(final String key, final Object value) {
-		headers.put(key, value);
+		switch (key) {
+		case HEADER_ELAPSED_TIME:
+			setElapsedTime((Long) value);
+			break;
+		case HEADER_PRODUCT:
+			setProduct((String) value);
+			break;
+		case HEADER_START_TIME:
+			setStartTime((Date) value);
+			break;
+		case HEADER_STATUS:
+			setStatus((HttpStatus) value);
+			break;
+		case HEADER_VERSION:
+			setVersion((String) value);
+			break;
+		default:
+			if (headers == null) {
+				headers = new HashMap<>();
+			}
+			headers.put(key, value);
+		}
 	}
 
 	@Override
 	public <T> T getHeader(final String key, final Class<T> headerClass) {
-		return headerClass.cast(headers.get(key));
+		switch (key) {
+		case HEADER_ELAPSED_TIME:
+			return headerClass.cast(getElapsedTime());
+		case HEADER_PRODUCT:
+			return headerClass.cast(getProduct());
+		case HEADER_START_TIME:
+			return headerClass.cast(getStartTime());
+		case HEADER_STATUS:
+			return headerClass.cast(getStatus());
+		case HEADER_VERSION:
+			return headerClass.cast(getVersion());
+		default:
+			return (headers != null) ? headerClass.cast(headers.get(key)) : null;
+		}
 	}
 
 	@Override
+	@JsonIgnore
 	public Map<String, Object> getHeaders() {
-		return headers;
+		return (headers != null) ? headers : Collections.<String, Object> emptyMap();
 	}
 
 	@Override
 	@JsonIgnore
 	public Long getElapsedTime() {
-		return getHeader(HEADER_ELAPSED_TIME, Long.class);
+		return (elapsedTime != UNSET) ? elapsedTime : null;
 	}
 
 	@Override
 	@JsonIgnore
 	public String getProduct() {
-		return getHeader(HEADER_PRODUCT, String.class);
+		return product;
+	}
+
+	@Override
+	@JsonIgnore
+	public long getStartMillis() {
+		return startTime;
+	}
+
+	@Override
+	@JsonIgnore
+	public long getStartNanos() {
+		return startNanos;
 	}
 
 	@Override
 	@JsonIgnore
 	public Date getStartTime() {
-		return getHeader(HEADER_START_TIME, Date.class);
+		return (startTime != UNSET) ? new Date(startTime) : null;
 	}
 
 	@Override
 	@JsonIgnore
 	public HttpStatus getStatus() {
-		return getHeader(HEADER_STATUS, HttpStatus.class);
+		return status;
 	}
 
 	@Override
 	@JsonIgnore
 	public String getVersion() {
-		return getHeader(HEADER_VERSION, String.class);
+		return version;
 	}
 
 	@Override
 	public void setElapsedTime(final Long elapsedTime) {
-		headers.put(HEADER_ELAPSED_TIME, elapsedTime);
+		this.elapsedTime = (elapsedTime != null) ? elapsedTime : UNSET;
 	}
 
 	@Override
 	public void setProduct(final String product) {
-		headers.put(HEADER_PRODUCT, product);
+		this.product = product;
 	}
 
 	@Override
 	public void setStartTime(final Date startTime) {
-		headers.put(HEADER_START_TIME, startTime);
+		this.startTime = (startTime != null) ? startTime.getTime() : UNSET;
 	}
 
 	@Override
 	public void setStatus(final HttpStatus status) {
-		headers.put(HEADER_STATUS, status);
+		this.status = status;
 	}
 
 	@Override
 	public void setVersion(final String version) {
-		headers.put(HEADER_VERSION, version);
+		this.version = version;
+	}
+
+	@Override
+	public void start() {
+		startTime = System.currentTimeMillis();
+		startNanos = System.nanoTime();
 	}
 
 }
@@ -0,0 +1,78 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.commons.web;
+
+import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Longs;
+
+/**
+ * Opaque cursor marking a position in a keyset-paged entity list. The cursor
+ * encodes the identifier of the last entity of a page, so the next page is
+ * read by seeking past it.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class KeysetCursor {
+
+	private final static BaseEncoding ENCODING = BaseEncoding.base64Url().omitPadding();
+
+	private KeysetCursor() {
+	}
+
+	/**
+	 * Decodes a cursor.
+	 * 
+	 * @param cursor
+	 *            the cursor, possibly <code>null</code>
+	 * @return the identifier the cursor marks, or <code>null</code> for the
+	 *         start of the list
+	 * @throws InvalidCursorException
+	 *             if the cursor is malformed
+	 */
+	public static Long decode(final String cursor) throws InvalidCursorException {
+		if (cursor == null || cursor.isEmpty()) {
+			return null;
+		}
+		try {
+			final byte[] bytes = ENCODING.decode(cursor);
+			if (bytes.length != Longs.BYTES) {
+				throw new InvalidCursorException("Invalid cursor! cursor = " + cursor, null);
+			}
+			return Longs.fromByteArray(bytes);
+		} catch (final IllegalArgumentException e) {
+			throw new InvalidCursorException("Invalid cursor! cursor = " + cursor, e);
+		}
+	}
+
+	/**
+	 * Encodes a cursor.
+	 * 
+	 * @param id
+	 *            the identifier of the last entity of a page
+	 * @return the cursor marking the page that follows it
+	 */
+	public static String encode(final Long id) {
+		return ENCODING.encode(Longs.toByteArray(id));
+	}
+
+}
@@ -45,6 +45,10 @@ public interface Response {
 
 	<T> T getHeader(String key, Class<T> headerClass);
 
+	/**
+	 * Returns the additional headers of this response; the standard headers
+	 * are held apart in typed fields.
+	 */
 	Map<String, Object> getHeaders();
 
 	Long getElapsedTime();
@@ -55,6 +59,10 @@ public interface Response {
 
 	String getProduct();
 
+	long getStartMillis();
+
+	long getStartNanos();
+
 	Date getStartTime();
 
 	HttpStatus getStatus();
@@ -73,4 +81,10 @@ public interface Response {
 
 	void setVersion(String version);
 
+	/**
+	 * Records the start of this response, on the wall clock for its start time
+	 * and on the monotonic clock for its elapsed time.
+	 */
+	void start();
+
 }
\ No newline at end of file
@@ -22,10 +22,18 @@
  */
 package org.jrb.commons.web;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Collections;
 import java.util.Date;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
 import javax.annotation.Resource;
 
 import org.springframework.core.env.Environment;
@@ -36,11 +44,20 @@ import org.springframework.http.ResponseEntity;
 /**
  * Utilities for managing RESTful responses for the Document Assembly
  * application.
+ * <p>
+ * Responses are created through a factory resolved once per response class,
+ * and their standard headers are written from values encoded ahead of time:
+ * the product and version once at startup, every status and the usual
+ * elapsed times once per class, and the start time once per second.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
 public class ResponseUtils {
 
+	private final static int ENCODED_ELAPSED_TIMES = 1000;
+	private final static List<String>[] ELAPSED_TIME_HEADERS = encodeElapsedTimes();
+	private final static Map<HttpStatus, List<String>> STATUS_HEADERS = encodeStatuses();
+
 	@Resource
 	private Environment env;
 
@@ -50,16 +67,17 @@ public class ResponseUtils {
 	@Resource
 	private String version;
 
+	private final ConcurrentMap<Class<?>, ResponseFactory<?>> factories = new ConcurrentHashMap<>();
+	private List<String> productHeader;
+	private volatile StartTimeHeader startTimeHeader = new StartTimeHeader(Long.MIN_VALUE, null);
+	private List<String> versionHeader;
+
 	public <R extends Response> R createResponse(Class<R> responseClass) {
-		try {
-			final R response = responseClass.newInstance();
-			response.setProduct(product);
-			response.setVersion(version);
-			response.setStartTime(new Date());
-			return response;
-		} catch (InstantiationException | IllegalAccessException e) {
-			throw new RuntimeException(e.getMessage(), e);
-		}
+		final R response = factory(responseClass).newResponse();
+		response.setProduct(product);
+		response.setVersion(version);
+		response.start();
+		return response;
 	}
 
 	public ResponseEntity<MessageResponse> createMessageResponse(final String message) {
@@ -83,14 +101,125 @@ public class ResponseUtils {
 	}
 
 	public <R extends Response> ResponseEntity<R> finalize(final R response, final HttpStatus status, final HttpHeaders headers) {
-		final long startTime = response.getStartTime().getTime();
-		response.setElapsedTime(new Date().getTime() - startTime);
+		final long elapsedTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - response.getStartNanos());
+		response.setElapsedTime(elapsedTime);
+		response.setStatus(status);
+
+		headers.put(AbstractResponse.HEADER_ELAPSED_TIME, elapsedTimeHeader(elapsedTime));
+		headers.put(AbstractResponse.HEADER_PRODUCT, productHeader);
+		headers.put(AbstractResponse.HEADER_START_TIME, startTimeHeader(response.getStartMillis()));
+		headers.put(AbstractResponse.HEADER_STATUS, STATUS_HEADERS.get(status));
+		headers.put(AbstractResponse.HEADER_VERSION, versionHeader);
 		for (final Map.Entry<String, ?> header : response.getHeaders().entrySet()) {
 			final String value = header.getValue().toString();
 			headers.put(header.getKey(), Collections.singletonList(value));
 		}
-		response.setStatus(status);
-		return new ResponseEntity<R>(response, headers, response.getStatus());
+		return new ResponseEntity<R>(response, headers, status);
+	}
+
+	@PostConstruct
+	public void init() {
+		productHeader = encode(product);
+		versionHeader = encode(version);
+	}
+
+	private static List<String> elapsedTimeHeader(final long elapsedTime) {
+		if (elapsedTime >= 0 && elapsedTime < ENCODED_ELAPSED_TIMES) {
+			return ELAPSED_TIME_HEADERS[(int) elapsedTime];
+		}
+		return encode(elapsedTime);
+	}
+
+	private static List<String> encode(final Object value) {
+		return (value != null) ? Collections.singletonList(value.toString()) : null;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<String>[] encodeElapsedTimes() {
+		final List<String>[] headers = new List[ENCODED_ELAPSED_TIMES];
+		for (int i = 0; i < headers.length; i++) {
+			headers[i] = encode(i);
+		}
+		return headers;
+	}
+
+	private static Map<HttpStatus, List<String>> encodeStatuses() {
+		final Map<HttpStatus, List<String>> headers = new EnumMap<>(HttpStatus.class);
+		for (final HttpStatus status : HttpStatus.values()) {
+			headers.put(status, encode(status));
+		}
+		return headers;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <R extends Response> ResponseFactory<R> factory(final Class<R> responseClass) {
+		ResponseFactory<?> factory = factories.get(responseClass);
+		if (factory == null) {
+			final ResponseFactory<?> created = new ResponseFactory<>(responseClass);
+			factory = factories.putIfAbsent(responseClass, created);
+			if (factory == null) {
+				factory = created;
+			}
+		}
+		return (ResponseFactory<R>) factory;
+	}
+
+	/**
+	 * Returns the start time header of a response, in the format of
+	 * {@link Date#toString()}, reusing the encoding of the last second seen.
+	 */
+	private List<String> startTimeHeader(final long startMillis) {
+		final long second = TimeUnit.MILLISECONDS.toSeconds(startMillis);
+		StartTimeHeader header = startTimeHeader;
+		if (header.second != second) {
+			header = new StartTimeHeader(second, encode(new Date(startMillis)));
+			startTimeHeader = header;
+		}
+		return header.value;
+	}
+
+	/**
+	 * Creates the responses of one class through its no-argument constructor,
+	 * resolved and made accessible once.
+	 */
+	private static class ResponseFactory<R extends Response> {
+
+		private final static Object[] NO_ARGUMENTS = new Object[0];
+
+		private final Constructor<R> constructor;
+
+		private ResponseFactory(final Class<R> responseClass) {
+			try {
+				constructor = responseClass.getDeclaredConstructor();
+				constructor.setAccessible(true);
+			} catch (final NoSuchMethodException e) {
+				throw new IllegalArgumentException(responseClass.getName() + " has no default constructor", e);
+			}
+		}
+
+		private R newResponse() {
+			try {
+				return constructor.newInstance(NO_ARGUMENTS);
+			} catch (final InstantiationException | IllegalAccessException | InvocationTargetException e) {
+				throw new RuntimeException(e.getMessage(), e);
+			}
+		}
+
+	}
+
+	/**
+	 * Encoded start time header for one second.
+	 */
+	private static class StartTimeHeader {
+
+		private final long second;
+		private final List<String> value;
+
+		private StartTimeHeader(final long second, final List<String> value) {
+			this.second = second;
+			this.value = value;
+		}
+
 	}
 
 }
@@ -25,12 +25,11 @@ package org.jrb.commons.web.controller;
 import java.text.MessageFormat;
 import java.util.Date;
 
-import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.time.DateFormatUtils;
-import org.atteo.evo.inflector.English;
 import org.jrb.commons.web.MessageResponse;
 import org.jrb.commons.web.ResponseUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.Link;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
@@ -42,6 +41,9 @@ import org.springframework.web.bind.annotation.RequestMethod;
  */
 public abstract class AbstractRootController {
 
+	@Autowired
+	private LinkTemplates linkTemplates;
+
 	@Autowired
 	private ResponseUtils utils;
 
@@ -58,6 +60,10 @@ public abstract class AbstractRootController {
 
 	protected abstract void addLinks(final MessageResponse response);
 
+	protected Link collectionLink(final Class<?> controllerClass, final Class<?> entityClass) {
+		return linkTemplates.collectionLink(controllerClass, entityClass);
+	}
+
 	protected String responseMessage(final MessageResponse response) {
 		final String timestamp = DateFormatUtils.ISO_DATETIME_TIME_ZONE_FORMAT.format(new Date());
 		final String message = MessageFormat.format("{0}(v{1}) - {2}", response.getProduct(), response.getVersion(), timestamp); 
@@ -65,7 +71,7 @@ public abstract class AbstractRootController {
 	}
 
 	protected String entityRel(Class<?> classname) {
-		return StringUtils.uncapitalize(English.plural(classname.getSimpleName()));
+		return linkTemplates.entityRel(classname);
 	}
 
 }
\ No newline at end of file
@@ -22,26 +22,56 @@
  */
 package org.jrb.commons.web.controller;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
+import javax.servlet.http.HttpServletRequest;
+
 import org.apache.commons.lang3.StringUtils;
-import org.atteo.evo.inflector.English;
 import org.jrb.commons.web.EntityListResponse;
 import org.jrb.commons.web.EntityResponse;
+import org.jrb.commons.web.InvalidCursorException;
+import org.jrb.commons.web.KeysetCursor;
 import org.jrb.commons.web.MessageResponse;
 import org.jrb.commons.web.ResponseUtils;
+import org.jrb.commons.web.Versioned;
+import org.springframework.hateoas.Identifiable;
+import org.springframework.hateoas.Link;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
 
 /**
- * RESTful handling utilities for CRUD controllers.
+ * RESTful handling utilities for CRUD controllers. Lists carry their own
+ * element type, so that a controller may list lightweight summaries of the
+ * entities it otherwise manages whole. Versioned entities are found
+ * conditionally: they carry a strong ETag derived from their version and a
+ * Last-Modified date, and a client already holding the current version is
+ * answered with 304 (Not Modified) before the entity itself is loaded. Links
+ * are built from the {@link LinkTemplates} cached for each controller.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ * 
+ * @param <E>
+ *            the managed entity
+ * @param <S>
+ *            the listed entity, or entity summary, identified by the key
+ *            that pages of them are cut by
+ * @param <R>
+ *            the entity response
+ * @param <L>
+ *            the entity list response
  */
-public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends EntityListResponse<E>> {
+public class CrudControllerUtils<E, S extends Identifiable<Long>, R extends EntityResponse<E>,
+		L extends EntityListResponse<S>> {
+
+	public final static String CURSOR_PARAM = "after";
+	public final static String LIMIT_PARAM = "limit";
+
+	private final static String IF_MODIFIED_SINCE = "If-Modified-Since";
+	private final static String IF_NONE_MATCH = "If-None-Match";
 
 	/**
 	 * Callback used by {@link CrudControllerUtils} to perform the actual logic
@@ -107,6 +137,30 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 
 	}
 
+	/**
+	 * Callback used by {@link CrudControllerUtils} to perform the actual logic
+	 * to locate a versioned entity, and to learn its version cheaply
+	 * beforehand.
+	 * 
+	 * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+	 * 
+	 * @param <E>
+	 *            the type of entity affected by this callback
+	 */
+	public interface FindVersionedEntityCallback<E> extends FindEntityCallback<E> {
+
+		/**
+		 * Finds the version of an entity given its identifier, without
+		 * loading the entity itself.
+		 * 
+		 * @param entityId
+		 *            the entity identifier
+		 * @return the version of the corresponding entity
+		 */
+		Versioned findEntityVersion(Long entityId);
+
+	}
+
 	/**
 	 * Callback used by {@link CrudControllerUtils} to perform the actual logic
 	 * to retrieve multiple entities.
@@ -127,6 +181,31 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 
 	}
 
+	/**
+	 * Callback used by {@link CrudControllerUtils} to perform the actual logic
+	 * to retrieve one keyset-paged list of entities.
+	 * 
+	 * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+	 * 
+	 * @param <E>
+	 *            the type of entity affected by this callback
+	 */
+	public interface RetrieveEntityPageCallback<E> {
+
+		/**
+		 * Retrieves entities of the associated type in identifier order.
+		 * 
+		 * @param afterId
+		 *            the identifier after which entities are retrieved, or
+		 *            <code>null</code> to retrieve from the start
+		 * @param limit
+		 *            the maximum number of entities to retrieve
+		 * @return to corresponding entity list
+		 */
+		List<E> retrieveEntities(Long afterId, int limit);
+
+	}
+
 	/**
 	 * Callback used by {@link CrudControllerUtils} to perform the actual logic
 	 * to update an entity.
@@ -151,9 +230,11 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 
 	}
 
+	private final LinkTemplates linkTemplates;
 	private final ResponseUtils responseUtils;
 
-	public CrudControllerUtils(final ResponseUtils responseUtils) {
+	public CrudControllerUtils(final ResponseUtils responseUtils, final LinkTemplates linkTemplates) {
+		this.linkTemplates = linkTemplates;
 		this.responseUtils = responseUtils;
 	}
 
@@ -188,11 +269,11 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 		final E createdEntity = callback.createEntity(entity);
 		response.setEntity(createdEntity);
 
-		response.add(linkTo(controllerClass).slash(createdEntity).withSelfRel());
-		response.add(linkTo(controllerClass).withRel(entityRel(entityClass)));
+		response.add(linkTemplates.selfLink(controllerClass, createdEntity));
+		response.add(linkTemplates.collectionLink(controllerClass, entityClass));
 
 		final HttpHeaders headers = new HttpHeaders();
-		headers.setLocation(linkTo(getClass()).slash(createdEntity).toUri());
+		headers.setLocation(linkTemplates.entityUri(controllerClass, createdEntity));
 
 		return responseUtils.finalize(response, HttpStatus.CREATED, headers);
 	}
@@ -227,7 +308,7 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 		callback.deleteEntity(entityId);
 		response.setMessage(entityClass.getSimpleName() + "(" + entityId + ") has been deleted");
 
-		response.add(linkTo(controllerClass).withRel(entityRel(entityClass)));
+		response.add(linkTemplates.collectionLink(controllerClass, entityClass));
 
 		return responseUtils.finalize(response, HttpStatus.OK);
 	}
@@ -255,7 +336,7 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 	 * @return the link relation
 	 */
 	protected String entityRel(final Class<?> classname) {
-		return StringUtils.uncapitalize(English.plural(classname.getSimpleName()));
+		return linkTemplates.entityRel(classname);
 	}
 
 	/**
@@ -288,11 +369,102 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 		final E entity = callback.findEntity(entityId);
 		response.setEntity(entity);
 
-		response.add(linkTo(controllerClass).withRel(entityRel(entityClass)));
+		response.add(linkTemplates.collectionLink(controllerClass, entityClass));
 
 		return responseUtils.finalize(response, HttpStatus.OK);
 	}
 
+	/**
+	 * Spring MVC controller utility method that conditionally finds a
+	 * versioned domain entity. The version of the entity is checked first
+	 * against the <em>If-None-Match</em> header of the request or, failing
+	 * that, its <em>If-Modified-Since</em> header; if the client already holds
+	 * the current version, an empty 304 (Not Modified) response is returned
+	 * without the entity being loaded. Every response carries the ETag and
+	 * Last-Modified date of the entity. Within a successful response, the
+	 * following HATEOAS link(s) generated:
+	 * <ul>
+	 * <li>a <em>collections</em> link giving access to all entities</li>
+	 * </ul>
+	 * 
+	 * @param entityId
+	 *            the identifier of the entity sought
+	 * @param entityClass
+	 *            the class of the entity to be found
+	 * @param entityResponseClass
+	 *            the class to use in generating the response
+	 * @param controllerClass
+	 *            the controller class used for generating HATEOAS links
+	 * @param request
+	 *            the request, carrying any conditional headers
+	 * @param callback
+	 *            a callback containing the actual logic to find the entity
+	 *            and its version
+	 * @return a Spring MVC response containing the found entity, or an empty
+	 *         response if it has not been modified
+	 */
+	public ResponseEntity<R> findEntity(
+			final Long entityId,
+			final Class<E> entityClass,
+			final Class<R> entityResponseClass,
+			final Class<?> controllerClass,
+			final HttpServletRequest request,
+			final FindVersionedEntityCallback<E> callback) {
+
+		final Versioned version = callback.findEntityVersion(entityId);
+		if (isNotModified(request, version)) {
+			return new ResponseEntity<R>(versionHeaders(version), HttpStatus.NOT_MODIFIED);
+		}
+
+		final R response = responseUtils.createResponse(entityResponseClass);
+		final E entity = callback.findEntity(entityId);
+		response.setEntity(entity);
+
+		response.add(linkTemplates.collectionLink(controllerClass, entityClass));
+
+		final Versioned current = (entity instanceof Versioned) ? (Versioned) entity : version;
+		return responseUtils.finalize(response, HttpStatus.OK, versionHeaders(current));
+	}
+
+	/**
+	 * Determines if a client already holds the given version of an entity. An
+	 * <em>If-None-Match</em> header takes precedence over an
+	 * <em>If-Modified-Since</em> one, which is compared to the second, as
+	 * HTTP dates are.
+	 * 
+	 * @param request
+	 *            the request, carrying any conditional headers
+	 * @param version
+	 *            the current version of the entity
+	 * @return <code>true</code> if the client's copy is current; otherwise,
+	 *         <code>false</code>
+	 */
+	protected boolean isNotModified(final HttpServletRequest request, final Versioned version) {
+		final List<String> ifNoneMatch = Collections.list(request.getHeaders(IF_NONE_MATCH));
+		if (!ifNoneMatch.isEmpty()) {
+			final String etag = versionTag(version);
+			for (final String header : ifNoneMatch) {
+				for (final String tag : StringUtils.split(header, ',')) {
+					final String candidate = StringUtils.removeStart(tag.trim(), "W/");
+					if (candidate.equals("*") || candidate.equals(etag)) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		if (version.getUpdatedOn() == null) {
+			return false;
+		}
+		try {
+			final long ifModifiedSince = request.getDateHeader(IF_MODIFIED_SINCE);
+			return ifModifiedSince >= 0 && version.getUpdatedOn().getTime() / 1000 <= ifModifiedSince / 1000;
+		} catch (final IllegalArgumentException e) {
+			return false;
+		}
+	}
+
 	/**
 	 * Spring MVC controller utility method that retrieves entities of a
 	 * particular type.
@@ -306,13 +478,58 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 	 */
 	public ResponseEntity<L> retrieveEntities(
 			final Class<L> entityListResponseClass,
-			final RetrieveEntitiesCallback<E> callback) {
+			final RetrieveEntitiesCallback<S> callback) {
 		final L response = responseUtils.createResponse(entityListResponseClass);
-		final List<E> entityList = callback.retrieveEntities();
+		final List<S> entityList = callback.retrieveEntities();
 		response.setContent(entityList);
 		return responseUtils.finalize(response, HttpStatus.OK);
 	}
 
+	/**
+	 * Spring MVC controller utility method that retrieves one keyset-paged list
+	 * of entities of a particular type. One entity beyond the limit is
+	 * requested to learn whether another page follows, so no count is needed.
+	 * Within a successful response, the following HATEOAS link(s) generated:
+	 * <ul>
+	 * <li>a <em>next</em> link pointing to the following page, if any</li>
+	 * </ul>
+	 * 
+	 * @param cursor
+	 *            the opaque cursor of the desired page, or <code>null</code>
+	 *            for the first page
+	 * @param limit
+	 *            the maximum number of entities on the page
+	 * @param entityListClass
+	 *            the class to use in generating the response
+	 * @param callback
+	 *            a callback containing the actual logic to retrieve the
+	 *            entities
+	 * @return a Spring MVC response containing the entity list
+	 * @throws InvalidCursorException
+	 *             if the cursor is malformed
+	 */
+	public ResponseEntity<L> retrieveEntityPage(
+			final String cursor,
+			final int limit,
+			final Class<L> entityListResponseClass,
+			final RetrieveEntityPageCallback<S> callback) {
+		final L response = responseUtils.createResponse(entityListResponseClass);
+		final List<S> entityList = callback.retrieveEntities(KeysetCursor.decode(cursor), limit + 1);
+		if (entityList.size() > limit) {
+			final List<S> page = new ArrayList<>(entityList.subList(0, limit));
+			response.setContent(page);
+			final String next = ServletUriComponentsBuilder.fromCurrentRequest()
+					.replaceQueryParam(CURSOR_PARAM, KeysetCursor.encode(page.get(limit - 1).getId()))
+					.replaceQueryParam(LIMIT_PARAM, limit)
+					.build()
+					.toUriString();
+			response.add(new Link(next, Link.REL_NEXT));
+		} else {
+			response.setContent(entityList);
+		}
+		return responseUtils.finalize(response, HttpStatus.OK);
+	}
+
 	/**
 	 * Spring MVC controller utility method that updates a existing domain
 	 * entity. Within a successful response, the following HATEOAS link(s)
@@ -350,10 +567,31 @@ public class CrudControllerUtils<E, R extends EntityResponse<E>, L extends Entit
 		final E updatedEntity = callback.updateEntity(entityId, entity);
 		response.setEntity(updatedEntity);
 
-		response.add(linkTo(controllerClass).slash(updatedEntity).withSelfRel());
-		response.add(linkTo(controllerClass).withRel(entityRel(entityClass)));
+		response.add(linkTemplates.selfLink(controllerClass, updatedEntity));
+		response.add(linkTemplates.collectionLink(controllerClass, entityClass));
 
 		return responseUtils.finalize(response, HttpStatus.OK);
 	}
 
+	/**
+	 * Builds the headers describing a version of an entity: a strong ETag, a
+	 * Last-Modified date and a directive that clients revalidate their copy
+	 * before reusing it.
+	 */
+	private HttpHeaders versionHeaders(final Versioned version) {
+		final HttpHeaders headers = new HttpHeaders();
+		if (version.getVersion() != null) {
+			headers.setETag(versionTag(version));
+		}
+		if (version.getUpdatedOn() != null) {
+			headers.setLastModified(version.getUpdatedOn().getTime());
+		}
+		headers.setCacheControl("no-cache");
+		return headers;
+	}
+
+	private String versionTag(final Versioned version) {
+		return "\"" + version.getVersion() + "\"";
+	}
+
 }
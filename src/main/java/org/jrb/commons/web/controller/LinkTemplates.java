@@ -0,0 +1,217 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.commons.web.controller;
+
+import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
+
+import java.net.URI;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.apache.commons.lang3.StringUtils;
+import org.atteo.evo.inflector.English;
+import org.springframework.hateoas.Identifiable;
+import org.springframework.hateoas.Link;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Caches the HATEOAS links of controllers. The relation of an entity class is
+ * computed once, and the base URI of a controller once per base URL it is
+ * reached through, from which its collection links are built once and its
+ * entity links by appending the entity identifier. Base URLs come from the
+ * request, so at most a given number of them are remembered.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class LinkTemplates {
+
+	private final static String FORWARDED_HOST = "X-Forwarded-Host";
+
+	private final ConcurrentMap<Class<?>, String> rels = new ConcurrentHashMap<>();
+	private final Cache<TemplateKey, ControllerTemplate> templates;
+
+	public LinkTemplates(final int maxSize) {
+		this.templates = CacheBuilder.newBuilder()
+				.maximumSize(maxSize)
+				.build();
+	}
+
+	/**
+	 * Returns the link giving access to all entities of a class, for the
+	 * current request.
+	 * 
+	 * @param controllerClass
+	 *            the controller managing the entities
+	 * @param entityClass
+	 *            the entity class
+	 * @return the collection link
+	 */
+	public Link collectionLink(final Class<?> controllerClass, final Class<?> entityClass) {
+		final ControllerTemplate template = template(controllerClass);
+		Link link = template.collectionLinks.get(entityClass);
+		if (link == null) {
+			link = new Link(template.href, entityRel(entityClass));
+			template.collectionLinks.putIfAbsent(entityClass, link);
+		}
+		return link;
+	}
+
+	/**
+	 * Calculates an entity link relation from a given class name. This relation
+	 * is built from the camel case of the plural of the class name.
+	 * 
+	 * @param classname
+	 *            the entity class name
+	 * @return the link relation
+	 */
+	public String entityRel(final Class<?> classname) {
+		String rel = rels.get(classname);
+		if (rel == null) {
+			rel = StringUtils.uncapitalize(English.plural(classname.getSimpleName()));
+			rels.putIfAbsent(classname, rel);
+		}
+		return rel;
+	}
+
+	/**
+	 * Returns the URI at which an entity may be found, for the current
+	 * request.
+	 * 
+	 * @param controllerClass
+	 *            the controller managing the entity
+	 * @param entity
+	 *            the entity, identified by its identifier if
+	 *            {@link Identifiable}
+	 * @return the entity URI
+	 */
+	public URI entityUri(final Class<?> controllerClass, final Object entity) {
+		return URI.create(entityHref(controllerClass, entity));
+	}
+
+	/**
+	 * Returns the <em>self</em> link of an entity, for the current request.
+	 * 
+	 * @param controllerClass
+	 *            the controller managing the entity
+	 * @param entity
+	 *            the entity, identified by its identifier if
+	 *            {@link Identifiable}
+	 * @return the self link
+	 */
+	public Link selfLink(final Class<?> controllerClass, final Object entity) {
+		return new Link(entityHref(controllerClass, entity));
+	}
+
+	/**
+	 * Returns the base URL of a request, which the links of a controller are
+	 * resolved against: its scheme, host, port and context path, along with
+	 * its servlet path when the dispatcher is mapped by prefix, and any
+	 * forwarded host.
+	 */
+	private String baseUrl(final HttpServletRequest request) {
+		final StringBuilder baseUrl = new StringBuilder(64)
+				.append(request.getScheme())
+				.append("://")
+				.append(request.getServerName())
+				.append(':')
+				.append(request.getServerPort())
+				.append(request.getContextPath());
+		if (request.getPathInfo() != null) {
+			baseUrl.append(request.getServletPath());
+		}
+		final String forwardedHost = request.getHeader(FORWARDED_HOST);
+		if (forwardedHost != null) {
+			baseUrl.append(' ').append(forwardedHost);
+		}
+		return baseUrl.toString();
+	}
+
+	private String entityHref(final Class<?> controllerClass, final Object entity) {
+		final Object id = (entity instanceof Identifiable) ? ((Identifiable<?>) entity).getId() : entity;
+		final String href = template(controllerClass).href;
+		return (id != null) ? href + "/" + id : href;
+	}
+
+	private ControllerTemplate template(final Class<?> controllerClass) {
+		final HttpServletRequest request =
+				((ServletRequestAttributes) RequestContextHolder.currentRequestAttributes()).getRequest();
+		final TemplateKey key = new TemplateKey(baseUrl(request), controllerClass);
+		ControllerTemplate template = templates.getIfPresent(key);
+		if (template == null) {
+			template = new ControllerTemplate(linkTo(controllerClass).toString());
+			templates.put(key, template);
+		}
+		return template;
+	}
+
+	/**
+	 * Base URI of a controller for one base URL, with the collection links
+	 * built from it.
+	 */
+	private static class ControllerTemplate {
+
+		private final String href;
+		private final ConcurrentMap<Class<?>, Link> collectionLinks = new ConcurrentHashMap<>();
+
+		private ControllerTemplate(final String href) {
+			this.href = href;
+		}
+
+	}
+
+	/**
+	 * Key of the base URI of a controller for one base URL.
+	 */
+	private static class TemplateKey {
+
+		private final String baseUrl;
+		private final Class<?> controllerClass;
+
+		private TemplateKey(final String baseUrl, final Class<?> controllerClass) {
+			this.baseUrl = baseUrl;
+			this.controllerClass = controllerClass;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+			if (!(obj instanceof TemplateKey)) {
+				return false;
+			}
+			final TemplateKey other = (TemplateKey) obj;
+			return controllerClass == other.controllerClass && baseUrl.equals(other.baseUrl);
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * baseUrl.hashCode() + controllerClass.hashCode();
+		}
+
+	}
+
+}
@@ -34,7 +34,7 @@ import org.springframework.context.annotation.Import;
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
 @EnableAutoConfiguration
-@Import(ApplicationConfig.class)
+@Import({ ApplicationConfig.class, PersistenceConfig.class, WebConfig.class })
 public class Application {
 
 	private static final Logger LOG = LoggerFactory.getLogger(Application.class);
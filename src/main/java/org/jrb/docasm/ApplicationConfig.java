@@ -22,25 +22,43 @@
  */
 package org.jrb.docasm;
 
+import java.io.File;
 import java.text.DateFormat;
 
+import org.eclipse.jetty.server.AbstractConnector;
+import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Server;
 import org.jrb.commons.web.ResponseUtils;
+import org.jrb.commons.web.controller.LinkTemplates;
+import org.jrb.docasm.service.assembly.AssemblyBufferFactory;
+import org.jrb.docasm.service.assembly.template.ExpressionCompiler;
+import org.jrb.docasm.service.assembly.template.PartialEvaluator;
+import org.jrb.docasm.service.assembly.template.TemplateParser;
+import org.jrb.docasm.service.assembly.template.TemplateWriter;
+import org.jrb.docasm.web.ServerStatisticsEndpoint;
+import org.jrb.docasm.web.ServerThreadPool;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.context.embedded.EmbeddedServletContainerFactory;
 import org.springframework.boot.context.embedded.jetty.JettyEmbeddedServletContainerFactory;
+import org.springframework.boot.context.embedded.jetty.JettyServerCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.PropertySource;
 import org.springframework.core.env.Environment;
 import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import com.fasterxml.jackson.core.JsonGenerator.Feature;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
- * Main application configuration for the Document Assembly Service.
+ * Main application configuration for the Document Assembly Service. The
+ * embedded Jetty server runs on a bounded thread pool and request queue,
+ * sized along with its connector from the application properties, and
+ * reports the live state of the pool through the <code>server</code>
+ * actuator endpoint.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
@@ -56,6 +74,13 @@ public class ApplicationConfig {
 	@Autowired
 	private Environment env;
 
+	@Bean
+	public AssemblyBufferFactory assemblyBufferFactory() {
+		final int threshold = env.getRequiredProperty("assembly.buffer.threshold", Integer.class);
+		final File directory = new File(env.getRequiredProperty("assembly.buffer.directory"));
+		return new AssemblyBufferFactory(threshold, directory);
+	}
+
 	@Bean
 	public MappingJackson2HttpMessageConverter messageConverter() {
 
@@ -72,6 +97,18 @@ public class ApplicationConfig {
 		return converter;
 	}
 
+	@Bean
+	public LinkTemplates linkTemplates() {
+		return new LinkTemplates(env.getRequiredProperty("http.links.cache.size", Integer.class));
+	}
+
+	@Bean
+	public PartialEvaluator partialEvaluator() {
+		final int maxIterations = env.getRequiredProperty("assembly.unroll.max.iterations", Integer.class);
+		final int maxLength = env.getRequiredProperty("assembly.unroll.max.length", Integer.class);
+		return new PartialEvaluator(maxIterations, maxLength);
+	}
+
 	@Bean
 	public String product() {
 		return env.getRequiredProperty("application.name");
@@ -82,14 +119,86 @@ public class ApplicationConfig {
 		return new ResponseUtils();
 	}
 
+	@Bean
+	public ThreadPoolTaskExecutor searchIndexExecutor() {
+		final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix("docasm-index-");
+		executor.setCorePoolSize(1);
+		executor.setMaxPoolSize(1);
+		executor.setQueueCapacity(env.getRequiredProperty("document.search.index.queue.size", Integer.class));
+		executor.setDaemon(true);
+		return executor;
+	}
+
+	@Bean
+	public ServerStatisticsEndpoint serverStatisticsEndpoint() {
+		return new ServerStatisticsEndpoint(serverThreadPool());
+	}
+
+	@Bean
+	public ServerThreadPool serverThreadPool() {
+		final ServerThreadPool threadPool = new ServerThreadPool(
+				env.getRequiredProperty("http.server.queue.size", Integer.class));
+		threadPool.setName("docasm-http");
+		threadPool.setMinThreads(env.getRequiredProperty("http.server.threads.min", Integer.class));
+		threadPool.setMaxThreads(env.getRequiredProperty("http.server.threads.max", Integer.class));
+		threadPool.setMaxIdleTimeMs(env.getRequiredProperty("http.server.threads.idle-timeout", Integer.class));
+		return threadPool;
+	}
+
 	@Bean
 	public EmbeddedServletContainerFactory servletContainer() {
 		final int port = env.getRequiredProperty("http.server.port", Integer.class);
+		final int selectors = env.getRequiredProperty("http.server.selectors", Integer.class);
+		final int acceptQueueSize = env.getRequiredProperty("http.server.accept.queue.size", Integer.class);
+		final int idleTimeout = env.getRequiredProperty("http.server.connection.idle-timeout", Integer.class);
+		final int outputBufferSize = env.getRequiredProperty("http.server.output.buffer.size", Integer.class);
+		final ServerThreadPool threadPool = serverThreadPool();
+
 		final JettyEmbeddedServletContainerFactory factory = new JettyEmbeddedServletContainerFactory();
 		factory.setPort(port);
+		factory.addServerCustomizers(new JettyServerCustomizer() {
+			@Override
+			public void customize(final Server server) {
+				server.setThreadPool(threadPool);
+				for (final Connector connector : server.getConnectors()) {
+					if (connector instanceof AbstractConnector) {
+						// each acceptor of a Jetty 8 connector runs a selector of its own
+						final AbstractConnector configured = (AbstractConnector) connector;
+						configured.setAcceptors(selectors);
+						configured.setAcceptQueueSize(acceptQueueSize);
+						configured.setMaxIdleTime(idleTimeout);
+						configured.setResponseBufferSize(outputBufferSize);
+					}
+				}
+			}
+		});
 		return factory;
 	}
 
+	@Bean
+	public TemplateParser templateParser() {
+		final int maxExpressions = env.getRequiredProperty("assembly.expression.cache.size", Integer.class);
+		final int maxIterations = env.getRequiredProperty("assembly.expression.max.iterations", Integer.class);
+		return new TemplateParser(new ExpressionCompiler(maxExpressions), maxIterations);
+	}
+
+	@Bean
+	public ThreadPoolTaskExecutor templatePreparationExecutor() {
+		final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix("docasm-prepare-");
+		executor.setCorePoolSize(env.getRequiredProperty("assembly.preparation.threads", Integer.class));
+		executor.setMaxPoolSize(env.getRequiredProperty("assembly.preparation.threads", Integer.class));
+		executor.setQueueCapacity(env.getRequiredProperty("assembly.preparation.queue.size", Integer.class));
+		executor.setDaemon(true);
+		return executor;
+	}
+
+	@Bean
+	public TemplateWriter templateWriter() {
+		return new TemplateWriter();
+	}
+
 	@Bean
 	public String version() {
 		return env.getRequiredProperty("application.version");
@@ -0,0 +1,510 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import net.sf.ehcache.Cache;
+import net.sf.ehcache.CacheManager;
+import net.sf.ehcache.config.CacheConfiguration;
+
+import org.hibernate.cache.ehcache.SingletonEhCacheRegionFactory;
+import org.hibernate.cache.internal.StandardQueryCache;
+import org.hibernate.cache.spi.UpdateTimestampsCache;
+import org.hsqldb.jdbc.JDBCPool;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.Page;
+import org.jrb.docasm.repository.DocumentShards;
+import org.jrb.docasm.web.CacheStatisticsEndpoint;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.StringUtils;
+
+/**
+ * Persistence configuration for the Document Assembly Service. The document
+ * catalogue is stored according to <code>document.storage.mode</code>:
+ * <ul>
+ * <li><em>memory</em> keeps it in the embedded in-memory database, held
+ * wholly on the heap and lost on restart</li>
+ * <li><em>file</em> keeps it in a file-based HSQLDB database of cached tables,
+ * so only a bounded cache of rows is held on the heap and the catalogue
+ * survives restarts</li>
+ * </ul>
+ * When <code>document.cache.enabled</code> is set, Hibernate's second-level
+ * cache and query cache are backed by Ehcache regions sized from the
+ * configuration, and their hit rates are reported by the <em>cache</em>
+ * actuator endpoint.
+ * <p>
+ * When <code>document.storage.replica.urls</code> lists one or more replica
+ * databases, read-only transactions are spread over those replicas in turn,
+ * while all other work stays on the primary data source. Keeping the replicas
+ * in step with the primary is left to the databases themselves.
+ * <p>
+ * When <code>document.storage.shards</code> lists one or more further
+ * databases, documents are instead partitioned across the primary and those
+ * shards, as laid down by {@link DocumentShards}. The query cache is then
+ * switched off, since its results would not tell the shards apart.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Configuration
+public class PersistenceConfig {
+
+	@Autowired
+	private Environment env;
+
+	@Bean
+	@ConditionalOnExpression("${document.cache.enabled}")
+	public CacheStatisticsEndpoint cacheStatisticsEndpoint() {
+		return new CacheStatisticsEndpoint();
+	}
+
+	@Bean
+	@ConditionalOnExpression("'${document.storage.mode}' == 'file'")
+	public DataSource dataSource() {
+		final File path = new File(env.getRequiredProperty("document.storage.file.path"));
+		final JDBCPool pool = new JDBCPool(env.getRequiredProperty("document.storage.pool.size", Integer.class));
+		pool.setUrl("jdbc:hsqldb:file:" + path.getAbsolutePath() + ";hsqldb.default_table_type=cached");
+		pool.setUser("SA");
+		pool.setPassword("");
+		return new FileStorageDataSource(pool, new String[] {
+				"SET DATABASE DEFAULT TABLE TYPE CACHED",
+				"SET FILES CACHE ROWS " + env.getRequiredProperty("document.storage.cache.rows", Integer.class),
+				"SET FILES CACHE SIZE " + env.getRequiredProperty("document.storage.cache.size", Integer.class),
+				"SET FILES NIO SIZE " + env.getRequiredProperty("document.storage.nio.size", Integer.class),
+				"SET FILES LOG SIZE " + env.getRequiredProperty("document.storage.log.size", Integer.class),
+				"SET FILES WRITE DELAY " + env.getRequiredProperty("document.storage.write.delay", Integer.class)
+						+ " MILLIS" });
+	}
+
+	@Bean
+	public DocumentShards documentShards() {
+		return new DocumentShards(1 + urls(env, "document.storage.shards").length);
+	}
+
+	@Bean
+	public static ReplicaRoutingConfigurer replicaRoutingConfigurer(final Environment env) {
+		final String[] urls = urls(env, "document.storage.replica.urls");
+		if (urls.length > 0 && urls(env, "document.storage.shards").length > 0) {
+			throw new IllegalStateException("Replicas are not supported for partitioned document storage");
+		}
+		return new ReplicaRoutingConfigurer(
+				urls,
+				env.getRequiredProperty("document.storage.replica.user"),
+				env.getRequiredProperty("document.storage.replica.password"),
+				env.getRequiredProperty("document.storage.pool.size", Integer.class));
+	}
+
+	@Bean
+	public static SecondLevelCacheConfigurer secondLevelCacheConfigurer(final Environment env) {
+		if (!env.getRequiredProperty("document.cache.enabled", Boolean.class)) {
+			return new SecondLevelCacheConfigurer(null, false);
+		}
+		final Map<String, Integer> regions = new LinkedHashMap<>();
+		regions.put(Document.class.getName(), env.getRequiredProperty("document.cache.document.size", Integer.class));
+		regions.put(Page.class.getName(), env.getRequiredProperty("document.cache.page.size", Integer.class));
+		final boolean queryCache = urls(env, "document.storage.shards").length == 0;
+		if (queryCache) {
+			regions.put(StandardQueryCache.class.getName(),
+					env.getRequiredProperty("document.cache.query.size", Integer.class));
+		}
+		return new SecondLevelCacheConfigurer(regions, queryCache);
+	}
+
+	@Bean
+	public static ShardRoutingConfigurer shardRoutingConfigurer(final Environment env) {
+		return new ShardRoutingConfigurer(
+				urls(env, "document.storage.shards"),
+				env.getRequiredProperty("document.storage.shard.user"),
+				env.getRequiredProperty("document.storage.shard.password"),
+				env.getRequiredProperty("document.storage.pool.size", Integer.class));
+	}
+
+	private static String[] urls(final Environment env, final String property) {
+		return StringUtils.commaDelimitedListToStringArray(
+				StringUtils.trimAllWhitespace(env.getRequiredProperty(property)));
+	}
+
+	/**
+	 * Pooled data source over a file-based HSQLDB database. Storage settings
+	 * are applied on every start, since HSQLDB only honours most of them as
+	 * connection properties when the database is first created. The database
+	 * is checkpointed and shut down when the data source is destroyed.
+	 */
+	static class FileStorageDataSource extends DelegatingDataSource implements InitializingBean, DisposableBean {
+
+		private final static Logger LOG = LoggerFactory.getLogger(FileStorageDataSource.class);
+
+		private final JDBCPool pool;
+		private final String[] settings;
+
+		public FileStorageDataSource(final JDBCPool pool, final String[] settings) {
+			super(pool);
+			this.pool = pool;
+			this.settings = settings;
+		}
+
+		@Override
+		public void afterPropertiesSet() {
+			super.afterPropertiesSet();
+			try {
+				execute(settings);
+			} catch (final SQLException e) {
+				throw new IllegalStateException("Unable to open file storage at " + pool.getUrl(), e);
+			}
+			LOG.info("Opened file storage at " + pool.getUrl());
+		}
+
+		@Override
+		public void destroy() throws SQLException {
+			try {
+				execute("SHUTDOWN");
+			} finally {
+				pool.close(0);
+			}
+			LOG.info("Closed file storage at " + pool.getUrl());
+		}
+
+		private void execute(final String... statements) throws SQLException {
+			try (final Connection connection = getConnection(); final Statement statement = connection.createStatement()) {
+				for (final String sql : statements) {
+					statement.execute(sql);
+				}
+			}
+		}
+
+	}
+
+	/**
+	 * Wraps the primary data source so that read-only transactions are routed
+	 * to a replica.
+	 */
+	static class ReplicaRoutingConfigurer extends RoutingConfigurer {
+
+		private final static Logger LOG = LoggerFactory.getLogger(ReplicaRoutingConfigurer.class);
+
+		public ReplicaRoutingConfigurer(final String[] urls, final String user, final String password, final int poolSize) {
+			super(urls, user, password, poolSize);
+		}
+
+		@Override
+		protected AbstractRoutingDataSource route(final DataSource primary, final List<DataSource> replicas) {
+			LOG.info("Routing read-only transactions to replicas " + StringUtils.arrayToCommaDelimitedString(urls));
+			return new ReplicaRoutingDataSource(primary, replicas);
+		}
+
+	}
+
+	/**
+	 * Data source routing each connection by the transaction it serves:
+	 * read-only transactions take the next replica in turn, everything else
+	 * the primary.
+	 */
+	static class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+		private final static String PRIMARY = "primary";
+
+		private final String[] replicas;
+		private final AtomicInteger next = new AtomicInteger();
+
+		public ReplicaRoutingDataSource(final DataSource primary, final List<DataSource> replicas) {
+			final Map<Object, Object> targets = new HashMap<>();
+			targets.put(PRIMARY, primary);
+			this.replicas = new String[replicas.size()];
+			for (int i = 0; i < replicas.size(); i++) {
+				this.replicas[i] = "replica-" + i;
+				targets.put(this.replicas[i], replicas.get(i));
+			}
+			setTargetDataSources(targets);
+			setDefaultTargetDataSource(primary);
+		}
+
+		@Override
+		protected Object determineCurrentLookupKey() {
+			if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+				return PRIMARY;
+			}
+			return replicas[(next.getAndIncrement() & Integer.MAX_VALUE) % replicas.length];
+		}
+
+	}
+
+	/**
+	 * Wraps the primary data source in one routing each connection between it
+	 * and a set of other databases. The routing data source sits behind a lazy
+	 * connection proxy, since a transaction manager asks for its connection
+	 * before the transaction is fully set up; the proxy defers the actual
+	 * lookup to the first statement. Hibernate is told to give its connection
+	 * back at the end of each transaction, since an entity manager held open
+	 * across several transactions, as in a web request, would otherwise keep
+	 * the connection of the first. Pools of the other databases are closed
+	 * when the configurer is destroyed.
+	 */
+	static abstract class RoutingConfigurer implements BeanPostProcessor, DisposableBean {
+
+		protected final String[] urls;
+		private final String user;
+		private final String password;
+		private final int poolSize;
+		protected final List<JDBCPool> pools = new ArrayList<>();
+
+		public RoutingConfigurer(final String[] urls, final String user, final String password, final int poolSize) {
+			this.urls = urls;
+			this.user = user;
+			this.password = password;
+			this.poolSize = poolSize;
+		}
+
+		@Override
+		public void destroy() throws SQLException {
+			for (final JDBCPool pool : pools) {
+				pool.close(0);
+			}
+			pools.clear();
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(final Object bean, final String beanName) throws BeansException {
+			if (urls.length == 0 || !"dataSource".equals(beanName) || !(bean instanceof DataSource)) {
+				return bean;
+			}
+			final List<DataSource> targets = new ArrayList<>();
+			for (final String url : urls) {
+				final JDBCPool pool = new JDBCPool(poolSize);
+				pool.setUrl(url);
+				pool.setUser(user);
+				pool.setPassword(password);
+				pools.add(pool);
+				targets.add(pool);
+			}
+			final AbstractRoutingDataSource routing = route((DataSource) bean, targets);
+			routing.afterPropertiesSet();
+			return new LazyConnectionDataSourceProxy(routing);
+		}
+
+		@Override
+		public Object postProcessBeforeInitialization(final Object bean, final String beanName) throws BeansException {
+			if (urls.length > 0 && bean instanceof LocalContainerEntityManagerFactoryBean) {
+				((LocalContainerEntityManagerFactoryBean) bean).getJpaPropertyMap().put(
+						"hibernate.connection.release_mode", "after_transaction");
+			}
+			return bean;
+		}
+
+		/**
+		 * Creates the data source routing between the primary and the other
+		 * databases.
+		 * 
+		 * @param primary
+		 *            the primary data source
+		 * @param targets
+		 *            the data sources of the other databases
+		 * @return the routing data source
+		 */
+		protected abstract AbstractRoutingDataSource route(DataSource primary, List<DataSource> targets);
+
+	}
+
+	/**
+	 * Configures Hibernate's second-level and query caches on the entity
+	 * manager factory before it is built. When enabled, each cache region is
+	 * created up front in the shared Ehcache manager with its configured size,
+	 * so that Hibernate picks it up rather than a default region; the region
+	 * of update timestamps, which tells stale query results apart, is never
+	 * evicted. Otherwise both caches are switched off, since Hibernate would
+	 * else look for a cache provider for the cacheable entities.
+	 */
+	static class SecondLevelCacheConfigurer implements BeanPostProcessor {
+
+		private final static Logger LOG = LoggerFactory.getLogger(SecondLevelCacheConfigurer.class);
+
+		private final Map<String, Integer> regions;
+		private final boolean queryCache;
+
+		public SecondLevelCacheConfigurer(final Map<String, Integer> regions, final boolean queryCache) {
+			this.regions = regions;
+			this.queryCache = queryCache;
+		}
+
+		private void addRegion(final CacheManager cacheManager, final CacheConfiguration configuration) {
+			if (!cacheManager.cacheExists(configuration.getName())) {
+				cacheManager.addCache(new Cache(configuration));
+			}
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(final Object bean, final String beanName) throws BeansException {
+			return bean;
+		}
+
+		@Override
+		public Object postProcessBeforeInitialization(final Object bean, final String beanName) throws BeansException {
+			if (!(bean instanceof LocalContainerEntityManagerFactoryBean)) {
+				return bean;
+			}
+			final Map<String, Object> properties = ((LocalContainerEntityManagerFactoryBean) bean).getJpaPropertyMap();
+			if (regions == null) {
+				properties.put("hibernate.cache.use_second_level_cache", "false");
+				properties.put("hibernate.cache.use_query_cache", "false");
+			} else {
+				final CacheManager cacheManager = CacheManager.create(new net.sf.ehcache.config.Configuration()
+						.updateCheck(false)
+						.defaultCache(new CacheConfiguration("default", 1000)));
+				for (final Map.Entry<String, Integer> region : regions.entrySet()) {
+					addRegion(cacheManager, new CacheConfiguration(region.getKey(), region.getValue()));
+				}
+				addRegion(cacheManager, new CacheConfiguration(UpdateTimestampsCache.class.getName(), 0).eternal(true));
+
+				properties.put("hibernate.cache.use_second_level_cache", "true");
+				properties.put("hibernate.cache.use_query_cache", Boolean.toString(queryCache));
+				properties.put("hibernate.cache.region.factory_class", SingletonEhCacheRegionFactory.class.getName());
+				properties.put("hibernate.generate_statistics", "true");
+				properties.put("javax.persistence.sharedCache.mode", "ENABLE_SELECTIVE");
+				LOG.info("Enabled second-level cache; regions = " + regions);
+			}
+			return bean;
+		}
+
+	}
+
+	/**
+	 * Wraps the primary data source so that documents are partitioned across
+	 * it and the configured shards. Once the entity manager factory is built,
+	 * the schema is generated in each shard by building a throwaway factory
+	 * against it, with the cache switched off and tables only ever created or
+	 * updated. The identity columns of a new shard then restart at the first
+	 * identifier of the shard.
+	 */
+	static class ShardRoutingConfigurer extends RoutingConfigurer {
+
+		private final static Logger LOG = LoggerFactory.getLogger(ShardRoutingConfigurer.class);
+
+		private final static String DDL_AUTO = "hibernate.hbm2ddl.auto";
+		private final static String IDENTITY_COLUMNS_SQL = "select table_name, column_name"
+				+ " from information_schema.columns where is_identity = 'YES' and table_schema = current_schema";
+
+		public ShardRoutingConfigurer(final String[] urls, final String user, final String password, final int poolSize) {
+			super(urls, user, password, poolSize);
+		}
+
+		private void generateSchemas(final LocalContainerEntityManagerFactoryBean factory) throws SQLException {
+			final Map<String, Object> properties = new HashMap<>(factory.getJpaPropertyMap());
+			if ("create-drop".equals(properties.get(DDL_AUTO))) {
+				properties.put(DDL_AUTO, "create");
+			}
+			properties.put("hibernate.cache.use_second_level_cache", "false");
+			properties.put("hibernate.cache.use_query_cache", "false");
+			properties.remove("hibernate.cache.region.factory_class");
+			for (int shard = 1; shard <= pools.size(); shard++) {
+				try (final DocumentShards.Binding binding = DocumentShards.bind(shard)) {
+					factory.getPersistenceProvider()
+							.createContainerEntityManagerFactory(factory.getPersistenceUnitInfo(), properties)
+							.close();
+				}
+				restartIdentities(new JdbcTemplate(pools.get(shard - 1)), DocumentShards.firstId(shard));
+				LOG.info("Prepared document shard " + shard + " at " + urls[shard - 1]);
+			}
+		}
+
+		@Override
+		public Object postProcessAfterInitialization(final Object bean, final String beanName) throws BeansException {
+			if (urls.length > 0 && bean instanceof LocalContainerEntityManagerFactoryBean) {
+				try {
+					generateSchemas((LocalContainerEntityManagerFactoryBean) bean);
+				} catch (final SQLException e) {
+					throw new IllegalStateException("Unable to prepare document shards", e);
+				}
+				return bean;
+			}
+			return super.postProcessAfterInitialization(bean, beanName);
+		}
+
+		private void restartIdentities(final JdbcTemplate jdbcTemplate, final long firstId) {
+			for (final Map<String, Object> column : jdbcTemplate.queryForList(IDENTITY_COLUMNS_SQL)) {
+				final String table = "\"" + column.get("TABLE_NAME") + "\"";
+				final String name = "\"" + column.get("COLUMN_NAME") + "\"";
+				final Long max = jdbcTemplate.queryForObject("select max(" + name + ") from " + table, Long.class);
+				if (max == null || max < firstId) {
+					jdbcTemplate.execute("alter table " + table + " alter column " + name + " restart with " + firstId);
+				}
+			}
+		}
+
+		@Override
+		protected AbstractRoutingDataSource route(final DataSource primary, final List<DataSource> shards) {
+			LOG.info("Partitioning documents across shards " + StringUtils.arrayToCommaDelimitedString(urls));
+			return new ShardRoutingDataSource(primary, shards);
+		}
+
+	}
+
+	/**
+	 * Data source routing each connection to the shard bound to the current
+	 * thread, or to the primary if none is bound.
+	 */
+	static class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+		public ShardRoutingDataSource(final DataSource primary, final List<DataSource> shards) {
+			final Map<Object, Object> targets = new HashMap<>();
+			targets.put(DocumentShards.HOME, primary);
+			for (int i = 0; i < shards.size(); i++) {
+				targets.put(i + 1, shards.get(i));
+			}
+			setTargetDataSources(targets);
+			setDefaultTargetDataSource(primary);
+		}
+
+		@Override
+		protected Object determineCurrentLookupKey() {
+			return DocumentShards.current();
+		}
+
+	}
+
+}
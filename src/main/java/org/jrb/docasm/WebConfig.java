@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm;
+
+import org.jrb.docasm.web.RequestContextCallableInterceptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+/**
+ * Web MVC configuration for the Document Assembly Service. Controller methods
+ * returning a {@link java.util.concurrent.Callable} are run on a bounded pool
+ * of their own, so that the server thread receiving a request is returned to
+ * Jetty while the document is loaded or assembled, and the response is
+ * completed from the pool. Requests not completed within the configured
+ * timeout are answered with 503 (Service Unavailable), as are requests
+ * arriving while the pool and its queue are full.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Configuration
+public class WebConfig extends WebMvcConfigurerAdapter {
+
+	@Autowired
+	private Environment env;
+
+	@Bean
+	public ThreadPoolTaskExecutor asyncTaskExecutor() {
+		final ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+		executor.setThreadNamePrefix("docasm-async-");
+		executor.setCorePoolSize(env.getRequiredProperty("http.async.threads.core", Integer.class));
+		executor.setMaxPoolSize(env.getRequiredProperty("http.async.threads.max", Integer.class));
+		executor.setQueueCapacity(env.getRequiredProperty("http.async.queue.size", Integer.class));
+		executor.setKeepAliveSeconds(env.getRequiredProperty("http.async.threads.keep-alive", Integer.class));
+		executor.setDaemon(true);
+		return executor;
+	}
+
+	@Override
+	public void configureAsyncSupport(final AsyncSupportConfigurer configurer) {
+		configurer.setTaskExecutor(asyncTaskExecutor());
+		configurer.setDefaultTimeout(env.getRequiredProperty("http.async.timeout", Long.class));
+		configurer.registerCallableInterceptors(new RequestContextCallableInterceptor());
+	}
+
+}
@@ -25,27 +25,43 @@ package org.jrb.docasm.domain;
 import java.net.URI;
 import java.util.Date;
 
+import javax.persistence.CascadeType;
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
 import javax.persistence.Transient;
 import javax.persistence.Version;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.Index;
+import org.jrb.commons.web.Versioned;
 import org.springframework.hateoas.Identifiable;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
- * Domain entity for a document for the Document Assembler application.
+ * Domain entity for a document for the Document Assembler application. The
+ * template of a document is either fetched from its template URI or stored
+ * in the database, in which case the URI, if any, records only its origin.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
+@Table(name = "document")
 @JsonInclude(Include.NON_EMPTY)
-public class Document implements Identifiable<Long> {
+public class Document implements Identifiable<Long>, Versioned {
 
 	/**
 	 * Builder for a {@link Document} domain entity.
@@ -69,6 +85,8 @@ public class Document implements Identifiable<Long> {
 			document.description = doc.description;
 			document.id = doc.id;
 			document.name = doc.name;
+			document.storedTemplate = doc.storedTemplate;
+			document.templateUri = doc.templateUri;
 			document.updatedOn = doc.updatedOn;
 			document.version = doc.version;
 			return this;
@@ -92,11 +110,21 @@ public class Document implements Identifiable<Long> {
 			return this;
 		}
 
+		public Builder setId(final Long id) {
+			document.id = id;
+			return this;
+		}
+
 		public Builder setName(final String name) {
 			document.name = name;
 			return this;
 		}
 
+		public Builder setStoredTemplate(final DocumentTemplate storedTemplate) {
+			document.storedTemplate = storedTemplate;
+			return this;
+		}
+
 		public Builder setTemplate(final String template) {
 			document.template = template;
 			return this;
@@ -107,33 +135,49 @@ public class Document implements Identifiable<Long> {
 			return this;
 		}
 
+		public Builder setVersion(final Integer version) {
+			document.version = version;
+			return this;
+		}
+
 	}
 
 	@Id
 	@GeneratedValue
+	@Column(name = "id")
 	private Long id;
 
-	@Column(unique = true, nullable = false)
+	@Column(name = "name", unique = true, nullable = false)
 	private String name;
 
-	@Column(nullable = true)
+	@Column(name = "description", nullable = true)
 	private String description;
 
-	@Column(nullable = true)
+	@Column(name = "template_uri", nullable = true)
 	private URI templateUri;
 
-	@Column(nullable = false)
+	@Column(name = "created_on", nullable = false)
+	@Index(name = "idx_document_created_on")
 	private Date createdOn;
 
-	@Column(nullable = false)
+	@Column(name = "updated_on", nullable = false)
+	@Index(name = "idx_document_updated_on")
 	private Date updatedOn;
 	
 	@Version
+	@Column(name = "version")
 	private Integer version;
 
+	@OneToOne(fetch = FetchType.LAZY, cascade = CascadeType.ALL, orphanRemoval = true)
+	@JoinColumn(name = "template_id", nullable = true)
+	private DocumentTemplate storedTemplate;
+
 	@Transient
 	private String template;
 
+	@Transient
+	private String residualTemplate;
+
 	private Document() {
 	}
 
@@ -153,6 +197,23 @@ public class Document implements Identifiable<Long> {
 		return name;
 	}
 
+	/**
+	 * Gets the stored residual template of this version of the document, if
+	 * it has been prepared.
+	 * 
+	 * @return the residual template text, or <code>null</code> if the template
+	 *         is yet to be partially evaluated
+	 */
+	@JsonIgnore
+	public String getResidualTemplate() {
+		return residualTemplate;
+	}
+
+	@JsonIgnore
+	public DocumentTemplate getStoredTemplate() {
+		return storedTemplate;
+	}
+
 	@JsonIgnore
 	public String getTemplate() {
 		return template;
@@ -170,6 +231,11 @@ public class Document implements Identifiable<Long> {
 		return version;
 	}
 
+	public void setResidualTemplate(final String residualTemplate) {
+		this.residualTemplate = residualTemplate;
+	}
+
+	@JsonProperty
 	public void setTemplate(final String template) {
 		this.template = template;
 	}
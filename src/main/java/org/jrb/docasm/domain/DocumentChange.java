@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.domain;
+
+import java.util.Date;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.EnumType;
+import javax.persistence.Enumerated;
+import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
+import javax.persistence.Id;
+import javax.persistence.Table;
+import javax.persistence.Temporal;
+import javax.persistence.TemporalType;
+
+import org.springframework.hateoas.Identifiable;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Domain entity for one entry of the append-only log of changes to
+ * {@link Document}s. Each entry is numbered by a monotonically increasing
+ * sequence, so that a reader can ask for every change after the last one it
+ * saw. Entries are never updated, and outlive the documents they record.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Entity
+@Table(name = "document_change")
+@JsonInclude(Include.NON_EMPTY)
+public class DocumentChange implements Identifiable<Long> {
+
+	public static enum Type {
+		CREATED, UPDATED, DELETED
+	}
+
+	@Id
+	@GeneratedValue(strategy = GenerationType.IDENTITY)
+	@Column(name = "sequence")
+	private Long sequence;
+
+	@Enumerated(EnumType.STRING)
+	@Column(name = "type", nullable = false, length = 16)
+	private Type type;
+
+	@Column(name = "document_id", nullable = false)
+	private Long documentId;
+
+	@Column(name = "document_name")
+	private String documentName;
+
+	@Column(name = "document_version")
+	private Integer documentVersion;
+
+	@Temporal(TemporalType.TIMESTAMP)
+	@Column(name = "changed_on", nullable = false)
+	private Date changedOn;
+
+	protected DocumentChange() {
+	}
+
+	/**
+	 * Records a change to a document, as of the document state given. The
+	 * name and version are those of the changed document, when known.
+	 * 
+	 * @param type
+	 *            the type of change
+	 * @param document
+	 *            the changed document
+	 * @param changedOn
+	 *            the time of the change
+	 */
+	public DocumentChange(final Type type, final Document document, final Date changedOn) {
+		this.type = type;
+		this.documentId = document.getId();
+		this.documentName = document.getName();
+		this.documentVersion = document.getVersion();
+		this.changedOn = changedOn;
+	}
+
+	public Date getChangedOn() {
+		return changedOn;
+	}
+
+	public Long getDocumentId() {
+		return documentId;
+	}
+
+	public String getDocumentName() {
+		return documentName;
+	}
+
+	public Integer getDocumentVersion() {
+		return documentVersion;
+	}
+
+	@Override
+	@JsonIgnore
+	public Long getId() {
+		return sequence;
+	}
+
+	public Long getSequence() {
+		return sequence;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentChange [sequence=" + sequence + ", type=" + type + ", documentId=" + documentId + "]";
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.domain;
+
+import javax.persistence.CascadeType;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.FetchType;
+import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.OneToOne;
+import javax.persistence.Table;
+
+/**
+ * Domain entity for the residual template of a {@link Document}: its template
+ * with every section not depending on merge data already rendered, as of one
+ * version of the document. Kept in the shard of its document under the same
+ * identifier, and written apart from the document so that storing it neither
+ * bumps the document version nor waits on a document write. A residual of an
+ * earlier version is simply ignored until it is replaced.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Entity
+@Table(name = "document_residual")
+public class DocumentResidual {
+
+	@Id
+	@Column(name = "document_id")
+	private Long documentId;
+
+	@Column(name = "document_version", nullable = false)
+	private Integer documentVersion;
+
+	@OneToOne(fetch = FetchType.EAGER, cascade = CascadeType.ALL, orphanRemoval = true)
+	@JoinColumn(name = "template_id", nullable = false)
+	private DocumentTemplate template;
+
+	protected DocumentResidual() {
+	}
+
+	public DocumentResidual(final Long documentId, final Integer documentVersion, final String text) {
+		this.documentId = documentId;
+		setTemplate(documentVersion, text);
+	}
+
+	public Long getDocumentId() {
+		return documentId;
+	}
+
+	public Integer getDocumentVersion() {
+		return documentVersion;
+	}
+
+	public DocumentTemplate getTemplate() {
+		return template;
+	}
+
+	/**
+	 * Replaces the residual template with that of another document version.
+	 *
+	 * @param documentVersion
+	 *            the document version the residual was evaluated for
+	 * @param text
+	 *            the residual template text
+	 */
+	public void setTemplate(final Integer documentVersion, final String text) {
+		this.documentVersion = documentVersion;
+		this.template = new DocumentTemplate(text);
+	}
+
+}
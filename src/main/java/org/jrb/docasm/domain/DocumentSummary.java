@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.domain;
+
+import java.util.Date;
+
+import org.springframework.hateoas.Identifiable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Immutable, read-only summary of a {@link Document}, as listed. Summaries
+ * are projected straight from a query, so they are never managed by the
+ * persistence context.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@JsonInclude(Include.NON_EMPTY)
+public class DocumentSummary implements Identifiable<Long> {
+
+	private final Long id;
+	private final String name;
+	private final String description;
+	private final Date updatedOn;
+
+	public DocumentSummary(final Long id, final String name, final String description, final Date updatedOn) {
+		this.id = id;
+		this.name = name;
+		this.description = description;
+		this.updatedOn = updatedOn;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+
+	@Override
+	public Long getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public Date getUpdatedOn() {
+		return updatedOn;
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentSummary [id=" + id + ", name=" + name + "]";
+	}
+
+}
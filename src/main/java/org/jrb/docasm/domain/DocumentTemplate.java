@@ -0,0 +1,115 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.domain;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
+import javax.persistence.Id;
+import javax.persistence.Lob;
+import javax.persistence.Table;
+
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Domain entity for the template body of a {@link Document}, stored in the
+ * database as a gzip-compressed LOB. Held apart from its document and
+ * fetched lazily, so that queries over documents never read template bodies.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Entity
+@Table(name = "document_template")
+public class DocumentTemplate {
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static int MAX_LENGTH = 16 * 1024 * 1024;
+
+	@Id
+	@GeneratedValue
+	@Column(name = "id")
+	private Long id;
+
+	@Lob
+	@Column(name = "content", nullable = false, length = MAX_LENGTH)
+	private byte[] content;
+
+	@Column(name = "text_length", nullable = false)
+	private Integer length;
+
+	protected DocumentTemplate() {
+	}
+
+	/**
+	 * Creates a stored template from its text, compressing it.
+	 * 
+	 * @param text
+	 *            the template text
+	 */
+	public DocumentTemplate(final String text) {
+		final byte[] bytes = text.getBytes(UTF8);
+		final ByteArrayOutputStream compressed = new ByteArrayOutputStream(bytes.length / 4 + 64);
+		try (final OutputStream out = new GZIPOutputStream(compressed)) {
+			out.write(bytes);
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to compress template", e);
+		}
+		this.content = compressed.toByteArray();
+		this.length = bytes.length;
+	}
+
+	public byte[] getContent() {
+		return content;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	public Integer getLength() {
+		return length;
+	}
+
+	/**
+	 * Decompresses the template text.
+	 * 
+	 * @return the template text
+	 */
+	public String getText() {
+		try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+			return IOUtils.toString(in, UTF8);
+		} catch (final IOException e) {
+			throw new IllegalStateException("Unable to decompress template " + id, e);
+		}
+	}
+
+}
@@ -0,0 +1,67 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.domain;
+
+import java.util.Date;
+
+import org.jrb.commons.web.Versioned;
+
+/**
+ * Immutable, read-only version of a {@link Document}, projected straight from
+ * a query so that a client may learn whether its copy is current without the
+ * document, or its template, being loaded.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentVersion implements Versioned {
+
+	private final Long id;
+	private final Integer version;
+	private final Date updatedOn;
+
+	public DocumentVersion(final Long id, final Integer version, final Date updatedOn) {
+		this.id = id;
+		this.version = version;
+		this.updatedOn = updatedOn;
+	}
+
+	public Long getId() {
+		return id;
+	}
+
+	@Override
+	public Date getUpdatedOn() {
+		return updatedOn;
+	}
+
+	@Override
+	public Integer getVersion() {
+		return version;
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentVersion [id=" + id + ", version=" + version + "]";
+	}
+
+}
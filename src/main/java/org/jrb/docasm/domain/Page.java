@@ -25,18 +25,24 @@ package org.jrb.docasm.domain;
 import java.net.URI;
 import java.util.Date;
 
+import javax.persistence.Cacheable;
 import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.Transient;
 
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+
 /**
  * Domain entity for a page for the Document Assembler application.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE)
 public class Page {
 
 	/**
@@ -0,0 +1,57 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.repository;
+
+import java.util.Collection;
+import java.util.List;
+
+import org.jrb.docasm.domain.DocumentChange;
+
+/**
+ * Custom queries of the {@link DocumentChangeRepository}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public interface DocumentChangeRepositoryCustom {
+
+	/**
+	 * Records the creation of bulk-imported documents with a single JDBC
+	 * statement, copying their identity from the rows just inserted. Must be
+	 * called within the transaction that inserted them.
+	 * 
+	 * @param names
+	 *            the names of the imported documents
+	 * @return the number of changes recorded
+	 */
+	int insertCreations(Collection<String> names);
+
+	/**
+	 * Records changes with a single JDBC batch, for documents held in another
+	 * database than the change log. Must be called within a transaction.
+	 * 
+	 * @param changes
+	 *            the changes to record
+	 */
+	void insertChanges(List<DocumentChange> changes);
+
+}
@@ -0,0 +1,96 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.StringUtils;
+import org.jrb.docasm.domain.DocumentChange;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * JDBC implementation of the {@link DocumentChangeRepositoryCustom} queries.
+ * The change log is written straight through JDBC, sharing the connection of
+ * the surrounding JPA transaction, so that Hibernate does not treat the
+ * statement as touching every cached entity.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentChangeRepositoryImpl implements DocumentChangeRepositoryCustom {
+
+	private final static String INSERT_CREATIONS_SQL = "insert into document_change"
+			+ " (type, document_id, document_name, document_version, changed_on)"
+			+ " select 'CREATED', id, name, version, created_on from document where name in (%s)";
+
+	private final static String INSERT_SQL = "insert into document_change"
+			+ " (type, document_id, document_name, document_version, changed_on)"
+			+ " values (?, ?, ?, ?, ?)";
+
+	private JdbcTemplate jdbcTemplate;
+
+	@Override
+	public void insertChanges(final List<DocumentChange> changes) {
+		jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+			@Override
+			public int getBatchSize() {
+				return changes.size();
+			}
+
+			@Override
+			public void setValues(final PreparedStatement ps, final int i) throws SQLException {
+				final DocumentChange change = changes.get(i);
+				ps.setString(1, change.getType().name());
+				ps.setLong(2, change.getDocumentId());
+				ps.setString(3, change.getDocumentName());
+				if (change.getDocumentVersion() != null) {
+					ps.setInt(4, change.getDocumentVersion());
+				} else {
+					ps.setNull(4, Types.INTEGER);
+				}
+				ps.setTimestamp(5, new Timestamp(change.getChangedOn().getTime()));
+			}
+		});
+	}
+
+	@Override
+	public int insertCreations(final Collection<String> names) {
+		final String placeholders = StringUtils.join(Collections.nCopies(names.size(), "?"), ", ");
+		return jdbcTemplate.update(String.format(INSERT_CREATIONS_SQL, placeholders), names.toArray());
+	}
+
+	@Autowired
+	public void setDataSource(final DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+}
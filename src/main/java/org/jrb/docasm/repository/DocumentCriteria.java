@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.repository;
+
+import java.util.Date;
+
+import org.jrb.docasm.domain.Document;
+
+/**
+ * Criteria for querying {@link Document} entities. Every criterion is
+ * optional; unset criteria match all documents. Matches may be paged by
+ * keyset: only documents identified after a given identifier are returned, up
+ * to a limit. Queries reading whole documents may also be asked to fetch their
+ * stored templates in the same select.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentCriteria {
+
+	public static class Builder {
+
+		private final DocumentCriteria criteria;
+
+		public Builder() {
+			criteria = new DocumentCriteria();
+		}
+
+		public DocumentCriteria build() {
+			return criteria;
+		}
+
+		/**
+		 * Initializes criteria from an example document: its name is used as a
+		 * name prefix, its description as a description fragment, and its
+		 * creation and update timestamps as lower bounds.
+		 * 
+		 * @param example
+		 *            the example document, possibly <code>null</code>
+		 * @return this builder
+		 */
+		public Builder from(final Document example) {
+			if (example != null) {
+				criteria.namePrefix = example.getName();
+				criteria.descriptionContains = example.getDescription();
+				criteria.createdAfter = example.getCreatedOn();
+				criteria.updatedAfter = example.getUpdatedOn();
+			}
+			return this;
+		}
+
+		public Builder setAfterId(final Long afterId) {
+			criteria.afterId = afterId;
+			return this;
+		}
+
+		public Builder setCreatedAfter(final Date createdAfter) {
+			criteria.createdAfter = createdAfter;
+			return this;
+		}
+
+		public Builder setCreatedBefore(final Date createdBefore) {
+			criteria.createdBefore = createdBefore;
+			return this;
+		}
+
+		public Builder setDescriptionContains(final String descriptionContains) {
+			criteria.descriptionContains = descriptionContains;
+			return this;
+		}
+
+		public Builder setFetchTemplates(final boolean fetchTemplates) {
+			criteria.fetchTemplates = fetchTemplates;
+			return this;
+		}
+
+		public Builder setLimit(final Integer limit) {
+			criteria.limit = limit;
+			return this;
+		}
+
+		public Builder setNamePrefix(final String namePrefix) {
+			criteria.namePrefix = namePrefix;
+			return this;
+		}
+
+		public Builder setUpdatedAfter(final Date updatedAfter) {
+			criteria.updatedAfter = updatedAfter;
+			return this;
+		}
+
+		public Builder setUpdatedBefore(final Date updatedBefore) {
+			criteria.updatedBefore = updatedBefore;
+			return this;
+		}
+
+	}
+
+	private String namePrefix;
+	private String descriptionContains;
+	private Date createdAfter;
+	private Date createdBefore;
+	private Date updatedAfter;
+	private Date updatedBefore;
+	private Long afterId;
+	private Integer limit;
+	private boolean fetchTemplates;
+
+	private DocumentCriteria() {
+	}
+
+	public Long getAfterId() {
+		return afterId;
+	}
+
+	public Date getCreatedAfter() {
+		return createdAfter;
+	}
+
+	public Date getCreatedBefore() {
+		return createdBefore;
+	}
+
+	public String getDescriptionContains() {
+		return descriptionContains;
+	}
+
+	public boolean isFetchTemplates() {
+		return fetchTemplates;
+	}
+
+	public Integer getLimit() {
+		return limit;
+	}
+
+	public String getNamePrefix() {
+		return namePrefix;
+	}
+
+	public Date getUpdatedAfter() {
+		return updatedAfter;
+	}
+
+	public Date getUpdatedBefore() {
+		return updatedBefore;
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentCriteria [namePrefix=" + namePrefix + ", descriptionContains=" + descriptionContains
+				+ ", createdAfter=" + createdAfter + ", createdBefore=" + createdBefore + ", updatedAfter="
+				+ updatedAfter + ", updatedBefore=" + updatedBefore + ", afterId=" + afterId + ", limit=" + limit
+				+ ", fetchTemplates=" + fetchTemplates + "]";
+	}
+
+}
@@ -22,20 +22,34 @@
  */
 package org.jrb.docasm.repository;
 
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.QueryHint;
+
 import org.jrb.docasm.domain.Document;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.CrudRepository;
 
 /**
- * JPA repository for an {@link Document}.
+ * JPA repository for an {@link Document}. Lookups by name and pages of all
+ * documents are cacheable, so that they are served from the query cache when
+ * it is enabled.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
-public interface DocumentRepository extends CrudRepository<Document, Long> {
+public interface DocumentRepository extends CrudRepository<Document, Long>, DocumentRepositoryCustom {
+
+	String CACHEABLE = "org.hibernate.cacheable";
 
+	@QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
 	Page<Document> findAll(Pageable pageable);
-	
+
+	@QueryHints(@QueryHint(name = CACHEABLE, value = "true"))
 	Document findByName(String name);
 
+	List<Document> findByNameIn(Collection<String> names);
+
 }
@@ -0,0 +1,156 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.repository;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.domain.DocumentVersion;
+
+/**
+ * Custom queries of the {@link DocumentRepository}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public interface DocumentRepositoryCustom {
+
+	/**
+	 * Callback used by {@link DocumentRepositoryCustom} to process each
+	 * document read by a scrolling query.
+	 * 
+	 * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+	 */
+	public interface DocumentCallback {
+
+		/**
+		 * Processes one document. The document is detached once this method
+		 * returns.
+		 * 
+		 * @param document
+		 *            the document
+		 * @throws IOException
+		 *             if the document could not be written out
+		 */
+		void processDocument(Document document) throws IOException;
+
+	}
+
+	/**
+	 * Finds the documents matching the given criteria, ordered by identifier
+	 * and limited to the keyset page the criteria select.
+	 * 
+	 * @param criteria
+	 *            the query criteria
+	 * @return the matching documents
+	 */
+	List<Document> findByCriteria(DocumentCriteria criteria);
+
+	/**
+	 * Reads a document straight from the database, bypassing the second-level
+	 * cache, and detaches it. Its template is not read. Sees changes made
+	 * earlier in the current transaction, such as a patch.
+	 * 
+	 * @param id
+	 *            the document identifier
+	 * @return the detached document, or <code>null</code> if unknown
+	 */
+	Document findDetached(Long id);
+
+	/**
+	 * Finds which of the given names already belong to documents.
+	 * 
+	 * @param names
+	 *            the candidate names
+	 * @return the names already taken
+	 */
+	Set<String> findExistingNames(Collection<String> names);
+
+	/**
+	 * Finds read-only summaries of the documents matching the given criteria,
+	 * ordered by identifier and limited to the keyset page the criteria
+	 * select.
+	 * 
+	 * @param criteria
+	 *            the query criteria
+	 * @return summaries of the matching documents
+	 */
+	List<DocumentSummary> findSummariesByCriteria(DocumentCriteria criteria);
+
+	/**
+	 * Finds the version of a document, reading neither the rest of the
+	 * document nor its template.
+	 * 
+	 * @param id
+	 *            the document identifier
+	 * @return the version of the document, or <code>null</code> if unknown
+	 */
+	DocumentVersion findVersion(Long id);
+
+	/**
+	 * Inserts new documents as a single JDBC batch, bypassing the persistence
+	 * context. No identifiers are assigned to the given documents. Must be
+	 * called within a transaction.
+	 * 
+	 * @param documents
+	 *            the documents to insert
+	 */
+	void insertDocuments(List<Document> documents);
+
+	/**
+	 * Applies the non-null name and description of a patch to a document as a
+	 * single versioned update, without loading it. The version is incremented
+	 * and the update time set. Must be called within a transaction.
+	 * 
+	 * @param patch
+	 *            the identifier, expected version, if any, and changed fields
+	 *            of the document
+	 * @param updatedOn
+	 *            the update time
+	 * @return the number of documents updated, zero if the document is
+	 *         unknown or not at the expected version
+	 */
+	int patchDocument(Document patch, Date updatedOn);
+
+	/**
+	 * Reads the documents matching the given criteria, ordered by identifier,
+	 * through a forward-only database cursor, so that no more than one fetch
+	 * of documents is held in memory at a time. Must be called within a
+	 * transaction.
+	 * 
+	 * @param criteria
+	 *            the query criteria
+	 * @param fetchSize
+	 *            the number of rows fetched from the database at a time
+	 * @param callback
+	 *            the callback processing each document
+	 * @throws IOException
+	 *             if the callback failed to write out a document
+	 */
+	void scrollByCriteria(DocumentCriteria criteria, int fetchSize, DocumentCallback callback) throws IOException;
+
+}
@@ -0,0 +1,298 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.repository;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.CacheRetrieveMode;
+import javax.persistence.CacheStoreMode;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.TypedQuery;
+import javax.sql.DataSource;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.hibernate.Cache;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.domain.DocumentVersion;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * JPA implementation of the {@link DocumentRepositoryCustom} queries. Each
+ * criterion becomes a condition of a single JPQL query, so filtering happens
+ * in the database against the indexed columns of the document table. Keyset
+ * paging seeks past the last identifier seen along the primary key index,
+ * so every page costs the same however deep it is, and no count is taken.
+ * Summaries and versions are selected through a constructor expression, so
+ * only their columns are read and nothing enters the persistence context.
+ * Patches are applied as a single versioned JDBC update, after which only the
+ * patched document is evicted from the second-level cache, where a bulk JPQL
+ * update would evict every document; it may be read back past that cache.
+ * Scrolling reads matches through a forward-only cursor, detaching each
+ * document, and any stored template fetched with it, once it has been
+ * processed. Bulk inserts go straight to JDBC as a
+ * single batched statement, sharing the connection of the surrounding JPA
+ * transaction; the template URI is bound in the serialized form Hibernate
+ * itself stores. As Hibernate does not see those inserts, cached query results
+ * are evicted once they commit.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentRepositoryImpl implements DocumentRepositoryCustom {
+
+	private final static char LIKE_ESCAPE = '\\';
+
+	private final static String INSERT_SQL = "insert into document"
+			+ " (name, description, template_uri, created_on, updated_on, version)"
+			+ " values (?, ?, ?, ?, ?, 0)";
+
+	@PersistenceContext
+	private EntityManager entityManager;
+
+	private JdbcTemplate jdbcTemplate;
+
+	private <T> TypedQuery<T> createQuery(final DocumentCriteria criteria, final String select, final Class<T> resultClass) {
+		final List<String> conditions = new ArrayList<>();
+		final Map<String, Object> parameters = new HashMap<>();
+		if (StringUtils.isNotEmpty(criteria.getNamePrefix())) {
+			conditions.add("d.name like :namePrefix escape '" + LIKE_ESCAPE + "'");
+			parameters.put("namePrefix", escape(criteria.getNamePrefix()) + "%");
+		}
+		if (StringUtils.isNotEmpty(criteria.getDescriptionContains())) {
+			conditions.add("d.description like :descriptionContains escape '" + LIKE_ESCAPE + "'");
+			parameters.put("descriptionContains", "%" + escape(criteria.getDescriptionContains()) + "%");
+		}
+		if (criteria.getCreatedAfter() != null) {
+			conditions.add("d.createdOn >= :createdAfter");
+			parameters.put("createdAfter", criteria.getCreatedAfter());
+		}
+		if (criteria.getCreatedBefore() != null) {
+			conditions.add("d.createdOn < :createdBefore");
+			parameters.put("createdBefore", criteria.getCreatedBefore());
+		}
+		if (criteria.getUpdatedAfter() != null) {
+			conditions.add("d.updatedOn >= :updatedAfter");
+			parameters.put("updatedAfter", criteria.getUpdatedAfter());
+		}
+		if (criteria.getUpdatedBefore() != null) {
+			conditions.add("d.updatedOn < :updatedBefore");
+			parameters.put("updatedBefore", criteria.getUpdatedBefore());
+		}
+		if (criteria.getAfterId() != null) {
+			conditions.add("d.id > :afterId");
+			parameters.put("afterId", criteria.getAfterId());
+		}
+
+		final StringBuilder jpql = new StringBuilder("select ").append(select).append(" from Document d");
+		if (criteria.isFetchTemplates() && Document.class.equals(resultClass)) {
+			jpql.append(" left join fetch d.storedTemplate");
+		}
+		if (!conditions.isEmpty()) {
+			jpql.append(" where ").append(StringUtils.join(conditions, " and "));
+		}
+		jpql.append(" order by d.id");
+
+		final TypedQuery<T> query = entityManager.createQuery(jpql.toString(), resultClass);
+		for (final Map.Entry<String, Object> parameter : parameters.entrySet()) {
+			query.setParameter(parameter.getKey(), parameter.getValue());
+		}
+		if (criteria.getLimit() != null) {
+			query.setMaxResults(criteria.getLimit());
+		}
+		return query;
+	}
+
+	private String escape(final String value) {
+		final StringBuilder escaped = new StringBuilder(value.length());
+		for (final char c : value.toCharArray()) {
+			if (c == '%' || c == '_' || c == LIKE_ESCAPE) {
+				escaped.append(LIKE_ESCAPE);
+			}
+			escaped.append(c);
+		}
+		return escaped.toString();
+	}
+
+	@Override
+	public List<Document> findByCriteria(final DocumentCriteria criteria) {
+		return createQuery(criteria, "d", Document.class).getResultList();
+	}
+
+	@Override
+	public Document findDetached(final Long id) {
+		final Map<String, Object> hints = new HashMap<>();
+		hints.put("javax.persistence.cache.retrieveMode", CacheRetrieveMode.BYPASS);
+		hints.put("javax.persistence.cache.storeMode", CacheStoreMode.BYPASS);
+		final Document document = entityManager.find(Document.class, id, hints);
+		if (document != null) {
+			entityManager.detach(document);
+		}
+		return document;
+	}
+
+	@Override
+	public Set<String> findExistingNames(final Collection<String> names) {
+		if (names.isEmpty()) {
+			return new HashSet<>();
+		}
+		return new HashSet<>(entityManager
+				.createQuery("select d.name from Document d where d.name in :names", String.class)
+				.setParameter("names", names)
+				.getResultList());
+	}
+
+	@Override
+	public List<DocumentSummary> findSummariesByCriteria(final DocumentCriteria criteria) {
+		return createQuery(
+				criteria,
+				"new " + DocumentSummary.class.getName() + "(d.id, d.name, d.description, d.updatedOn)",
+				DocumentSummary.class).getResultList();
+	}
+
+	@Override
+	public DocumentVersion findVersion(final Long id) {
+		final List<DocumentVersion> versions = entityManager
+				.createQuery(
+						"select new " + DocumentVersion.class.getName() + "(d.id, d.version, d.updatedOn)"
+								+ " from Document d where d.id = :id",
+						DocumentVersion.class)
+				.setParameter("id", id)
+				.getResultList();
+		return versions.isEmpty() ? null : versions.get(0);
+	}
+
+	@Override
+	public void insertDocuments(final List<Document> documents) {
+		final SessionFactory sessionFactory = entityManager.unwrap(Session.class).getSessionFactory();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				sessionFactory.getCache().evictDefaultQueryRegion();
+			}
+		});
+		jdbcTemplate.batchUpdate(INSERT_SQL, new BatchPreparedStatementSetter() {
+			@Override
+			public int getBatchSize() {
+				return documents.size();
+			}
+
+			@Override
+			public void setValues(final PreparedStatement ps, final int i) throws SQLException {
+				final Document document = documents.get(i);
+				ps.setString(1, document.getName());
+				ps.setString(2, document.getDescription());
+				if (document.getTemplateUri() != null) {
+					ps.setBytes(3, SerializationUtils.serialize(document.getTemplateUri()));
+				} else {
+					ps.setNull(3, Types.VARBINARY);
+				}
+				ps.setTimestamp(4, new Timestamp(document.getCreatedOn().getTime()));
+				ps.setTimestamp(5, new Timestamp(document.getUpdatedOn().getTime()));
+			}
+		});
+	}
+
+	@Override
+	public int patchDocument(final Document patch, final Date updatedOn) {
+		final List<Object> parameters = new ArrayList<>();
+		final StringBuilder sql = new StringBuilder("update document set updated_on = ?, version = version + 1");
+		parameters.add(new Timestamp(updatedOn.getTime()));
+		if (patch.getName() != null) {
+			sql.append(", name = ?");
+			parameters.add(patch.getName());
+		}
+		if (patch.getDescription() != null) {
+			sql.append(", description = ?");
+			parameters.add(patch.getDescription());
+		}
+		sql.append(" where id = ?");
+		parameters.add(patch.getId());
+		if (patch.getVersion() != null) {
+			sql.append(" and version = ?");
+			parameters.add(patch.getVersion());
+		}
+
+		final Cache cache = entityManager.unwrap(Session.class).getSessionFactory().getCache();
+		final Long id = patch.getId();
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				cache.evictEntity(Document.class, id);
+				cache.evictDefaultQueryRegion();
+			}
+		});
+		final int updated = jdbcTemplate.update(sql.toString(), parameters.toArray());
+		cache.evictEntity(Document.class, id);
+		return updated;
+	}
+
+	@Override
+	public void scrollByCriteria(
+			final DocumentCriteria criteria,
+			final int fetchSize,
+			final DocumentCallback callback) throws IOException {
+		final ScrollableResults results = createQuery(criteria, "d", Document.class)
+				.unwrap(Query.class)
+				.setFetchSize(fetchSize)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				final Document document = (Document) results.get(0);
+				callback.processDocument(document);
+				entityManager.detach(document);
+			}
+		} finally {
+			results.close();
+		}
+	}
+
+	@Autowired
+	public void setDataSource(final DataSource dataSource) {
+		this.jdbcTemplate = new JdbcTemplate(dataSource);
+	}
+
+}
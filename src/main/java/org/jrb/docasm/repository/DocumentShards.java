@@ -0,0 +1,256 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+
+/**
+ * Partitions the document catalogue across a number of shards, each a
+ * database of its own. A document is stored in the shard chosen by the hash
+ * of its name, and the shard is encoded in the high bits of every identifier
+ * it generates, so that a document can be found from either. Shard zero is
+ * the primary database, whose identifiers are left as they are, and which
+ * alone holds the change log.
+ * <p>
+ * The shard a thread works on is bound to it, and the data source routes
+ * each new connection to the shard bound at the time. Work spanning every
+ * shard is gathered in parallel: the home shard on the calling thread, and
+ * every other shard on a thread of a pool that grows with demand, so that
+ * concurrent gathers, and gathers nested within a shard, never wait on each
+ * other for a thread.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentShards implements DisposableBean {
+
+	/**
+	 * Callback run by {@link DocumentShards} against each shard in turn.
+	 *
+	 * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+	 */
+	public interface ShardCallback<T> {
+
+		/**
+		 * Does some work against one shard, which is bound to the current
+		 * thread for the duration of the call.
+		 *
+		 * @param shard
+		 *            the shard
+		 * @return the result of the work
+		 * @throws Exception
+		 *             if the work failed
+		 */
+		T doInShard(int shard) throws Exception;
+
+	}
+
+	public final static int HOME = 0;
+	public final static int SHARD_SHIFT = 48;
+
+	private final static ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+	private final int count;
+	private final ExecutorService executor;
+
+	public DocumentShards(final int count) {
+		this.count = count;
+		this.executor = (count > 1) ? Executors.newCachedThreadPool(new ShardThreadFactory()) : null;
+	}
+
+	/**
+	 * Binds a shard to the current thread until the returned binding is
+	 * closed, when the shard bound before it, if any, is restored.
+	 *
+	 * @param shard
+	 *            the shard
+	 * @return the binding
+	 */
+	public static Binding bind(final int shard) {
+		final Integer previous = CURRENT.get();
+		CURRENT.set(shard);
+		return new Binding(previous);
+	}
+
+	/**
+	 * Returns the shard bound to the current thread.
+	 *
+	 * @return the current shard, or the home shard if none is bound
+	 */
+	public static int current() {
+		final Integer shard = CURRENT.get();
+		return (shard != null) ? shard : HOME;
+	}
+
+	@Override
+	public void destroy() {
+		if (executor != null) {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the first identifier generated by a shard.
+	 *
+	 * @param shard
+	 *            the shard
+	 * @return the first identifier of the shard
+	 */
+	public static long firstId(final int shard) {
+		return ((long) shard << SHARD_SHIFT) + 1;
+	}
+
+	/**
+	 * Runs a callback against every shard, in parallel when there are several
+	 * shards, and waits for all of them to finish.
+	 *
+	 * @param callback
+	 *            the callback
+	 * @return the result of each shard, in shard order
+	 * @throws Exception
+	 *             the first exception thrown by a shard
+	 */
+	public <T> List<T> gather(final ShardCallback<T> callback) throws Exception {
+		final List<T> results = new ArrayList<>(count);
+		if (executor == null) {
+			results.add(callback.doInShard(HOME));
+			return results;
+		}
+
+		final List<Future<T>> futures = new ArrayList<>(count - 1);
+		for (int i = HOME + 1; i < count; i++) {
+			final int shard = i;
+			futures.add(executor.submit(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					try (final Binding binding = bind(shard)) {
+						return callback.doInShard(shard);
+					}
+				}
+			}));
+		}
+		try {
+			try (final Binding binding = bind(HOME)) {
+				results.add(callback.doInShard(HOME));
+			}
+			for (final Future<T> future : futures) {
+				results.add(future.get());
+			}
+		} catch (final ExecutionException e) {
+			cancel(futures);
+			if (e.getCause() instanceof Exception) {
+				throw (Exception) e.getCause();
+			}
+			throw e;
+		} catch (final Exception e) {
+			cancel(futures);
+			throw e;
+		}
+		return results;
+	}
+
+	private <T> void cancel(final List<Future<T>> futures) {
+		for (final Future<T> future : futures) {
+			future.cancel(true);
+		}
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public boolean isPartitioned() {
+		return count > 1;
+	}
+
+	/**
+	 * Returns the shard holding the document with the given identifier.
+	 *
+	 * @param id
+	 *            the document identifier
+	 * @return the shard
+	 */
+	public int shardOf(final Long id) {
+		return (id != null) ? (int) (id >>> SHARD_SHIFT) : HOME;
+	}
+
+	/**
+	 * Returns the shard holding the document with the given name.
+	 *
+	 * @param name
+	 *            the document name
+	 * @return the shard
+	 */
+	public int shardOf(final String name) {
+		return (name != null) ? (name.hashCode() & Integer.MAX_VALUE) % count : HOME;
+	}
+
+	/**
+	 * Binding of a shard to the current thread, restoring the previous one
+	 * when closed.
+	 */
+	public static class Binding implements AutoCloseable {
+
+		private final Integer previous;
+
+		private Binding(final Integer previous) {
+			this.previous = previous;
+		}
+
+		@Override
+		public void close() {
+			if (previous != null) {
+				CURRENT.set(previous);
+			} else {
+				CURRENT.remove();
+			}
+		}
+
+	}
+
+	/**
+	 * Creates the daemon threads on which shards are gathered.
+	 */
+	private static class ShardThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger next = new AtomicInteger();
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, "docasm-shard-" + next.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+
+	}
+
+}
@@ -0,0 +1,379 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Output buffer for an assembled document. Content is held on the heap until
+ * it grows beyond a configured threshold, at which point it is transparently
+ * spilled to a memory-mapped temporary file. Once closed, the buffer may be
+ * streamed any number of times until it is released. A buffer shared between
+ * several readers is reference counted: each reader holding a reference
+ * releases it, and the backing storage is freed by the last release.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class AssemblyBuffer extends OutputStream {
+
+	private final static Logger LOG = LoggerFactory.getLogger(AssemblyBuffer.class);
+
+	private final static int INITIAL_CAPACITY = 4096;
+	private final static int REGION_SIZE = 4 * 1024 * 1024;
+
+	private final static Object UNSAFE;
+	private final static Method INVOKE_CLEANER;
+
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+			final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafe = theUnsafe.get(null);
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			invokeCleaner = null;
+		}
+		UNSAFE = unsafe;
+		INVOKE_CLEANER = invokeCleaner;
+	}
+
+	private final int threshold;
+	private final File directory;
+
+	private byte[] memory = new byte[INITIAL_CAPACITY];
+	private long size;
+
+	private File spillFile;
+	private RandomAccessFile spillAccess;
+	private FileChannel spillChannel;
+	private final List<MappedByteBuffer> regions = new ArrayList<>();
+	private MappedByteBuffer region;
+
+	private String contentType;
+	private final Map<String, String> headers = new LinkedHashMap<>();
+	private boolean closed;
+	private volatile boolean released;
+	private final AtomicInteger references = new AtomicInteger(1);
+
+	public AssemblyBuffer(final int threshold, final File directory) {
+		this.threshold = threshold;
+		this.directory = directory;
+	}
+
+	public void addHeader(final String name, final String value) {
+		headers.put(name, value);
+	}
+
+	private void checkReadable() throws IOException {
+		if (released) {
+			throw new IOException("Assembly buffer has been released");
+		}
+	}
+
+	private void checkWritable() throws IOException {
+		if (closed || released) {
+			throw new IOException("Assembly buffer is closed");
+		}
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+	}
+
+	public String getContentType() {
+		return contentType;
+	}
+
+	public Map<String, String> getHeaders() {
+		return headers;
+	}
+
+	public boolean isSpilled() {
+		return spillChannel != null;
+	}
+
+	private void mapRegion() throws IOException {
+		final long position = (long) regions.size() * REGION_SIZE;
+		region = spillChannel.map(MapMode.READ_WRITE, position, REGION_SIZE);
+		regions.add(region);
+	}
+
+	/**
+	 * Opens a new stream over the buffered content. Each stream has its own
+	 * read position, so a closed buffer may be read concurrently.
+	 *
+	 * @return an input stream over the buffered content
+	 * @throws IOException
+	 *             if the buffer has been released
+	 */
+	public InputStream openInputStream() throws IOException {
+		checkReadable();
+		return new RegionInputStream(views());
+	}
+
+	/**
+	 * Releases one reference to this buffer. When the last reference is
+	 * released, the heap memory backing it is dropped, or the regions of the
+	 * temporary file backing it are unmapped and the file deleted, so that
+	 * neither disk space nor address space waits on the garbage collector.
+	 * No stream over the buffer may be read after the last release.
+	 */
+	public void release() {
+		if (references.decrementAndGet() > 0 || released) {
+			return;
+		}
+		released = true;
+		closed = true;
+		memory = null;
+		for (final MappedByteBuffer mapped : regions) {
+			unmap(mapped);
+		}
+		regions.clear();
+		region = null;
+		if (spillChannel != null) {
+			try {
+				spillAccess.close();
+			} catch (final IOException e) {
+				LOG.warn("Unable to close assembly spill file " + spillFile, e);
+			}
+			if (!spillFile.delete()) {
+				LOG.warn("Unable to delete assembly spill file " + spillFile);
+			}
+		}
+	}
+
+	/**
+	 * Acquires additional references to this buffer, one for each reader that
+	 * will later release it.
+	 * 
+	 * @param count
+	 *            the number of references to acquire
+	 * @return this buffer
+	 */
+	public AssemblyBuffer retain(final int count) {
+		references.addAndGet(count);
+		return this;
+	}
+
+	public void setContentType(final String contentType) {
+		this.contentType = contentType;
+	}
+
+	public long size() {
+		return size;
+	}
+
+	private void spill() throws IOException {
+		spillFile = File.createTempFile("docasm-", ".asm", directory);
+		spillFile.deleteOnExit();
+		spillAccess = new RandomAccessFile(spillFile, "rw");
+		spillChannel = spillAccess.getChannel();
+		mapRegion();
+		final byte[] heap = memory;
+		memory = null;
+		writeRegions(heap, 0, (int) size);
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Spilled assembly buffer to " + spillFile);
+		}
+	}
+
+	/**
+	 * Unmaps a region at once, through the cleaner of the JDK at hand, rather
+	 * than when it is garbage collected. A region that cannot be unmapped is
+	 * left to the garbage collector.
+	 */
+	private static void unmap(final MappedByteBuffer mapped) {
+		try {
+			if (INVOKE_CLEANER != null) {
+				INVOKE_CLEANER.invoke(UNSAFE, mapped);
+				return;
+			}
+			final Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			final Object cleaner = cleanerMethod.invoke(mapped);
+			if (cleaner != null) {
+				cleaner.getClass().getMethod("clean").invoke(cleaner);
+			}
+		} catch (final ReflectiveOperationException | RuntimeException e) {
+			LOG.debug("Unable to unmap assembly spill region", e);
+		}
+	}
+
+	private List<ByteBuffer> views() {
+		final List<ByteBuffer> views = new ArrayList<>();
+		if (isSpilled()) {
+			long remaining = size;
+			for (final MappedByteBuffer mapped : regions) {
+				final ByteBuffer view = mapped.duplicate();
+				view.position(0);
+				view.limit((int) Math.min(remaining, REGION_SIZE));
+				views.add(view);
+				remaining -= view.limit();
+			}
+		} else {
+			views.add(ByteBuffer.wrap(memory, 0, (int) size));
+		}
+		return views;
+	}
+
+	@Override
+	public void write(final byte[] b, final int off, final int len) throws IOException {
+		checkWritable();
+		if (!isSpilled()) {
+			if (size + len <= threshold) {
+				final int required = (int) size + len;
+				if (required > memory.length) {
+					memory = Arrays.copyOf(memory, Math.min(Math.max(memory.length << 1, required), threshold));
+				}
+				System.arraycopy(b, off, memory, (int) size, len);
+				size += len;
+				return;
+			}
+			spill();
+		}
+		writeRegions(b, off, len);
+		size += len;
+	}
+
+	@Override
+	public void write(final int b) throws IOException {
+		checkWritable();
+		if (!isSpilled()) {
+			if (size < threshold) {
+				if (size == memory.length) {
+					memory = Arrays.copyOf(memory, Math.min(memory.length << 1, threshold));
+				}
+				memory[(int) size++] = (byte) b;
+				return;
+			}
+			spill();
+		}
+		if (!region.hasRemaining()) {
+			mapRegion();
+		}
+		region.put((byte) b);
+		size++;
+	}
+
+	private void writeRegions(final byte[] b, int off, int len) throws IOException {
+		while (len > 0) {
+			if (!region.hasRemaining()) {
+				mapRegion();
+			}
+			final int count = Math.min(len, region.remaining());
+			region.put(b, off, count);
+			off += count;
+			len -= count;
+		}
+	}
+
+	/**
+	 * Streams the buffered content to the given output stream without copying
+	 * it onto the heap.
+	 *
+	 * @param out
+	 *            the output stream
+	 * @throws IOException
+	 *             if the content could not be written
+	 */
+	public void writeTo(final OutputStream out) throws IOException {
+		checkReadable();
+		final WritableByteChannel channel = Channels.newChannel(out);
+		for (final ByteBuffer view : views()) {
+			while (view.hasRemaining()) {
+				channel.write(view);
+			}
+		}
+	}
+
+	/**
+	 * Input stream over a sequence of byte buffers.
+	 */
+	private static class RegionInputStream extends InputStream {
+
+		private final List<ByteBuffer> views;
+		private int index;
+
+		public RegionInputStream(final List<ByteBuffer> views) {
+			this.views = views;
+		}
+
+		private ByteBuffer current() {
+			while (index < views.size()) {
+				final ByteBuffer view = views.get(index);
+				if (view.hasRemaining()) {
+					return view;
+				}
+				index++;
+			}
+			return null;
+		}
+
+		@Override
+		public int read() {
+			final ByteBuffer view = current();
+			return (view == null) ? -1 : view.get() & 0xff;
+		}
+
+		@Override
+		public int read(final byte[] b, final int off, final int len) {
+			if (len == 0) {
+				return 0;
+			}
+			final ByteBuffer view = current();
+			if (view == null) {
+				return -1;
+			}
+			final int count = Math.min(len, view.remaining());
+			view.get(b, off, count);
+			return count;
+		}
+
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly;
+
+import java.util.Map;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+
+/**
+ * Identity of an assembly request: the document, the version of it being
+ * assembled, the merge data and whether compressed output was accepted. Two
+ * requests with equal keys produce identical output.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class AssemblyKey {
+
+	private final Long documentId;
+	private final Integer version;
+	private final Map<String, Object> data;
+	private final boolean compressionAccepted;
+	private final int hashCode;
+
+	public AssemblyKey(
+			final Long documentId,
+			final Integer version,
+			final Map<String, Object> data,
+			final boolean compressionAccepted) {
+		this.documentId = documentId;
+		this.version = version;
+		this.data = data;
+		this.compressionAccepted = compressionAccepted;
+		this.hashCode = new HashCodeBuilder(17, 31)
+				.append(documentId)
+				.append(version)
+				.append(data)
+				.append(compressionAccepted)
+				.build();
+	}
+
+	@Override
+	public boolean equals(final Object obj) {
+		if (obj == null) {
+			return false;
+		}
+		if (obj == this) {
+			return true;
+		}
+		if (obj.getClass() != getClass()) {
+			return false;
+		}
+		final AssemblyKey rhs = (AssemblyKey) obj;
+		return new EqualsBuilder()
+				.append(hashCode, rhs.hashCode)
+				.append(documentId, rhs.documentId)
+				.append(version, rhs.version)
+				.append(compressionAccepted, rhs.compressionAccepted)
+				.append(data, rhs.data)
+				.build();
+	}
+
+	@Override
+	public int hashCode() {
+		return hashCode;
+	}
+
+	@Override
+	public String toString() {
+		return "AssemblyKey [documentId=" + documentId + ", version=" + version + ", compressionAccepted="
+				+ compressionAccepted + "]";
+	}
+
+}
@@ -0,0 +1,199 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.assembly.pipeline.AssemblyContext;
+import org.jrb.docasm.service.assembly.pipeline.AssemblyPipeline;
+import org.jrb.docasm.service.document.DocumentService;
+import org.jrb.docasm.service.document.DocumentServiceException;
+import org.jrb.docasm.service.document.UnknownDocumentException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.CounterService;
+import org.springframework.stereotype.Service;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Default implementation of an {@link AssemblyService}, delegating to the
+ * {@link AssemblyPipeline}. Assembled output is written to an
+ * {@link AssemblyBuffer}, so large documents spill to disk rather than
+ * accumulating on the heap.
+ * <p>
+ * Identical requests arriving while an assembly is in flight are coalesced:
+ * they wait for the in-flight assembly and share its buffer rather than
+ * rendering the document again. A request interrupted while waiting gives up
+ * its share of the buffer.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Service("assemblyService")
+public class AssemblyServiceImpl implements AssemblyService {
+
+	@Autowired
+	private CounterService counterService;
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private AssemblyPipeline pipeline;
+
+	private final ConcurrentMap<AssemblyKey, Flight> flights = new ConcurrentHashMap<>();
+
+	@Override
+	public AssemblyBuffer assembleDocument(final Long documentId, final Map<String, Object> data)
+			throws UnknownDocumentException, DocumentServiceException, AssemblyServiceException {
+		return assembleDocument(documentId, data, false);
+	}
+
+	@Override
+	public AssemblyBuffer assembleDocument(
+			final Long documentId,
+			final Map<String, Object> data,
+			final boolean compressionAccepted)
+			throws UnknownDocumentException, DocumentServiceException, AssemblyServiceException {
+
+		final Document document = documentService.findDocument(documentId);
+		final AssemblyKey key = new AssemblyKey(documentId, document.getVersion(), data, compressionAccepted);
+
+		Flight flight = null;
+		boolean leader = false;
+		while (flight == null) {
+			final Flight existing = flights.get(key);
+			if (existing != null) {
+				if (existing.join()) {
+					flight = existing;
+					counterService.increment("assembly.coalesced");
+				}
+			} else {
+				final AssemblyContext context = new AssemblyContext(documentId, data, compressionAccepted);
+				context.setDocument(document);
+				final Flight created = new Flight(key, context);
+				if (flights.putIfAbsent(key, created) == null) {
+					flight = created;
+					leader = true;
+				}
+			}
+		}
+
+		if (leader) {
+			flight.task.run();
+		}
+		return flight.await();
+	}
+
+	/**
+	 * An assembly in flight, shared by every request that joins it before it
+	 * lands. Landing happens before the result is published, so each passenger
+	 * holds its own buffer reference by the time it receives the buffer.
+	 */
+	private class Flight implements Callable<AssemblyBuffer> {
+
+		private final AssemblyKey key;
+		private final AssemblyContext context;
+		private final FutureTask<AssemblyBuffer> task = new FutureTask<>(this);
+		private int passengers = 1;
+		private boolean landed;
+
+		public Flight(final AssemblyKey key, final AssemblyContext context) {
+			this.key = key;
+			this.context = context;
+		}
+
+		public AssemblyBuffer await() {
+			try {
+				return task.get();
+			} catch (final InterruptedException e) {
+				Thread.currentThread().interrupt();
+				desert();
+				throw new AssemblyServiceException("Interrupted while awaiting document assembly! " + key, e);
+			} catch (final ExecutionException e) {
+				final Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException) cause;
+				}
+				throw new AssemblyServiceException("Unable to assemble document! " + key, cause);
+			}
+		}
+
+		@Override
+		public AssemblyBuffer call() {
+			AssemblyBuffer buffer = null;
+			try {
+				buffer = pipeline.execute(context);
+				return buffer;
+			} finally {
+				flights.remove(key, this);
+				land(buffer);
+			}
+		}
+
+		/**
+		 * Leaves the flight without taking its buffer. A passenger leaving
+		 * before landing is simply no longer counted; one leaving after
+		 * releases the reference retained for it once the buffer is
+		 * published, which follows landing closely.
+		 */
+		private void desert() {
+			synchronized (this) {
+				if (!landed) {
+					passengers--;
+					return;
+				}
+			}
+			try {
+				final AssemblyBuffer buffer = Uninterruptibles.getUninterruptibly(task);
+				if (buffer != null) {
+					buffer.release();
+				}
+			} catch (final ExecutionException e) {
+				// no buffer was handed out
+			}
+		}
+
+		public synchronized boolean join() {
+			if (landed) {
+				return false;
+			}
+			passengers++;
+			return true;
+		}
+
+		private synchronized void land(final AssemblyBuffer buffer) {
+			landed = true;
+			if (buffer != null && passengers > 1) {
+				buffer.retain(passengers - 1);
+			}
+		}
+
+	}
+
+}
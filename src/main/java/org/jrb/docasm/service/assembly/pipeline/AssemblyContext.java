@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import java.util.Map;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.assembly.AssemblyBuffer;
+import org.jrb.docasm.service.assembly.template.RenderContext;
+import org.jrb.docasm.service.assembly.template.Template;
+
+/**
+ * State handed from stage to stage of an {@link AssemblyPipeline} while a
+ * single document is assembled. Stages hand over the output buffer by
+ * reference, never by copying its content.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class AssemblyContext {
+
+	private final Long documentId;
+	private final Map<String, Object> data;
+	private final boolean compressionAccepted;
+
+	private Document document;
+	private Template template;
+	private RenderContext renderContext;
+	private AssemblyBuffer buffer;
+
+	public AssemblyContext(final Long documentId, final Map<String, Object> data, final boolean compressionAccepted) {
+		this.documentId = documentId;
+		this.data = data;
+		this.compressionAccepted = compressionAccepted;
+	}
+
+	public AssemblyBuffer getBuffer() {
+		return buffer;
+	}
+
+	public Map<String, Object> getData() {
+		return data;
+	}
+
+	public Document getDocument() {
+		return document;
+	}
+
+	public Long getDocumentId() {
+		return documentId;
+	}
+
+	public RenderContext getRenderContext() {
+		return renderContext;
+	}
+
+	public Template getTemplate() {
+		return template;
+	}
+
+	public boolean isCompressionAccepted() {
+		return compressionAccepted;
+	}
+
+	/**
+	 * Releases the current output buffer, if any.
+	 */
+	public void release() {
+		if (buffer != null) {
+			buffer.release();
+			buffer = null;
+		}
+	}
+
+	/**
+	 * Replaces the current output buffer with a transformed one, carrying over
+	 * its content type and headers and releasing it.
+	 * 
+	 * @param transformed
+	 *            the buffer holding the transformed output
+	 */
+	public void replaceBuffer(final AssemblyBuffer transformed) {
+		if (buffer != null) {
+			transformed.setContentType(buffer.getContentType());
+			transformed.getHeaders().putAll(buffer.getHeaders());
+			buffer.release();
+		}
+		buffer = transformed;
+	}
+
+	public void setBuffer(final AssemblyBuffer buffer) {
+		this.buffer = buffer;
+	}
+
+	public void setDocument(final Document document) {
+		this.document = document;
+	}
+
+	public void setRenderContext(final RenderContext renderContext) {
+		this.renderContext = renderContext;
+	}
+
+	public void setTemplate(final Template template) {
+		this.template = template;
+	}
+
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.PostConstruct;
+
+import org.jrb.docasm.service.assembly.AssemblyBuffer;
+import org.jrb.docasm.service.assembly.AssemblyServiceException;
+import org.jrb.docasm.service.document.DocumentServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.OrderComparator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assembles a document by running every registered {@link AssemblyStage} in
+ * order, timing each one.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Component
+public class AssemblyPipeline {
+
+	private final static Logger LOG = LoggerFactory.getLogger(AssemblyPipeline.class);
+
+	@Autowired
+	private List<AssemblyStage> stages;
+
+	@Autowired
+	private AssemblyTimings timings;
+
+	/**
+	 * Runs the pipeline.
+	 * 
+	 * @param context
+	 *            the assembly state
+	 * @return the buffer holding the assembled document
+	 * @throws DocumentServiceException
+	 *             if the document could not be found
+	 * @throws AssemblyServiceException
+	 *             if a stage failed
+	 */
+	public AssemblyBuffer execute(final AssemblyContext context)
+			throws DocumentServiceException, AssemblyServiceException {
+		try {
+			for (final AssemblyStage stage : stages) {
+				final long start = System.nanoTime();
+				stage.process(context);
+				timings.record(stage.getName(), System.nanoTime() - start);
+			}
+			return context.getBuffer();
+		} catch (final DocumentServiceException | AssemblyServiceException e) {
+			context.release();
+			throw e;
+		} catch (final Throwable t) {
+			context.release();
+			throw new AssemblyServiceException("Unable to assemble document! id = " + context.getDocumentId(), t);
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		final List<AssemblyStage> ordered = new ArrayList<>(stages);
+		OrderComparator.sort(ordered);
+		stages = ordered;
+		if (LOG.isInfoEnabled()) {
+			final List<String> names = new ArrayList<>();
+			for (final AssemblyStage stage : stages) {
+				names.add(stage.getName());
+			}
+			LOG.info("Assembly pipeline stages: " + names);
+		}
+	}
+
+}
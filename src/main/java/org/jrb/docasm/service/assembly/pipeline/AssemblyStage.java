@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import org.springframework.core.Ordered;
+
+/**
+ * A pluggable stage of the {@link AssemblyPipeline}. Stages are Spring beans
+ * run in ascending {@link #getOrder() order}; the built-in stages use the
+ * order constants defined here, leaving room for additional stages between
+ * them.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public interface AssemblyStage extends Ordered {
+
+	int FETCH_ORDER = 100;
+	int PARSE_ORDER = 200;
+	int BIND_ORDER = 300;
+	int RENDER_ORDER = 400;
+	int POST_PROCESS_ORDER = 500;
+
+	/**
+	 * @return the stage name, used to report its timings
+	 */
+	String getName();
+
+	/**
+	 * Performs this stage of the assembly.
+	 * 
+	 * @param context
+	 *            the assembly state
+	 * @throws Exception
+	 *             if the stage failed
+	 */
+	void process(AssemblyContext context) throws Exception;
+
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.metrics.GaugeService;
+import org.springframework.stereotype.Component;
+
+/**
+ * Records the time spent in each {@link AssemblyStage} and publishes it
+ * through the actuator metrics as
+ * <code>assembly.&lt;stage&gt;.{last,mean,max}Nanos</code> and
+ * <code>.count</code> gauges. Timings are kept per stage only, so the number
+ * of gauges is fixed by the pipeline rather than by the documents assembled.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Component
+public class AssemblyTimings {
+
+	/**
+	 * Running totals for one stage, with the names of its gauges.
+	 */
+	private static class Timing {
+
+		private final String lastName;
+		private final String meanName;
+		private final String maxName;
+		private final String countName;
+
+		private final AtomicLong count = new AtomicLong();
+		private final AtomicLong totalNanos = new AtomicLong();
+		private final AtomicLong maxNanos = new AtomicLong();
+
+		public Timing(final String stage) {
+			final String prefix = PREFIX + stage;
+			this.lastName = prefix + ".lastNanos";
+			this.meanName = prefix + ".meanNanos";
+			this.maxName = prefix + ".maxNanos";
+			this.countName = prefix + ".count";
+		}
+
+		public void record(final long nanos) {
+			count.incrementAndGet();
+			totalNanos.addAndGet(nanos);
+			long max;
+			while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos)) {
+			}
+		}
+
+	}
+
+	private final static String PREFIX = "assembly.";
+
+	private final ConcurrentMap<String, Timing> timings = new ConcurrentHashMap<>();
+
+	@Autowired
+	private GaugeService gaugeService;
+
+	/**
+	 * Records the duration of one stage run.
+	 * 
+	 * @param stage
+	 *            the stage name
+	 * @param nanos
+	 *            the elapsed time in nanoseconds
+	 */
+	public void record(final String stage, final long nanos) {
+		Timing timing = timings.get(stage);
+		if (timing == null) {
+			timings.putIfAbsent(stage, new Timing(stage));
+			timing = timings.get(stage);
+		}
+		timing.record(nanos);
+		final long count = timing.count.get();
+		gaugeService.submit(timing.lastName, nanos);
+		gaugeService.submit(timing.meanName, timing.totalNanos.get() / (double) count);
+		gaugeService.submit(timing.maxName, timing.maxNanos.get());
+		gaugeService.submit(timing.countName, count);
+	}
+
+}
@@ -0,0 +1,80 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+import org.jrb.docasm.service.assembly.AssemblyBuffer;
+import org.jrb.docasm.service.assembly.AssemblyBufferFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Post-processing stage that gzip-compresses the assembled document when the
+ * client accepts it and the document is large enough to benefit. Since the
+ * response then depends on what the client accepts, it always varies by
+ * <em>Accept-Encoding</em>.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Component
+public class CompressionStage implements AssemblyStage {
+
+	private final static String ACCEPT_ENCODING = "Accept-Encoding";
+	private final static String VARY = "Vary";
+
+	private final static int MIN_COMPRESSED_SIZE = 1024;
+
+	@Autowired
+	private AssemblyBufferFactory bufferFactory;
+
+	@Override
+	public String getName() {
+		return "compress";
+	}
+
+	@Override
+	public int getOrder() {
+		return POST_PROCESS_ORDER;
+	}
+
+	@Override
+	public void process(final AssemblyContext context) throws IOException {
+		final AssemblyBuffer buffer = context.getBuffer();
+		buffer.addHeader(VARY, ACCEPT_ENCODING);
+		if (!context.isCompressionAccepted() || buffer.size() < MIN_COMPRESSED_SIZE) {
+			return;
+		}
+		final AssemblyBuffer compressed = bufferFactory.newBuffer();
+		try (final GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+			buffer.writeTo(out);
+		} catch (final IOException e) {
+			compressed.release();
+			throw e;
+		}
+		context.replaceBuffer(compressed);
+		compressed.addHeader("Content-Encoding", "gzip");
+	}
+
+}
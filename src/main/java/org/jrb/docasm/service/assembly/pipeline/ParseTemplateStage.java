@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.assembly.AssemblyServiceException;
+import org.jrb.docasm.service.assembly.InvalidTemplateException;
+import org.jrb.docasm.service.assembly.template.PartialEvaluator;
+import org.jrb.docasm.service.assembly.template.Template;
+import org.jrb.docasm.service.assembly.template.TemplateParser;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Assembly stage that parses the document template, reusing the parse of the
+ * same cached document instance. Parsed templates are partially evaluated
+ * against their document, so only the sections depending on merge data are
+ * left to render. A residual template stored with the document is parsed in
+ * place of its original, as it is already evaluated.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Component
+public class ParseTemplateStage implements AssemblyStage {
+
+	@Autowired
+	private PartialEvaluator partialEvaluator;
+
+	@Autowired
+	private TemplateParser templateParser;
+
+	/**
+	 * Residual templates, weakly keyed by the cached document instance so that
+	 * a template is re-parsed whenever its document is reloaded.
+	 */
+	private final LoadingCache<Document, Template> templateCache = CacheBuilder.newBuilder()
+			.weakKeys()
+			.build(new CacheLoader<Document, Template>() {
+				@Override
+				public Template load(final Document document) throws InvalidTemplateException {
+					if (document.getResidualTemplate() != null) {
+						return templateParser.parse(document.getResidualTemplate());
+					}
+					return partialEvaluator.evaluate(templateParser.parse(document.getTemplate()), document);
+				}
+			});
+
+	@Override
+	public String getName() {
+		return "parse";
+	}
+
+	@Override
+	public int getOrder() {
+		return PARSE_ORDER;
+	}
+
+	/**
+	 * Parses and partially evaluates the template of a document, unless its
+	 * residual template is already cached.
+	 * 
+	 * @param document
+	 *            the cached document instance
+	 * @return the residual template
+	 * @throws AssemblyServiceException
+	 *             if the template could not be parsed
+	 */
+	public Template prepare(final Document document) throws AssemblyServiceException {
+		try {
+			return templateCache.getUnchecked(document);
+		} catch (final UncheckedExecutionException e) {
+			if (e.getCause() instanceof AssemblyServiceException) {
+				throw (AssemblyServiceException) e.getCause();
+			}
+			throw new AssemblyServiceException("Unable to parse template! document = " + document.getId(), e.getCause());
+		}
+	}
+
+	@Override
+	public void process(final AssemblyContext context) throws AssemblyServiceException {
+		context.setTemplate(prepare(context.getDocument()));
+	}
+
+}
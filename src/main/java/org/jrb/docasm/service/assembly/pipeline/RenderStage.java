@@ -0,0 +1,79 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.Charset;
+
+import org.jrb.docasm.service.assembly.AssemblyBuffer;
+import org.jrb.docasm.service.assembly.AssemblyBufferFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Assembly stage that renders the bound template into a new
+ * {@link AssemblyBuffer}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Component
+public class RenderStage implements AssemblyStage {
+
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+	private final static String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+	@Autowired
+	private AssemblyBufferFactory bufferFactory;
+
+	private String contentType(final URI templateUri) {
+		final String contentType = (templateUri != null && templateUri.getPath() != null)
+				? URLConnection.guessContentTypeFromName(templateUri.getPath())
+				: null;
+		return (contentType != null) ? contentType : DEFAULT_CONTENT_TYPE;
+	}
+
+	@Override
+	public String getName() {
+		return "render";
+	}
+
+	@Override
+	public int getOrder() {
+		return RENDER_ORDER;
+	}
+
+	@Override
+	public void process(final AssemblyContext context) throws IOException {
+		final AssemblyBuffer buffer = bufferFactory.newBuffer();
+		buffer.setContentType(contentType(context.getDocument().getTemplateUri()));
+		context.setBuffer(buffer);
+		try (final Writer out = new OutputStreamWriter(buffer, UTF8)) {
+			context.getTemplate().render(context.getRenderContext(), out);
+		}
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+
+import javax.annotation.PostConstruct;
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Post-processing stage that signs the assembled document with an HMAC-SHA256
+ * over the bytes sent to the client, when <code>assembly.signature.key</code>
+ * is configured.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Component
+public class SignatureStage implements AssemblyStage {
+
+	public final static String HEADER_SIGNATURE = "x-content-signature";
+
+	private final static String ALGORITHM = "HmacSHA256";
+
+	@Autowired
+	private Environment env;
+
+	private SecretKeySpec key;
+
+	@Override
+	public String getName() {
+		return "sign";
+	}
+
+	@Override
+	public int getOrder() {
+		return POST_PROCESS_ORDER + 10;
+	}
+
+	@PostConstruct
+	public void init() {
+		final String secret = env.getProperty("assembly.signature.key");
+		if (StringUtils.isNotEmpty(secret)) {
+			key = new SecretKeySpec(secret.getBytes(Charset.forName("UTF-8")), ALGORITHM);
+		}
+	}
+
+	@Override
+	public void process(final AssemblyContext context) throws IOException, GeneralSecurityException {
+		if (key == null) {
+			return;
+		}
+		final Mac mac = Mac.getInstance(ALGORITHM);
+		mac.init(key);
+		final byte[] chunk = new byte[8192];
+		try (final InputStream in = context.getBuffer().openInputStream()) {
+			int count;
+			while ((count = in.read(chunk)) > 0) {
+				mac.update(chunk, 0, count);
+			}
+		}
+		context.getBuffer().addHeader(HEADER_SIGNATURE, "hmac-sha256=" + BaseEncoding.base64().encode(mac.doFinal()));
+	}
+
+}
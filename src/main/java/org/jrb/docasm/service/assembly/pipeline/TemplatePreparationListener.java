@@ -0,0 +1,116 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.pipeline;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import javax.annotation.Resource;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.assembly.template.Template;
+import org.jrb.docasm.service.assembly.template.TemplateWriter;
+import org.jrb.docasm.service.document.DocumentEvent;
+import org.jrb.docasm.service.document.DocumentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Prepares the residual template of a document once the document is created,
+ * updated or patched, so that its first assembly does not pay for parsing and
+ * partial evaluation. Preparation runs on an executor of its own rather than
+ * in the thread committing the change, which would otherwise wait on fetching
+ * and compiling the template. The residual of a stored template is saved with
+ * the document version it was evaluated for; a template fetched from its URI
+ * is prepared afresh whenever its document is loaded, since its content may
+ * have changed.
+ * <p>
+ * A template that cannot be prepared, or that finds the preparation queue
+ * full, is left to be prepared on first assembly. Bulk-imported documents are
+ * left to be prepared on first assembly, so that an import does not fetch
+ * every template.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Component
+public class TemplatePreparationListener implements ApplicationListener<DocumentEvent> {
+
+	private final static Logger LOG = LoggerFactory.getLogger(TemplatePreparationListener.class);
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private ParseTemplateStage parseTemplateStage;
+
+	@Resource
+	private Executor templatePreparationExecutor;
+
+	@Autowired
+	private TemplateWriter templateWriter;
+
+	@Override
+	public void onApplicationEvent(final DocumentEvent event) {
+		if (event.getType() != DocumentEvent.Type.CREATED && event.getType() != DocumentEvent.Type.UPDATED
+				&& event.getType() != DocumentEvent.Type.PATCHED) {
+			return;
+		}
+		final Long documentId = event.getDocument().getId();
+		try {
+			templatePreparationExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					prepare(documentId);
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			LOG.warn("Template preparation queue is full! document = " + documentId);
+		}
+	}
+
+	/**
+	 * Prepares the residual template of a document, saving it unless the
+	 * template is fetched from its URI or the residual was already stored.
+	 * 
+	 * @param documentId
+	 *            the document identifier
+	 */
+	public void prepare(final Long documentId) {
+		try {
+			final Document document = documentService.findDocument(documentId);
+			final Template residual = parseTemplateStage.prepare(document);
+			if (document.getStoredTemplate() != null && document.getResidualTemplate() == null) {
+				documentService.saveResidualTemplate(
+						document.getId(),
+						document.getVersion(),
+						templateWriter.write(residual));
+			}
+		} catch (final RuntimeException e) {
+			LOG.warn("Unable to prepare template! document = " + documentId, e);
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.lang3.StringUtils;
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.codehaus.janino.Java;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.Visitor;
+import org.codehaus.janino.util.Traverser;
+import org.jrb.docasm.service.assembly.InvalidTemplateException;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Compiles template expressions to bytecode with Janino. Each expression
+ * becomes a class implementing {@link CompiledExpression}, so evaluation is a
+ * plain interface call. Compiled expressions are cached by their text and the
+ * names of the variables in scope, and are compiled against a
+ * {@link SandboxClassLoader}. Before compiling, an expression is parsed with
+ * Janino's own scanner, so Unicode escapes are resolved exactly as the
+ * compiler resolves them, and its syntax tree is checked. Expressions may
+ * neither assign nor call the mutators of the collection types they can
+ * name, so the merge data and variables they share stay untouched, nor
+ * create arrays, whose size they would control.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class ExpressionCompiler {
+
+	private final static Set<String> DENIED_NAMES = new HashSet<>(Arrays.asList("Class", "variables"));
+
+	private final static Set<String> DENIED_METHODS = new HashSet<>(Arrays.asList(
+			"add", "addAll", "append", "clear", "compute", "computeIfAbsent", "computeIfPresent", "delete",
+			"deleteCharAt", "ensureCapacity", "evaluate", "forName", "getClass", "getClassLoader", "insert", "merge",
+			"newInstance", "put", "putAll", "putIfAbsent", "remove", "removeAll", "removeIf", "replace",
+			"replaceAll", "retainAll", "reverse", "sort", "trimToSize"));
+
+	private final static String DENIED_METHOD_PREFIX = "set";
+
+	private final static Set<String> VOLATILE_METHODS = new HashSet<>(Arrays.asList("random"));
+
+	private final ClassLoader sandbox = new SandboxClassLoader(getClass().getClassLoader());
+
+	private final LoadingCache<String, CompiledExpression> expressions;
+
+	public ExpressionCompiler(final int maxExpressions) {
+		expressions = CacheBuilder.newBuilder()
+				.maximumSize(maxExpressions)
+				.build(new CacheLoader<String, CompiledExpression>() {
+					@Override
+					public CompiledExpression load(final String classBody) throws Exception {
+						return cook(classBody);
+					}
+				});
+	}
+
+	private String classBody(final String expression, final List<String> variables) {
+		final StringBuilder body = new StringBuilder("public Object evaluate(Object[] variables) {\n");
+		for (int slot = 0; slot < variables.size(); slot++) {
+			body.append("final Object ").append(variables.get(slot)).append(" = variables[").append(slot).append("];\n");
+		}
+		body.append("final Object result = (").append(expression).append(");\n");
+		body.append("return result;\n}\n");
+		return body.toString();
+	}
+
+	/**
+	 * Compiles an expression, or returns the cached compilation of an identical
+	 * expression over the same variables.
+	 * 
+	 * @param expression
+	 *            the expression text
+	 * @param variables
+	 *            the names of the template variables in scope, in slot order
+	 * @return the compiled expression
+	 * @throws InvalidTemplateException
+	 *             if the expression is not permitted or does not compile
+	 */
+	public CompiledExpression compile(final String expression, final List<String> variables)
+			throws InvalidTemplateException {
+		verify(expression);
+		try {
+			return expressions.getUnchecked(classBody(expression, variables));
+		} catch (final UncheckedExecutionException e) {
+			throw new InvalidTemplateException("Invalid expression! expression = " + expression, e.getCause());
+		}
+	}
+
+	private CompiledExpression cook(final String classBody) throws CompileException, ReflectiveOperationException {
+		final ClassBodyEvaluator evaluator = new ClassBodyEvaluator();
+		evaluator.setParentClassLoader(sandbox);
+		evaluator.setDefaultImports(new String[] { "static " + ExpressionFunctions.class.getName() + ".*" });
+		evaluator.setImplementedInterfaces(new Class[] { CompiledExpression.class });
+		evaluator.cook(classBody);
+		return (CompiledExpression) evaluator.getClazz().newInstance();
+	}
+
+	/**
+	 * Determines which template variables an expression may read. The result
+	 * is conservative: any name whose first identifier is a variable in scope
+	 * counts as a reference. Expressions that may yield a different value on
+	 * each evaluation, such as those creating objects or drawing random
+	 * numbers, and expressions that do not parse are reported as reading every
+	 * slot.
+	 * 
+	 * @param expression
+	 *            the expression text
+	 * @param variables
+	 *            the names of the template variables in scope, in slot order
+	 * @return a mask with one bit set for each referenced slot; slots beyond
+	 *         the width of the mask share its highest bit
+	 */
+	public long referencedSlots(final String expression, final List<String> variables) {
+		final long[] slots = { 0 };
+		final Traverser traverser = new Traverser() {
+			@Override
+			public void traverseAmbiguousName(final Java.AmbiguousName an) {
+				final int slot = variables.lastIndexOf(an.identifiers[0]);
+				if (slot >= 0) {
+					slots[0] |= Template.slotMask(slot);
+				}
+				super.traverseAmbiguousName(an);
+			}
+
+			@Override
+			public void traverseMethodInvocation(final Java.MethodInvocation mi) {
+				if (VOLATILE_METHODS.contains(mi.methodName)) {
+					slots[0] = -1L;
+				}
+				super.traverseMethodInvocation(mi);
+			}
+
+			@Override
+			public void traverseNewClassInstance(final Java.NewClassInstance nci) {
+				slots[0] = -1L;
+				super.traverseNewClassInstance(nci);
+			}
+		};
+		try {
+			traverse(parse(expression), traverser);
+		} catch (final InvalidTemplateException e) {
+			return -1L;
+		}
+		return slots[0];
+	}
+
+	private Java.Rvalue parse(final String expression) throws InvalidTemplateException {
+		try {
+			final Scanner scanner = new Scanner(null, new StringReader(expression));
+			final Java.Rvalue rvalue = new Parser(scanner).parseExpression().toRvalue();
+			if (rvalue == null) {
+				throw new InvalidTemplateException("Expression is not a value! expression = " + expression);
+			}
+			if (!scanner.peek().isEOF()) {
+				throw new InvalidTemplateException("Expression must not contain statements! expression = "
+						+ expression);
+			}
+			return rvalue;
+		} catch (final CompileException | IOException e) {
+			throw new InvalidTemplateException("Invalid expression! expression = " + expression, e);
+		}
+	}
+
+	private void traverse(final Java.Rvalue rvalue, final Traverser traverser) {
+		rvalue.accept((Visitor.RvalueVisitor) traverser.comprehensiveVisitor());
+	}
+
+	private void verify(final String expression) throws InvalidTemplateException {
+		if (StringUtils.isBlank(expression)) {
+			throw new InvalidTemplateException("Empty expression!");
+		}
+		final Java.Rvalue rvalue = parse(expression);
+		final String[] denial = { null };
+		final Traverser traverser = new Traverser() {
+			private void deny(final String reason) {
+				if (denial[0] == null) {
+					denial[0] = reason;
+				}
+			}
+
+			private void denyNames(final String[] identifiers) {
+				for (final String identifier : identifiers) {
+					if (DENIED_NAMES.contains(identifier)) {
+						deny("use a denied name");
+					}
+				}
+			}
+
+			@Override
+			public void traverseAmbiguousName(final Java.AmbiguousName an) {
+				denyNames(an.identifiers);
+				super.traverseAmbiguousName(an);
+			}
+
+			@Override
+			public void traverseAssignment(final Java.Assignment a) {
+				deny("assign");
+				super.traverseAssignment(a);
+			}
+
+			@Override
+			public void traverseClassLiteral(final Java.ClassLiteral cl) {
+				deny("use a denied name");
+				super.traverseClassLiteral(cl);
+			}
+
+			@Override
+			public void traverseCrement(final Java.Crement c) {
+				deny("assign");
+				super.traverseCrement(c);
+			}
+
+			@Override
+			public void traverseMethodInvocation(final Java.MethodInvocation mi) {
+				if (DENIED_METHODS.contains(mi.methodName) || mi.methodName.startsWith(DENIED_METHOD_PREFIX)) {
+					deny("call a denied method");
+				}
+				super.traverseMethodInvocation(mi);
+			}
+
+			@Override
+			public void traverseNewAnonymousClassInstance(final Java.NewAnonymousClassInstance naci) {
+				deny("declare classes");
+				super.traverseNewAnonymousClassInstance(naci);
+			}
+
+			@Override
+			public void traverseNewArray(final Java.NewArray na) {
+				deny("create arrays");
+				super.traverseNewArray(na);
+			}
+
+			@Override
+			public void traverseNewInitializedArray(final Java.NewInitializedArray nia) {
+				deny("create arrays");
+				super.traverseNewInitializedArray(nia);
+			}
+
+			@Override
+			public void traverseReferenceType(final Java.ReferenceType rt) {
+				denyNames(rt.identifiers);
+				super.traverseReferenceType(rt);
+			}
+
+			@Override
+			public void traverseSuperclassMethodInvocation(final Java.SuperclassMethodInvocation smi) {
+				deny("call a denied method");
+				super.traverseSuperclassMethodInvocation(smi);
+			}
+
+			@Override
+			public void traverseThisReference(final Java.ThisReference tr) {
+				deny("use a denied name");
+				super.traverseThisReference(tr);
+			}
+		};
+		traverse(rvalue, traverser);
+		if (denial[0] != null) {
+			throw new InvalidTemplateException("Expression must not " + denial[0] + "! expression = " + expression);
+		}
+	}
+
+}
@@ -0,0 +1,135 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Helper functions statically imported into every template expression. Since
+ * template variables are untyped, these give expressions a concise way to
+ * navigate, test and convert merge data.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public final class ExpressionFunctions {
+
+	private ExpressionFunctions() {
+	}
+
+	/**
+	 * Determines the truth of a value: <code>null</code>, <code>false</code>,
+	 * zero, empty strings and empty collections are false; everything else is
+	 * true.
+	 * 
+	 * @param value
+	 *            the value to test
+	 * @return the truth of the value
+	 */
+	public static boolean bool(final Object value) {
+		if (value == null) {
+			return false;
+		} else if (value instanceof Boolean) {
+			return (Boolean) value;
+		} else if (value instanceof Number) {
+			return ((Number) value).doubleValue() != 0;
+		} else if (value instanceof CharSequence) {
+			return ((CharSequence) value).length() > 0;
+		}
+		return size(value) != 0;
+	}
+
+	public static Object get(final Object target, final String path) {
+		return PropertyPath.of(path).resolve(target);
+	}
+
+	/**
+	 * Adapts a value to an iterable: collections and arrays iterate their
+	 * elements, maps their entries, and a number <em>n</em> the integers
+	 * <em>0..n-1</em>. <code>null</code> is empty and any other value iterates
+	 * only itself. A loop over the adapted value counts each item against the
+	 * iteration budget of its rendering, so a range drawn from merge data
+	 * cannot run unbounded.
+	 * 
+	 * @param value
+	 *            the value to adapt
+	 * @return the iterable view of the value
+	 */
+	public static Iterable<?> iterable(final Object value) {
+		if (value == null) {
+			return Collections.emptyList();
+		} else if (value instanceof Iterable) {
+			return (Iterable<?>) value;
+		} else if (value instanceof Object[]) {
+			return Arrays.asList((Object[]) value);
+		} else if (value instanceof Map) {
+			return ((Map<?, ?>) value).entrySet();
+		} else if (value instanceof Number) {
+			final int count = ((Number) value).intValue();
+			return new AbstractList<Integer>() {
+				@Override
+				public Integer get(final int index) {
+					return index;
+				}
+
+				@Override
+				public int size() {
+					return Math.max(count, 0);
+				}
+			};
+		}
+		return Collections.singletonList(value);
+	}
+
+	public static double num(final Object value) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof Number) {
+			return ((Number) value).doubleValue();
+		}
+		return Double.parseDouble(value.toString());
+	}
+
+	public static int size(final Object value) {
+		if (value == null) {
+			return 0;
+		} else if (value instanceof Collection) {
+			return ((Collection<?>) value).size();
+		} else if (value instanceof Map) {
+			return ((Map<?, ?>) value).size();
+		} else if (value instanceof Object[]) {
+			return ((Object[]) value).length;
+		} else if (value instanceof CharSequence) {
+			return ((CharSequence) value).length();
+		}
+		return 1;
+	}
+
+	public static String str(final Object value) {
+		return (value == null) ? "" : value.toString();
+	}
+
+}
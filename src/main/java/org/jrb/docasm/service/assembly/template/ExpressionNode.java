@@ -0,0 +1,64 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.io.IOException;
+
+/**
+ * Template section that writes the value of a computed expression.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class ExpressionNode implements TemplateNode {
+
+	private final CompiledExpression expression;
+	private final String source;
+	private final long slots;
+
+	public ExpressionNode(final CompiledExpression expression, final String source, final long slots) {
+		this.expression = expression;
+		this.source = source;
+		this.slots = slots;
+	}
+
+	public CompiledExpression getExpression() {
+		return expression;
+	}
+
+	public long getSlots() {
+		return slots;
+	}
+
+	public String getSource() {
+		return source;
+	}
+
+	@Override
+	public void render(final RenderContext context) throws IOException {
+		final Object value = expression.evaluate(context.getVariables());
+		if (value != null) {
+			context.getOut().write(value.toString());
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Template section rendered once for each item of a computed collection, with
+ * the current item bound to a loop variable.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class ForNode implements TemplateNode {
+
+	private final int slot;
+	private final String name;
+	private final CompiledExpression items;
+	private final String itemsSource;
+	private final long itemsSlots;
+	private final List<TemplateNode> body;
+
+	public ForNode(
+			final int slot,
+			final String name,
+			final CompiledExpression items,
+			final String itemsSource,
+			final long itemsSlots,
+			final List<TemplateNode> body) {
+		this.slot = slot;
+		this.name = name;
+		this.items = items;
+		this.itemsSource = itemsSource;
+		this.itemsSlots = itemsSlots;
+		this.body = body;
+	}
+
+	public List<TemplateNode> getBody() {
+		return body;
+	}
+
+	public CompiledExpression getItems() {
+		return items;
+	}
+
+	public long getItemsSlots() {
+		return itemsSlots;
+	}
+
+	public String getItemsSource() {
+		return itemsSource;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public void render(final RenderContext context) throws IOException {
+		for (final Object item : ExpressionFunctions.iterable(items.evaluate(context.getVariables()))) {
+			context.iterate();
+			context.setVariable(slot, item);
+			for (final TemplateNode node : body) {
+				node.render(context);
+			}
+		}
+		context.setVariable(slot, null);
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Template section rendered only when its condition holds, with an optional
+ * alternative section rendered otherwise.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class IfNode implements TemplateNode {
+
+	private final CompiledExpression condition;
+	private final String conditionSource;
+	private final long conditionSlots;
+	private final List<TemplateNode> thenNodes;
+	private final List<TemplateNode> elseNodes;
+
+	public IfNode(
+			final CompiledExpression condition,
+			final String conditionSource,
+			final long conditionSlots,
+			final List<TemplateNode> thenNodes,
+			final List<TemplateNode> elseNodes) {
+		this.condition = condition;
+		this.conditionSource = conditionSource;
+		this.conditionSlots = conditionSlots;
+		this.thenNodes = thenNodes;
+		this.elseNodes = elseNodes;
+	}
+
+	public CompiledExpression getCondition() {
+		return condition;
+	}
+
+	public long getConditionSlots() {
+		return conditionSlots;
+	}
+
+	public String getConditionSource() {
+		return conditionSource;
+	}
+
+	public List<TemplateNode> getElseNodes() {
+		return elseNodes;
+	}
+
+	public List<TemplateNode> getThenNodes() {
+		return thenNodes;
+	}
+
+	@Override
+	public void render(final RenderContext context) throws IOException {
+		final boolean holds = ExpressionFunctions.bool(condition.evaluate(context.getVariables()));
+		for (final TemplateNode node : holds ? thenNodes : elseNodes) {
+			node.render(context);
+		}
+	}
+
+}
@@ -0,0 +1,296 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Resolves, ahead of time, every section of a {@link Template} that does not
+ * depend on merge data. Placeholders, expressions, conditionals and loops
+ * reading only the document variable are rendered once, adjacent text is
+ * merged, and the residual template keeps only the truly dynamic sections.
+ * Any section that fails to evaluate is left in place, so that it fails the
+ * same way when rendered. Loops are unrolled only within a budget of
+ * iterations per template and a limit on the text of each loop; a loop beyond
+ * either is kept as it is and runs when rendered.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class PartialEvaluator {
+
+	private final static Logger LOG = LoggerFactory.getLogger(PartialEvaluator.class);
+
+	private final int maxIterations;
+	private final int maxLength;
+
+	/**
+	 * Remaining loop iterations that one evaluation may still unroll.
+	 */
+	private static class Budget {
+		private int iterations;
+
+		private Budget(final int iterations) {
+			this.iterations = iterations;
+		}
+	}
+
+	/**
+	 * @param maxIterations
+	 *            the most loop iterations unrolled for one template
+	 * @param maxLength
+	 *            the longest text a single loop may unroll to
+	 */
+	public PartialEvaluator(final int maxIterations, final int maxLength) {
+		this.maxIterations = maxIterations;
+		this.maxLength = maxLength;
+	}
+
+	/**
+	 * Partially evaluates a template for a given document.
+	 *
+	 * @param template
+	 *            the parsed template
+	 * @param document
+	 *            the document whose template it is
+	 * @return the residual template
+	 */
+	public Template evaluate(final Template template, final Object document) {
+		final Object[] variables = new Object[template.getSlotCount()];
+		variables[Template.DOCUMENT_SLOT] = document;
+		final List<TemplateNode> nodes = evaluate(
+				template.getNodes(),
+				variables,
+				Template.slotMask(Template.DOCUMENT_SLOT),
+				new Budget(maxIterations));
+		if (LOG.isDebugEnabled()) {
+			LOG.debug("Partially evaluated template from " + count(template.getNodes()) + " to " + count(nodes)
+					+ " nodes");
+		}
+		return new Template(nodes, template.getSlotCount(), template.getMaxIterations());
+	}
+
+	private void append(final List<TemplateNode> nodes, final StringBuilder text, final List<TemplateNode> residual) {
+		for (final TemplateNode node : residual) {
+			if (node instanceof TextNode) {
+				text.append(((TextNode) node).getText());
+			} else {
+				flush(text, nodes);
+				nodes.add(node);
+			}
+		}
+	}
+
+	private int count(final List<TemplateNode> nodes) {
+		int count = nodes.size();
+		for (final TemplateNode node : nodes) {
+			if (node instanceof IfNode) {
+				count += count(((IfNode) node).getThenNodes()) + count(((IfNode) node).getElseNodes());
+			} else if (node instanceof ForNode) {
+				count += count(((ForNode) node).getBody());
+			}
+		}
+		return count;
+	}
+
+	private List<TemplateNode> evaluate(
+			final List<TemplateNode> nodes,
+			final Object[] variables,
+			final long known,
+			final Budget budget) {
+		final List<TemplateNode> residual = new ArrayList<>();
+		final StringBuilder text = new StringBuilder();
+		for (final TemplateNode node : nodes) {
+			if (node instanceof TextNode) {
+				text.append(((TextNode) node).getText());
+			} else if (node instanceof PlaceholderNode) {
+				evaluatePlaceholder((PlaceholderNode) node, variables, known, residual, text);
+			} else if (node instanceof ExpressionNode) {
+				evaluateExpression((ExpressionNode) node, variables, known, residual, text);
+			} else if (node instanceof IfNode) {
+				evaluateIf((IfNode) node, variables, known, budget, residual, text);
+			} else if (node instanceof ForNode) {
+				evaluateFor((ForNode) node, variables, known, budget, residual, text);
+			} else {
+				flush(text, residual);
+				residual.add(node);
+			}
+		}
+		flush(text, residual);
+		return residual;
+	}
+
+	private void evaluateExpression(
+			final ExpressionNode node,
+			final Object[] variables,
+			final long known,
+			final List<TemplateNode> residual,
+			final StringBuilder text) {
+		if (isKnown(node.getSlots(), known)) {
+			try {
+				final Object value = node.getExpression().evaluate(variables);
+				if (value != null) {
+					text.append(value.toString());
+				}
+				return;
+			} catch (final RuntimeException e) {
+				LOG.debug("Deferring expression that failed to evaluate", e);
+			}
+		}
+		flush(text, residual);
+		residual.add(node);
+	}
+
+	private void evaluateFor(
+			final ForNode node,
+			final Object[] variables,
+			final long known,
+			final Budget budget,
+			final List<TemplateNode> residual,
+			final StringBuilder text) {
+		if (isKnown(node.getItemsSlots(), known)) {
+			try {
+				final List<TemplateNode> unrolled = unroll(node, variables, known, budget);
+				if (unrolled != null) {
+					append(residual, text, unrolled);
+					return;
+				}
+			} catch (final RuntimeException e) {
+				LOG.debug("Deferring loop that failed to evaluate", e);
+			}
+		}
+		flush(text, residual);
+		residual.add(new ForNode(
+				node.getSlot(),
+				node.getName(),
+				node.getItems(),
+				node.getItemsSource(),
+				node.getItemsSlots(),
+				evaluate(node.getBody(), variables, known, budget)));
+	}
+
+	private void evaluateIf(
+			final IfNode node,
+			final Object[] variables,
+			final long known,
+			final Budget budget,
+			final List<TemplateNode> residual,
+			final StringBuilder text) {
+		if (isKnown(node.getConditionSlots(), known)) {
+			try {
+				final boolean holds = ExpressionFunctions.bool(node.getCondition().evaluate(variables));
+				append(residual, text, evaluate(
+						holds ? node.getThenNodes() : node.getElseNodes(),
+						variables,
+						known,
+						budget));
+				return;
+			} catch (final RuntimeException e) {
+				LOG.debug("Deferring conditional that failed to evaluate", e);
+			}
+		}
+		flush(text, residual);
+		residual.add(new IfNode(
+				node.getCondition(),
+				node.getConditionSource(),
+				node.getConditionSlots(),
+				evaluate(node.getThenNodes(), variables, known, budget),
+				evaluate(node.getElseNodes(), variables, known, budget)));
+	}
+
+	private void evaluatePlaceholder(
+			final PlaceholderNode node,
+			final Object[] variables,
+			final long known,
+			final List<TemplateNode> residual,
+			final StringBuilder text) {
+		if (isKnown(Template.slotMask(node.getSlot()), known)) {
+			try {
+				final Object value = node.getPath().resolve(variables[node.getSlot()]);
+				if (value != null) {
+					text.append(value.toString());
+				}
+				return;
+			} catch (final RuntimeException e) {
+				LOG.debug("Deferring placeholder that failed to resolve", e);
+			}
+		}
+		flush(text, residual);
+		residual.add(node);
+	}
+
+	private void flush(final StringBuilder text, final List<TemplateNode> nodes) {
+		if (text.length() > 0) {
+			nodes.add(new TextNode(text.toString()));
+			text.setLength(0);
+		}
+	}
+
+	private boolean isKnown(final long slots, final long known) {
+		return (slots & ~known) == 0;
+	}
+
+	/**
+	 * Unrolls a loop over a known collection, provided every iteration of its
+	 * body resolves completely to text within the budget and length limit.
+	 *
+	 * @return the unrolled text, or <code>null</code> if some iteration still
+	 *         depends on merge data or the loop is too large to unroll
+	 */
+	private List<TemplateNode> unroll(
+			final ForNode node,
+			final Object[] variables,
+			final long known,
+			final Budget budget) {
+		final long iterationKnown = known | Template.slotMask(node.getSlot());
+		final List<TemplateNode> unrolled = new ArrayList<>();
+		final StringBuilder text = new StringBuilder();
+		try {
+			for (final Object item : ExpressionFunctions.iterable(node.getItems().evaluate(variables))) {
+				if (--budget.iterations < 0) {
+					LOG.debug("Deferring loop beyond the unrolling budget");
+					return null;
+				}
+				variables[node.getSlot()] = item;
+				for (final TemplateNode iteration : evaluate(node.getBody(), variables, iterationKnown, budget)) {
+					if (!(iteration instanceof TextNode)) {
+						return null;
+					}
+					text.append(((TextNode) iteration).getText());
+					if (text.length() > maxLength) {
+						LOG.debug("Deferring loop beyond the unrolling length");
+						return null;
+					}
+				}
+			}
+		} finally {
+			variables[node.getSlot()] = null;
+		}
+		flush(text, unrolled);
+		return unrolled;
+	}
+
+}
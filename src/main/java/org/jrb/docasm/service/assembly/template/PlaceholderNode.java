@@ -0,0 +1,59 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.io.IOException;
+
+/**
+ * Template section that writes the value found at a property path, rooted at
+ * one of the template variables. Unresolved values render as empty text.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class PlaceholderNode implements TemplateNode {
+
+	private final int slot;
+	private final PropertyPath path;
+
+	public PlaceholderNode(final int slot, final PropertyPath path) {
+		this.slot = slot;
+		this.path = path;
+	}
+
+	public PropertyPath getPath() {
+		return path;
+	}
+
+	public int getSlot() {
+		return slot;
+	}
+
+	@Override
+	public void render(final RenderContext context) throws IOException {
+		final Object value = path.resolve(context.getVariable(slot));
+		if (value != null) {
+			context.getOut().write(value.toString());
+		}
+	}
+
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.codehaus.janino.ClassBodyEvaluator;
+import org.jrb.docasm.service.assembly.AssemblyServiceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeanUtils;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+/**
+ * Creates and caches a {@link PropertyAccessor} per data class and property
+ * name. Map properties are read by key; bean properties are read through a
+ * class generated with Janino that calls the getter (or reads the public
+ * field) directly, so no reflection takes place once an accessor exists.
+ * Getters of non-public classes, such as map entries or unmodifiable
+ * collections, are called through the public superclass or interface
+ * declaring them; only members no public type declares fall back to a
+ * reflective accessor resolved once. Accessors are kept for the life of the
+ * application, as the classes generated for them refer to the data classes
+ * they read. Properties yielding classes, class loaders or reflective objects are
+ * never read.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public final class PropertyAccessors {
+
+	private final static Logger LOG = LoggerFactory.getLogger(PropertyAccessors.class);
+
+	private final static PropertyAccessor NULL_ACCESSOR = new PropertyAccessor() {
+		@Override
+		public Object get(final Object target) {
+			return null;
+		}
+	};
+
+	private final static LoadingCache<Class<?>, ConcurrentMap<String, PropertyAccessor>> ACCESSORS = CacheBuilder.newBuilder()
+			.build(new CacheLoader<Class<?>, ConcurrentMap<String, PropertyAccessor>>() {
+				@Override
+				public ConcurrentMap<String, PropertyAccessor> load(final Class<?> type) {
+					return new ConcurrentHashMap<>();
+				}
+			});
+
+	private PropertyAccessors() {
+	}
+
+	/**
+	 * Finds the accessor for a property of a data class, creating it on first
+	 * use.
+	 * 
+	 * @param type
+	 *            the data class
+	 * @param property
+	 *            the property name
+	 * @return the property accessor
+	 */
+	public static PropertyAccessor accessor(final Class<?> type, final String property) {
+		final ConcurrentMap<String, PropertyAccessor> accessors = ACCESSORS.getUnchecked(type);
+		PropertyAccessor accessor = accessors.get(property);
+		if (accessor == null) {
+			accessor = create(type, property);
+			final PropertyAccessor existing = accessors.putIfAbsent(property, accessor);
+			if (existing != null) {
+				accessor = existing;
+			}
+		}
+		return accessor;
+	}
+
+	private static String classBody(final Class<?> owner, final Member member) {
+		final String read = (member instanceof Method) ? member.getName() + "()" : member.getName();
+		return "public Object get(Object target) {\n"
+				+ "final Object value = ((" + owner.getCanonicalName() + ") target)." + read + ";\n"
+				+ "return value;\n}\n";
+	}
+
+	private static ClassLoader classLoader(final Class<?> type) {
+		final ClassLoader loader = type.getClassLoader();
+		if (loader != null) {
+			try {
+				if (Class.forName(PropertyAccessor.class.getName(), false, loader) == PropertyAccessor.class) {
+					return loader;
+				}
+			} catch (final ClassNotFoundException e) {
+			}
+		}
+		return PropertyAccessor.class.getClassLoader();
+	}
+
+	private static PropertyAccessor create(final Class<?> type, final String property) {
+		if (Map.class.isAssignableFrom(type)) {
+			return new PropertyAccessor() {
+				@Override
+				public Object get(final Object target) {
+					return ((Map<?, ?>) target).get(property);
+				}
+			};
+		}
+		final Member member = member(type, property);
+		if (member == null || !isExposed(member)) {
+			return NULL_ACCESSOR;
+		}
+		final Class<?> owner = owner(type, member);
+		if (owner != null) {
+			try {
+				final ClassBodyEvaluator evaluator = new ClassBodyEvaluator();
+				evaluator.setParentClassLoader(classLoader(type));
+				evaluator.setImplementedInterfaces(new Class[] { PropertyAccessor.class });
+				evaluator.cook(classBody(owner, member));
+				return (PropertyAccessor) evaluator.getClazz().newInstance();
+			} catch (final Exception e) {
+				LOG.warn("Unable to generate accessor; falling back to reflection! type = " + type.getName()
+						+ ", property = " + property, e);
+			}
+		}
+		return reflectiveAccessor(member);
+	}
+
+	/**
+	 * Determines if a member may be read from merge data: it must neither be
+	 * declared by a class, class loader or reflective type nor yield one.
+	 */
+	private static boolean isExposed(final Member member) {
+		final Class<?> valueType = (member instanceof Method)
+				? ((Method) member).getReturnType()
+				: ((Field) member).getType();
+		return !isReflective(member.getDeclaringClass()) && !isReflective(valueType);
+	}
+
+	private static boolean isReflective(final Class<?> type) {
+		Class<?> component = type;
+		while (component.isArray()) {
+			component = component.getComponentType();
+		}
+		return Class.class.isAssignableFrom(component)
+				|| ClassLoader.class.isAssignableFrom(component)
+				|| component.getName().startsWith("java.lang.reflect.")
+				|| component.getName().startsWith("java.lang.invoke.");
+	}
+
+	private static boolean isPublic(final Class<?> type) {
+		for (Class<?> c = type; c != null; c = c.getDeclaringClass()) {
+			if (!Modifier.isPublic(c.getModifiers())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Member member(final Class<?> type, final String property) {
+		final PropertyDescriptor descriptor = BeanUtils.getPropertyDescriptor(type, property);
+		if (descriptor != null && descriptor.getReadMethod() != null) {
+			return descriptor.getReadMethod();
+		}
+		try {
+			final Field field = type.getField(property);
+			return Modifier.isStatic(field.getModifiers()) ? null : field;
+		} catch (final NoSuchFieldException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Finds the public type through which a member of a data class may be
+	 * read directly: the data class itself or, failing that, the nearest
+	 * public superclass or interface declaring the getter.
+	 * 
+	 * @return the public type, or <code>null</code> if there is none
+	 */
+	private static Class<?> owner(final Class<?> type, final Member member) {
+		if (member instanceof Field) {
+			return isPublic(member.getDeclaringClass()) ? member.getDeclaringClass() : null;
+		}
+		if (isPublic(type)) {
+			try {
+				type.getMethod(member.getName());
+				return type;
+			} catch (final NoSuchMethodException e) {
+				return null;
+			}
+		}
+		for (final Class<?> iface : type.getInterfaces()) {
+			final Class<?> owner = owner(iface, member);
+			if (owner != null) {
+				return owner;
+			}
+		}
+		return (type.getSuperclass() != null) ? owner(type.getSuperclass(), member) : null;
+	}
+
+	private static PropertyAccessor reflectiveAccessor(final Member member) {
+		try {
+			((AccessibleObject) member).setAccessible(true);
+		} catch (final RuntimeException e) {
+			LOG.debug("Unable to suppress access checks for " + member, e);
+		}
+		return new PropertyAccessor() {
+			@Override
+			public Object get(final Object target) {
+				try {
+					return (member instanceof Method)
+							? ((Method) member).invoke(target)
+							: ((Field) member).get(target);
+				} catch (final ReflectiveOperationException e) {
+					throw new AssemblyServiceException("Unable to read property! member = " + member, e);
+				}
+			}
+		};
+	}
+
+}
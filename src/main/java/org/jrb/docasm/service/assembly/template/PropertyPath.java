@@ -0,0 +1,123 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.util.Arrays;
+
+import org.jrb.docasm.service.assembly.InvalidTemplateException;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * A dot-separated property path over merge data made up of maps and beans,
+ * resolved once into a chain of {@link PropertyAccessor}s. Each step
+ * remembers the accessor for the last class it saw, so resolving a path
+ * against data of a stable shape costs a class comparison and a direct call
+ * per step. No step may select the <code>class</code> of a value.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class PropertyPath {
+
+	private final static LoadingCache<String, PropertyPath> PATHS = CacheBuilder.newBuilder()
+			.maximumSize(10000)
+			.build(new CacheLoader<String, PropertyPath>() {
+				@Override
+				public PropertyPath load(final String path) {
+					return new PropertyPath(parse(path));
+				}
+			});
+
+	/**
+	 * Accessor bound to the class it was created for.
+	 */
+	private static class Binding {
+
+		private final Class<?> type;
+		private final PropertyAccessor accessor;
+
+		public Binding(final Class<?> type, final PropertyAccessor accessor) {
+			this.type = type;
+			this.accessor = accessor;
+		}
+
+	}
+
+	private final String[] properties;
+	private final Binding[] bindings;
+
+	public PropertyPath(final String[] properties) {
+		for (final String property : properties) {
+			if (property.equals("class")) {
+				throw new InvalidTemplateException("Property path must not select a class! properties = "
+						+ Arrays.toString(properties));
+			}
+		}
+		this.properties = properties;
+		this.bindings = new Binding[properties.length];
+	}
+
+	/**
+	 * Finds the shared, compiled form of a property path.
+	 * 
+	 * @param path
+	 *            the dot-separated path
+	 * @return the compiled path
+	 */
+	public static PropertyPath of(final String path) {
+		try {
+			return PATHS.getUnchecked(path);
+		} catch (final UncheckedExecutionException e) {
+			throw (RuntimeException) e.getCause();
+		}
+	}
+
+	public static String[] parse(final String path) {
+		return path.trim().split("\\.");
+	}
+
+	public String[] getProperties() {
+		return properties;
+	}
+
+	public Object resolve(final Object root) {
+		Object value = root;
+		for (int i = 0; i < properties.length; i++) {
+			if (value == null) {
+				return null;
+			}
+			final Class<?> type = value.getClass();
+			Binding binding = bindings[i];
+			if (binding == null || binding.type != type) {
+				binding = new Binding(type, PropertyAccessors.accessor(type, properties[i]));
+				bindings[i] = binding;
+			}
+			value = binding.accessor.get(value);
+		}
+		return value;
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.io.Writer;
+
+import org.jrb.docasm.service.assembly.InvalidTemplateException;
+
+/**
+ * Mutable state for a single rendering of a {@link Template}. Template
+ * variables live in fixed slots assigned when the template was parsed; slot
+ * zero always holds the merge data. The loops of one rendering share a budget
+ * of iterations, so that neither a range drawn from merge data nor nested
+ * loops can make a rendering run unbounded.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class RenderContext {
+
+	private final Object[] variables;
+	private final int maxIterations;
+	private int iterations;
+	private Writer out;
+
+	public RenderContext(final int slotCount, final Object data, final int maxIterations) {
+		this.variables = new Object[slotCount];
+		this.variables[Template.DATA_SLOT] = data;
+		this.maxIterations = maxIterations;
+	}
+
+	public Writer getOut() {
+		return out;
+	}
+
+	public Object getVariable(final int slot) {
+		return variables[slot];
+	}
+
+	public Object[] getVariables() {
+		return variables;
+	}
+
+	/**
+	 * Counts one loop iteration against the budget of this rendering.
+	 * 
+	 * @throws InvalidTemplateException
+	 *             if the budget is exhausted
+	 */
+	public void iterate() throws InvalidTemplateException {
+		if (++iterations > maxIterations) {
+			throw new InvalidTemplateException("Template exceeds " + maxIterations + " loop iterations");
+		}
+	}
+
+	public void setOut(final Writer out) {
+		this.out = out;
+	}
+
+	public void setVariable(final int slot, final Object value) {
+		variables[slot] = value;
+	}
+
+}
@@ -0,0 +1,95 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Class loader restricting the types visible to compiled template expressions
+ * to an explicit allowlist: the value types of <code>java.lang</code> and
+ * their math, a handful of <code>java.util</code> collection interfaces and the
+ * expression support classes. The compiler itself also needs a few core
+ * exception types. Every other type is refused, <code>java.lang.Class</code>
+ * included, so nothing able to reach the system, threads, class loaders or
+ * reflection can be named.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class SandboxClassLoader extends ClassLoader {
+
+	private final static Set<String> ALLOWED_TYPES = new HashSet<>(Arrays.asList(
+			"java.io.Serializable",
+			"java.lang.Boolean",
+			"java.lang.Byte",
+			"java.lang.CharSequence",
+			"java.lang.Character",
+			"java.lang.Comparable",
+			"java.lang.Double",
+			"java.lang.Float",
+			"java.lang.Integer",
+			"java.lang.Iterable",
+			"java.lang.Long",
+			"java.lang.Math",
+			"java.lang.Number",
+			"java.lang.Object",
+			"java.lang.Short",
+			"java.lang.String",
+			"java.lang.StringBuilder",
+			"java.util.Collection",
+			"java.util.Date",
+			"java.util.Iterator",
+			"java.util.List",
+			"java.util.Map",
+			"java.util.Map$Entry",
+			"java.util.Set",
+			CompiledExpression.class.getName(),
+			ExpressionFunctions.class.getName()));
+
+	private final static Set<String> COMPILER_TYPES = new HashSet<>(Arrays.asList(
+			"java.lang.Cloneable",
+			"java.lang.Error",
+			"java.lang.RuntimeException",
+			"java.lang.Throwable"));
+
+	private final ClassLoader delegate;
+
+	public SandboxClassLoader(final ClassLoader delegate) {
+		super(null);
+		this.delegate = delegate;
+	}
+
+	public boolean isAllowed(final String name) {
+		return ALLOWED_TYPES.contains(name) || COMPILER_TYPES.contains(name);
+	}
+
+	@Override
+	protected Class<?> loadClass(final String name, final boolean resolve) throws ClassNotFoundException {
+		if (!isAllowed(name)) {
+			throw new ClassNotFoundException("Type is not available to template expressions: " + name);
+		}
+		return Class.forName(name, resolve, delegate);
+	}
+
+}
@@ -0,0 +1,126 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * A parsed document template, ready to be rendered against merge data. A
+ * template is immutable and may be rendered concurrently.
+ * <p>
+ * Two variables are always in scope: the merge data (<code>data</code>) and
+ * the document being assembled (<code>$document</code>). Names starting with
+ * <code>$</code> are reserved for the assembler, so that they never hide a
+ * property of the merge data; placeholders accordingly name the merge data
+ * <code>$data</code>, so that a merge data property may be called
+ * <code>data</code>. Sections depending only on the document may be
+ * resolved ahead of time by a {@link PartialEvaluator}, and the residual
+ * template written back out as template text by a {@link TemplateWriter}.
+ * Each rendering may run at most a fixed number of loop iterations in all.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class Template {
+
+	public final static int DATA_SLOT = 0;
+	public final static String DATA_VARIABLE = "data";
+	public final static String DATA_ROOT = "$data";
+	public final static int DOCUMENT_SLOT = 1;
+	public final static String DOCUMENT_VARIABLE = "$document";
+	public final static String RESERVED_PREFIX = "$";
+
+	private final List<TemplateNode> nodes;
+	private final int slotCount;
+	private final int maxIterations;
+
+	public Template(final List<TemplateNode> nodes, final int slotCount, final int maxIterations) {
+		this.nodes = nodes;
+		this.slotCount = slotCount;
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Binds merge data to the variables of this template.
+	 * 
+	 * @param data
+	 *            the merge data
+	 * @return the render context holding the bound variables
+	 */
+	public RenderContext bind(final Object data) {
+		return bind(data, null);
+	}
+
+	/**
+	 * Binds merge data and the document being assembled to the variables of
+	 * this template.
+	 * 
+	 * @param data
+	 *            the merge data
+	 * @param document
+	 *            the document being assembled
+	 * @return the render context holding the bound variables
+	 */
+	public RenderContext bind(final Object data, final Object document) {
+		final RenderContext context = new RenderContext(slotCount, data, maxIterations);
+		context.setVariable(DOCUMENT_SLOT, document);
+		return context;
+	}
+
+	public int getMaxIterations() {
+		return maxIterations;
+	}
+
+	public List<TemplateNode> getNodes() {
+		return nodes;
+	}
+
+	public int getSlotCount() {
+		return slotCount;
+	}
+
+	public void render(final Object data, final Writer out) throws IOException {
+		render(bind(data), out);
+	}
+
+	public void render(final RenderContext context, final Writer out) throws IOException {
+		context.setOut(out);
+		for (final TemplateNode node : nodes) {
+			node.render(context);
+		}
+	}
+
+	/**
+	 * Computes the dependency mask bit for a variable slot.
+	 * 
+	 * @param slot
+	 *            the variable slot
+	 * @return the mask bit; slots beyond the width of the mask share its
+	 *         highest bit
+	 */
+	public static long slotMask(final int slot) {
+		return 1L << Math.min(slot, Long.SIZE - 1);
+	}
+
+}
@@ -0,0 +1,253 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.jrb.docasm.service.assembly.InvalidTemplateException;
+
+/**
+ * Parses document template text into a {@link Template}. The template syntax
+ * is as follows:
+ * <ul>
+ * <li><code>${path}</code> - writes the value at a dot-separated property path,
+ * rooted at a loop variable or else at the merge data</li>
+ * <li><code>#{= expression}</code> - writes the value of a computed expression</li>
+ * <li><code>#{if expression}</code> ... <code>#{else}</code> ...
+ * <code>#{end}</code> - conditional section</li>
+ * <li><code>#{for name : expression}</code> ... <code>#{end}</code> - section
+ * repeated for each item of a computed collection</li>
+ * </ul>
+ * Expressions are Java expressions over the merge data (<code>data</code>),
+ * the document being assembled (<code>$document</code>) and any enclosing loop
+ * variables, all typed as <code>Object</code>, with the
+ * {@link ExpressionFunctions} statically imported. Placeholders are rooted at
+ * the merge data unless their first segment names <code>$data</code>,
+ * <code>$document</code> or a loop variable, so <code>${data.name}</code>
+ * reads the <code>data</code> property of the merge data,
+ * <code>${$data.name}</code> its <code>name</code> property and
+ * <code>${$document.name}</code> the name of the document. Loop variables may
+ * not start with the reserved <code>$</code>.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class TemplateParser {
+
+	private final static String PLACEHOLDER_PREFIX = "${";
+	private final static String DIRECTIVE_PREFIX = "#{";
+
+	private final static Pattern FOR_DIRECTIVE = Pattern.compile("for\\s+([\\p{L}_$][\\p{L}\\p{N}_$]*)\\s*:(.+)", Pattern.DOTALL);
+	private final static Pattern IF_DIRECTIVE = Pattern.compile("if\\s+(.+)", Pattern.DOTALL);
+	private final static Pattern VALUE_DIRECTIVE = Pattern.compile("=(.+)", Pattern.DOTALL);
+
+	private final static String ELSE_DIRECTIVE = "else";
+	private final static String END_DIRECTIVE = "end";
+
+	private final ExpressionCompiler compiler;
+	private final int maxIterations;
+
+	public TemplateParser(final ExpressionCompiler compiler, final int maxIterations) {
+		this.compiler = compiler;
+		this.maxIterations = maxIterations;
+	}
+
+	/**
+	 * Parses template text.
+	 * 
+	 * @param source
+	 *            the template text
+	 * @return the parsed template
+	 * @throws InvalidTemplateException
+	 *             if the template is malformed or one of its expressions does
+	 *             not compile
+	 */
+	public Template parse(final String source) throws InvalidTemplateException {
+		final Parser parser = new Parser(source);
+		final List<TemplateNode> nodes = parser.parseBlock();
+		if (parser.terminator != null) {
+			throw new InvalidTemplateException("Unexpected #{" + parser.terminator + "} in template");
+		}
+		return new Template(nodes, parser.slotCount, maxIterations);
+	}
+
+	/**
+	 * Single-use parser state for one template.
+	 */
+	private class Parser {
+
+		private final String source;
+		private final List<String> variables = new ArrayList<>(
+				Arrays.asList(Template.DATA_VARIABLE, Template.DOCUMENT_VARIABLE));
+		private int position;
+		private int slotCount = variables.size();
+		private String terminator;
+
+		public Parser(final String source) {
+			this.source = source;
+		}
+
+		private int closingBrace(final int start) throws InvalidTemplateException {
+			int depth = 0;
+			char quote = 0;
+			for (int i = start; i < source.length(); i++) {
+				final char c = source.charAt(i);
+				if (quote != 0) {
+					if (c == '\\') {
+						i++;
+					} else if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '"' || c == '\'') {
+					quote = c;
+				} else if (c == '{') {
+					depth++;
+				} else if (c == '}') {
+					if (depth == 0) {
+						return i;
+					}
+					depth--;
+				}
+			}
+			throw new InvalidTemplateException("Unterminated template tag at offset " + start);
+		}
+
+		private CompiledExpression compile(final String expression) throws InvalidTemplateException {
+			return compiler.compile(expression.trim(), variables);
+		}
+
+		private String source(final String expression) {
+			return expression.trim();
+		}
+
+		private long slots(final String expression) {
+			return compiler.referencedSlots(expression.trim(), variables);
+		}
+
+		public List<TemplateNode> parseBlock() throws InvalidTemplateException {
+			final List<TemplateNode> nodes = new ArrayList<>();
+			final StringBuilder text = new StringBuilder();
+			terminator = null;
+			while (position < source.length()) {
+				final int placeholder = source.indexOf(PLACEHOLDER_PREFIX, position);
+				final int directive = source.indexOf(DIRECTIVE_PREFIX, position);
+				final int start = (placeholder < 0) ? directive
+						: (directive < 0) ? placeholder : Math.min(placeholder, directive);
+				if (start < 0) {
+					text.append(source, position, source.length());
+					position = source.length();
+					break;
+				}
+				text.append(source, position, start);
+				final int bodyStart = start + 2;
+				final int end = closingBrace(bodyStart);
+				final String body = source.substring(bodyStart, end).trim();
+				position = end + 1;
+				if (start == placeholder) {
+					flush(text, nodes);
+					nodes.add(placeholder(body));
+				} else if (body.equals(ELSE_DIRECTIVE) || body.equals(END_DIRECTIVE)) {
+					terminator = body;
+					break;
+				} else {
+					flush(text, nodes);
+					nodes.add(directive(body));
+				}
+			}
+			flush(text, nodes);
+			return nodes;
+		}
+
+		private TemplateNode directive(final String body) throws InvalidTemplateException {
+			Matcher matcher = VALUE_DIRECTIVE.matcher(body);
+			if (matcher.matches()) {
+				return new ExpressionNode(compile(matcher.group(1)), source(matcher.group(1)), slots(matcher.group(1)));
+			}
+			matcher = IF_DIRECTIVE.matcher(body);
+			if (matcher.matches()) {
+				final CompiledExpression condition = compile(matcher.group(1));
+				final List<TemplateNode> thenNodes = parseBlock();
+				List<TemplateNode> elseNodes = new ArrayList<>();
+				if (ELSE_DIRECTIVE.equals(terminator)) {
+					elseNodes = parseBlock();
+				}
+				expectEnd("if");
+				return new IfNode(condition, source(matcher.group(1)), slots(matcher.group(1)), thenNodes, elseNodes);
+			}
+			matcher = FOR_DIRECTIVE.matcher(body);
+			if (matcher.matches()) {
+				final String variable = matcher.group(1);
+				if (variable.startsWith(Template.RESERVED_PREFIX)) {
+					throw new InvalidTemplateException("Loop variable name is reserved! name = " + variable);
+				}
+				if (variables.contains(variable)) {
+					throw new InvalidTemplateException("Loop variable hides an enclosing variable! name = " + variable);
+				}
+				final CompiledExpression items = compile(matcher.group(2));
+				final long itemsSlots = slots(matcher.group(2));
+				final int slot = variables.size();
+				variables.add(variable);
+				slotCount = Math.max(slotCount, variables.size());
+				final List<TemplateNode> loopBody = parseBlock();
+				variables.remove(slot);
+				expectEnd("for");
+				return new ForNode(slot, variable, items, source(matcher.group(2)), itemsSlots, loopBody);
+			}
+			throw new InvalidTemplateException("Unknown template directive! directive = " + body);
+		}
+
+		private void expectEnd(final String directive) throws InvalidTemplateException {
+			if (!END_DIRECTIVE.equals(terminator)) {
+				throw new InvalidTemplateException("Missing #{end} for #{" + directive + "} in template");
+			}
+			terminator = null;
+		}
+
+		private void flush(final StringBuilder text, final List<TemplateNode> nodes) {
+			if (text.length() > 0) {
+				nodes.add(new TextNode(text.toString()));
+				text.setLength(0);
+			}
+		}
+
+		private TemplateNode placeholder(final String body) throws InvalidTemplateException {
+			final String[] path = PropertyPath.parse(body);
+			if (path.length == 0 || path[0].isEmpty()) {
+				throw new InvalidTemplateException("Empty template placeholder");
+			}
+			if (Template.DATA_ROOT.equals(path[0])) {
+				return new PlaceholderNode(Template.DATA_SLOT, new PropertyPath(Arrays.copyOfRange(path, 1, path.length)));
+			}
+			final int slot = variables.lastIndexOf(path[0]);
+			if (slot <= Template.DATA_SLOT) {
+				return new PlaceholderNode(Template.DATA_SLOT, new PropertyPath(path));
+			}
+			return new PlaceholderNode(slot, new PropertyPath(Arrays.copyOfRange(path, 1, path.length)));
+		}
+
+	}
+
+}
@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.assembly.template;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Writes a parsed {@link Template} back out as template text, so that a
+ * residual template left by the {@link PartialEvaluator} can be stored and
+ * later parsed again in place of its original. Placeholders are written rooted
+ * at their variable by name, and template tags occurring in static text are
+ * escaped as expressions yielding the tag character, so that the text written
+ * parses back to an equivalent template.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class TemplateWriter {
+
+	/**
+	 * Writes a template as template text.
+	 *
+	 * @param template
+	 *            the template
+	 * @return the template text
+	 */
+	public String write(final Template template) {
+		final List<String> variables = new ArrayList<>(
+				Arrays.asList(Template.DATA_VARIABLE, Template.DOCUMENT_VARIABLE));
+		final StringBuilder source = new StringBuilder();
+		write(template.getNodes(), variables, source);
+		return source.toString();
+	}
+
+	private void write(final List<TemplateNode> nodes, final List<String> variables, final StringBuilder source) {
+		for (final TemplateNode node : nodes) {
+			if (node instanceof TextNode) {
+				writeText(((TextNode) node).getText(), source);
+			} else if (node instanceof PlaceholderNode) {
+				writePlaceholder((PlaceholderNode) node, variables, source);
+			} else if (node instanceof ExpressionNode) {
+				source.append("#{= ").append(((ExpressionNode) node).getSource()).append('}');
+			} else if (node instanceof IfNode) {
+				writeIf((IfNode) node, variables, source);
+			} else if (node instanceof ForNode) {
+				writeFor((ForNode) node, variables, source);
+			} else {
+				throw new IllegalArgumentException("Unable to write template node! node = " + node);
+			}
+		}
+	}
+
+	private void writeFor(final ForNode node, final List<String> variables, final StringBuilder source) {
+		source.append("#{for ").append(node.getName()).append(" : ").append(node.getItemsSource()).append('}');
+		while (variables.size() <= node.getSlot()) {
+			variables.add(null);
+		}
+		variables.set(node.getSlot(), node.getName());
+		write(node.getBody(), variables, source);
+		variables.set(node.getSlot(), null);
+		source.append("#{end}");
+	}
+
+	private void writeIf(final IfNode node, final List<String> variables, final StringBuilder source) {
+		source.append("#{if ").append(node.getConditionSource()).append('}');
+		write(node.getThenNodes(), variables, source);
+		if (!node.getElseNodes().isEmpty()) {
+			source.append("#{else}");
+			write(node.getElseNodes(), variables, source);
+		}
+		source.append("#{end}");
+	}
+
+	private void writePlaceholder(final PlaceholderNode node, final List<String> variables, final StringBuilder source) {
+		source.append("${");
+		source.append(node.getSlot() == Template.DATA_SLOT ? Template.DATA_ROOT : variables.get(node.getSlot()));
+		for (final String property : node.getPath().getProperties()) {
+			source.append('.').append(property);
+		}
+		source.append('}');
+	}
+
+	private void writeText(final String text, final StringBuilder source) {
+		if (!StringUtils.contains(text, '{')) {
+			source.append(text);
+			return;
+		}
+		for (int i = 0; i < text.length(); i++) {
+			final char c = text.charAt(i);
+			if ((c == '$' || c == '#') && i + 1 < text.length() && text.charAt(i + 1) == '{') {
+				source.append("#{= \"").append(c).append("\"}");
+			} else {
+				source.append(c);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.document;
+
+import org.jrb.docasm.domain.Document;
+import org.springframework.context.ApplicationEvent;
+
+/**
+ * Application event published by the {@link DocumentService} once a change to
+ * a document has been committed. The document of a {@link Type#PATCHED} event
+ * carries no template.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentEvent extends ApplicationEvent {
+
+	private static final long serialVersionUID = 4412035971658803321L;
+
+	public static enum Type {
+		CREATED, IMPORTED, UPDATED, PATCHED, DELETED
+	}
+
+	private final Type type;
+	private final Document document;
+
+	public DocumentEvent(final Object source, final Type type, final Document document) {
+		super(source);
+		this.type = type;
+		this.document = document;
+	}
+
+	public Document getDocument() {
+		return document;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentEvent [type=" + type + ", document=" + document.getId() + "]";
+	}
+
+}
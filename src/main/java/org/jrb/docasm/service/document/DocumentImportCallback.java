@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.document;
+
+import java.io.IOException;
+
+import org.jrb.docasm.domain.Document;
+
+/**
+ * Callback used by {@link DocumentService} to report the progress of a bulk
+ * import as it happens.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public interface DocumentImportCallback {
+
+	/**
+	 * Reports that a chunk of documents has been committed.
+	 * 
+	 * @param status
+	 *            the running totals of the import
+	 * @throws IOException
+	 *             if the progress could not be written out
+	 */
+	void chunkCommitted(DocumentImportStatus status) throws IOException;
+
+	/**
+	 * Reports that a submitted document was skipped. The rest of the import
+	 * carries on.
+	 * 
+	 * @param record
+	 *            the position of the document in the submission, counting
+	 *            from one
+	 * @param document
+	 *            the skipped document
+	 * @param reason
+	 *            why the document was skipped
+	 * @throws IOException
+	 *             if the rejection could not be written out
+	 */
+	void documentRejected(long record, Document document, DocumentImportStatus.Rejection reason) throws IOException;
+
+}
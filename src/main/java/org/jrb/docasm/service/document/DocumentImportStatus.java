@@ -0,0 +1,84 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.document;
+
+/**
+ * Running totals of a bulk document import.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentImportStatus {
+
+	public static enum Rejection {
+		DUPLICATE, INVALID
+	}
+
+	private long processed;
+	private long imported;
+	private long duplicates;
+	private long invalid;
+	private final long started = System.currentTimeMillis();
+
+	public long getDuplicates() {
+		return duplicates;
+	}
+
+	public long getElapsedMillis() {
+		return System.currentTimeMillis() - started;
+	}
+
+	public long getImported() {
+		return imported;
+	}
+
+	public long getInvalid() {
+		return invalid;
+	}
+
+	public long getProcessed() {
+		return processed;
+	}
+
+	void recordImported(final int count) {
+		imported += count;
+	}
+
+	void recordProcessed() {
+		processed++;
+	}
+
+	void recordRejected(final Rejection reason) {
+		if (reason == Rejection.DUPLICATE) {
+			duplicates++;
+		} else {
+			invalid++;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentImportStatus [processed=" + processed + ", imported=" + imported + ", duplicates="
+				+ duplicates + ", invalid=" + invalid + "]";
+	}
+
+}
@@ -23,9 +23,15 @@
 package org.jrb.docasm.service.document;
 
 import java.net.URI;
+import java.util.Iterator;
 import java.util.List;
 
 import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentChange;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.domain.DocumentVersion;
+import org.jrb.docasm.repository.DocumentCriteria;
+import org.jrb.docasm.repository.DocumentRepositoryCustom.DocumentCallback;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
@@ -48,6 +54,9 @@ public interface DocumentService {
 	void deleteDocument(String name)
 			throws UnknownDocumentException, DocumentServiceException;
 
+	void exportDocuments(DocumentCriteria criteria, int fetchSize, DocumentCallback callback)
+			throws DocumentServiceException;
+
 	Document findDocument(Long id)
 			throws UnknownDocumentException, DocumentServiceException;
 
@@ -60,12 +69,34 @@ public interface DocumentService {
 	Document findDocument(String name, boolean forceRetrieve)
 			throws UnknownDocumentException, DocumentServiceException;
 
+	DocumentVersion findDocumentVersion(Long id)
+			throws UnknownDocumentException, DocumentServiceException;
+
+	DocumentImportStatus importDocuments(Iterator<Document> documents, int chunkSize, DocumentImportCallback callback)
+			throws DocumentServiceException;
+
 	List<Document> retrieveDocuments(Document criteria)
 			throws DocumentServiceException;
 
 	Page<Document> retrieveDocuments(Document criteria, Pageable pageable)
 			throws DocumentServiceException;
 
+	Document patchDocument(Document patch)
+			throws UnknownDocumentException, StaleDocumentException, DuplicateDocumentException,
+			DocumentServiceException;
+
+	List<DocumentChange> retrieveDocumentChanges(Long since, int limit)
+			throws DocumentServiceException;
+
+	List<DocumentSummary> retrieveDocumentSummaries(DocumentCriteria criteria)
+			throws DocumentServiceException;
+
+	List<Document> retrieveMatchingDocuments(DocumentCriteria criteria)
+			throws DocumentServiceException;
+
+	void saveResidualTemplate(Long id, Integer version, String residual)
+			throws DocumentServiceException;
+
 	Document updateDocument(Document document)
 			throws InvalidDocumentException, DocumentServiceException;
 
@@ -25,28 +25,87 @@ package org.jrb.docasm.service.document;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.PostConstruct;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.ObjectUtils;
+import org.apache.commons.lang3.StringUtils;
 import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentChange;
+import org.jrb.docasm.domain.DocumentResidual;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.domain.DocumentVersion;
+import org.jrb.docasm.domain.DocumentTemplate;
+import org.jrb.docasm.repository.DocumentCriteria;
+import org.jrb.docasm.repository.DocumentChangeRepository;
 import org.jrb.docasm.repository.DocumentRepository;
+import org.jrb.docasm.repository.DocumentRepositoryCustom.DocumentCallback;
+import org.jrb.docasm.repository.DocumentResidualRepository;
+import org.jrb.docasm.repository.DocumentShards;
+import org.jrb.docasm.repository.DocumentShards.ShardCallback;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.support.PropertyComparator;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.env.Environment;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.CacheLoader.InvalidCacheLoadException;
 import com.google.common.cache.LoadingCache;
-import com.google.common.collect.Lists;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
 
 /**
- * JPA implementation of a {@link DocumentService}.
+ * JPA implementation of a {@link DocumentService}. A {@link DocumentEvent} is
+ * published once each change to a document has been committed, and each change
+ * is recorded in the {@link DocumentChange} log within the same transaction.
+ * Bulk imports run outside the service transaction, committing one JDBC batch
+ * per chunk. Template text submitted with a document is stored in the
+ * database, as is the content of its template URI when templates are
+ * configured to be stored; otherwise the template is fetched from its URI
+ * whenever the document is loaded. A stored template is loaded along with its
+ * residual template, when one has been saved for the current version of the
+ * document.
+ * <p>
+ * When the catalogue is partitioned by {@link DocumentShards}, each change
+ * works against the shard of its document, listings are gathered from every
+ * shard in parallel, and import chunks are split by shard and written to all
+ * shards at once. The change log stays in the home shard; changes to
+ * documents of other shards are recorded there in a transaction of their own
+ * once the document's transaction has committed, so that the log never holds
+ * a change that was rolled back. A rename that would move a document to
+ * another shard is refused.
  * 
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
@@ -58,16 +117,54 @@ public class DocumentServiceImpl implements DocumentService {
 	
 	@Autowired
 	private DocumentRepository documentRepository;
+
+	@Autowired
+	private DocumentChangeRepository changeRepository;
+
+	@Autowired
+	private DocumentResidualRepository residualRepository;
+
+	@Autowired
+	private DocumentShards shards;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private Environment env;
+
+	private boolean storeTemplates;
 	
 	private int maxCacheSize = 1000;
 
+	/**
+	 * Names under which documents are cached, by identifier, so that a
+	 * document known only by its identifier is evicted without a scan.
+	 */
+	private final ConcurrentMap<Long, String> cachedNames = new ConcurrentHashMap<>();
+
 	private LoadingCache<NamedKey, Document> documentCache = CacheBuilder.newBuilder()
 			.maximumSize(maxCacheSize)
+			.removalListener(new RemovalListener<NamedKey, Document>() {
+				@Override
+				public void onRemoval(final RemovalNotification<NamedKey, Document> notification) {
+					if (notification.getKey().hasName() && notification.getValue() != null) {
+						cachedNames.remove(notification.getValue().getId(), notification.getKey().getName());
+					}
+				}
+			})
 			.build(new CacheLoader<NamedKey, Document>() {
 				@Override
 				public Document load(final NamedKey key) throws DocumentServiceException {
 					try {
-						return loadDocument(key);
+						final Document document = loadDocument(key);
+						if (document != null && key.hasName()) {
+							cachedNames.put(document.getId(), key.getName());
+						}
+						return document;
 					} catch (Throwable t) {
 						LOG.error(t.getMessage(), t);
 						throw new DocumentServiceException(t.getMessage(), t);
@@ -75,16 +172,69 @@ public class DocumentServiceImpl implements DocumentService {
 				}
 			});
 	
+	/**
+	 * Ensures that a document keeps to its shard when renamed, since it is
+	 * looked up by name in the shard its name hashes to.
+	 */
+	private void checkShard(final Long id, final String name) throws InvalidDocumentException {
+		if (name != null && shards.shardOf(name) != shards.shardOf(id)) {
+			throw new InvalidDocumentException("Document cannot be renamed to another shard! id = " + id + ", name = "
+					+ name);
+		}
+	}
+
+	/**
+	 * Orders documents as the given sort would in the database, for a page
+	 * merged from several shards.
+	 */
+	private Comparator<Document> comparator(final Sort sort) {
+		final List<Comparator<Document>> comparators = new ArrayList<>();
+		for (final Sort.Order order : sort) {
+			comparators.add(new PropertyComparator<Document>(order.getProperty(), false, order.isAscending()));
+		}
+		return new Comparator<Document>() {
+			@Override
+			public int compare(final Document a, final Document b) {
+				for (final Comparator<Document> comparator : comparators) {
+					final int result = comparator.compare(a, b);
+					if (result != 0) {
+						return result;
+					}
+				}
+				return 0;
+			}
+		};
+	}
+
+	/**
+	 * Concatenates the keyset pages of several shards into one. As the
+	 * identifiers of each shard lie above those of every shard before it, the
+	 * concatenation is ordered by identifier.
+	 */
+	private <T> List<T> concatenate(final List<List<T>> pages, final Integer limit) {
+		final List<T> merged = new ArrayList<>();
+		for (final List<T> page : pages) {
+			for (final T item : page) {
+				if (limit != null && merged.size() == limit) {
+					return merged;
+				}
+				merged.add(item);
+			}
+		}
+		return merged;
+	}
+
 	@Override
 	public Document createDocument(final Document submitted)
 			throws DuplicateDocumentException, InvalidDocumentException, DocumentServiceException {
-		try {
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shards.shardOf(submitted.getName()))) {
 			final Document document = new Document.Builder()
 					.setName(submitted.getName())
 					.setTemplateUri(submitted.getTemplateUri())
+					.setStoredTemplate(storeTemplate(submitted.getTemplate(), submitted.getTemplateUri()))
 					.setDescription(submitted.getDescription())
 					.markAsCreated().build();
-			return documentRepository.save(document);
+			return publish(DocumentEvent.Type.CREATED, documentRepository.save(document));
 		} catch (final DataIntegrityViolationException e) {
 			throw new DuplicateDocumentException("Duplicate document! submitted = " + submitted, e);
 		} catch (final IllegalArgumentException e) {
@@ -97,13 +247,14 @@ public class DocumentServiceImpl implements DocumentService {
 	@Override
 	public Document createDocument(final String name, final URI templateUri, final String description)
 			throws DuplicateDocumentException, InvalidDocumentException, DocumentServiceException {
-		try {
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shards.shardOf(name))) {
 			final Document document = new Document.Builder()
 					.setName(name)
 					.setTemplateUri(templateUri)
+					.setStoredTemplate(storeTemplate(null, templateUri))
 					.setDescription(description)
 					.markAsCreated().build();
-			return documentRepository.save(document);
+			return publish(DocumentEvent.Type.CREATED, documentRepository.save(document));
 		} catch (final DataIntegrityViolationException e) {
 			throw new DuplicateDocumentException("Duplicate document! name = " + name, e);
 		} catch (final IllegalArgumentException e) {
@@ -114,11 +265,13 @@ public class DocumentServiceImpl implements DocumentService {
 	}
 	@Override
 	public void deleteDocument(final Long id) throws UnknownDocumentException, DocumentServiceException {
-		try {
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shards.shardOf(id))) {
 			final Document document = documentRepository.findOne(id);
 			if (document != null) {
 				documentRepository.delete(document);
-				documentCache.invalidate(new NamedKey(id));
+				deleteResidualTemplate(document.getId());
+				evict(document);
+				publish(DocumentEvent.Type.DELETED, document);
 			} else {
 				throw new UnknownDocumentException("Document is unknown! id = " + id);
 			}
@@ -131,11 +284,13 @@ public class DocumentServiceImpl implements DocumentService {
 
 	@Override
 	public void deleteDocument(final String name) throws UnknownDocumentException, DocumentServiceException {
-		try {
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shards.shardOf(name))) {
 			final Document document = documentRepository.findByName(name);
 			if (document != null) {
 				documentRepository.delete(document);
-				documentCache.invalidate(document);
+				deleteResidualTemplate(document.getId());
+				evict(document);
+				publish(DocumentEvent.Type.DELETED, document);
 			} else {
 				throw new UnknownDocumentException("Document is unknown! name = " + name);
 			}
@@ -146,18 +301,88 @@ public class DocumentServiceImpl implements DocumentService {
 		}
 	}
 
+	private void deleteResidualTemplate(final Long id) {
+		if (residualRepository.exists(id)) {
+			residualRepository.delete(id);
+		}
+	}
+
+	private void dispatch(final DocumentEvent event) {
+		if (event.getType() == DocumentEvent.Type.UPDATED || event.getType() == DocumentEvent.Type.DELETED) {
+			evict(event.getDocument());
+		} else if (event.getType() == DocumentEvent.Type.PATCHED) {
+			evict(event.getDocument().getId());
+		}
+		eventPublisher.publishEvent(event);
+	}
+
+	private void evict(final Document document) {
+		documentCache.invalidate(new NamedKey(document.getId()));
+		documentCache.invalidate(new NamedKey(document.getName()));
+	}
+
+	/**
+	 * Evicts every cached copy of a document known only by its identifier,
+	 * whatever name it was cached under.
+	 */
+	private void evict(final Long id) {
+		documentCache.invalidate(new NamedKey(id));
+		final String name = cachedNames.get(id);
+		if (name != null) {
+			documentCache.invalidate(new NamedKey(name));
+		}
+	}
+
+	/**
+	 * Runs a callback against one shard within a transaction of its own.
+	 */
+	private <T> T executeInShard(final int shard, final TransactionDefinition definition, final ShardCallback<T> callback)
+			throws Exception {
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shard)) {
+			final TransactionStatus transaction = transactionManager.getTransaction(definition);
+			final T result;
+			try {
+				result = callback.doInShard(shard);
+			} catch (final Throwable t) {
+				transactionManager.rollback(transaction);
+				throw t;
+			}
+			transactionManager.commit(transaction);
+			return result;
+		}
+	}
+
+	/**
+	 * Exports the documents of each shard in turn, so that they are written
+	 * out in identifier order.
+	 */
 	@Override
-	public Document findDocument(final Long id) throws UnknownDocumentException, DocumentServiceException {
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void exportDocuments(final DocumentCriteria criteria, final int fetchSize, final DocumentCallback callback)
+			throws DocumentServiceException {
 		try {
-			return documentCache.get(new NamedKey(id));
-		} catch(final InvalidCacheLoadException e) {
-			throw new UnknownDocumentException("Document is unknown! id = " + id, e);
+			for (int i = shards.shardOf(criteria.getAfterId()); i < shards.getCount(); i++) {
+				executeInShard(i, readOnly(), new ShardCallback<Void>() {
+					@Override
+					public Void doInShard(final int shard) throws IOException {
+						documentRepository.scrollByCriteria(criteria, fetchSize, callback);
+						return null;
+					}
+				});
+			}
 		} catch (final Throwable t) {
-			throw new DocumentServiceException("Unable to find document! id = " + id, t);
+			throw new DocumentServiceException("Unable to export documents! criteria = " + criteria, t);
+		}
+	}
+
+	private String fetchTemplate(final URI templateUri) throws IOException {
+		try (final InputStream is = templateUri.toURL().openStream()) {
+			return IOUtils.toString(is);
 		}
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public Document findDocument(final Long id, final boolean forceRetrieve) 
 			throws UnknownDocumentException, DocumentServiceException {
 		try {
@@ -170,6 +395,7 @@ public class DocumentServiceImpl implements DocumentService {
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public Document findDocument(final String name) throws UnknownDocumentException, DocumentServiceException {
 		try {
 			return documentCache.get(new NamedKey(name));
@@ -181,6 +407,7 @@ public class DocumentServiceImpl implements DocumentService {
 	}
 
 	@Override
+	@Transactional(readOnly = true)
 	public Document findDocument(final String name, final boolean forceRetrieve) 
 			throws UnknownDocumentException, DocumentServiceException {
 		try {
@@ -192,52 +419,562 @@ public class DocumentServiceImpl implements DocumentService {
 		}
 	}
 
+	/**
+	 * Finds the version of a document from the cache if it is held there, and
+	 * otherwise from its shard, without loading the document or its template.
+	 */
+	@Override
+	@Transactional(readOnly = true)
+	public DocumentVersion findDocumentVersion(final Long id)
+			throws UnknownDocumentException, DocumentServiceException {
+		final Document cached = documentCache.getIfPresent(new NamedKey(id));
+		if (cached != null) {
+			return new DocumentVersion(cached.getId(), cached.getVersion(), cached.getUpdatedOn());
+		}
+
+		final DocumentVersion version;
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shards.shardOf(id))) {
+			version = documentRepository.findVersion(id);
+		} catch (final Throwable t) {
+			throw new DocumentServiceException("Unable to find document version! id = " + id, t);
+		}
+		if (version == null) {
+			throw new UnknownDocumentException("Document is unknown! id = " + id);
+		}
+		return version;
+	}
+
+	/**
+	 * Runs a callback against every shard in parallel, each within a
+	 * read-only transaction of its own.
+	 */
+	private <T> List<T> gather(final ShardCallback<T> callback) throws Exception {
+		return shards.gather(new ShardCallback<T>() {
+			@Override
+			public T doInShard(final int shard) throws Exception {
+				return executeInShard(shard, readOnly(), callback);
+			}
+		});
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public Document findDocument(final Long id) throws UnknownDocumentException, DocumentServiceException {
+		try {
+			return documentCache.get(new NamedKey(id));
+		} catch(final InvalidCacheLoadException e) {
+			throw new UnknownDocumentException("Document is unknown! id = " + id, e);
+		} catch (final Throwable t) {
+			throw new DocumentServiceException("Unable to find document! id = " + id, t);
+		}
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public DocumentImportStatus importDocuments(
+			final Iterator<Document> documents,
+			final int chunkSize,
+			final DocumentImportCallback callback) throws DocumentServiceException {
+		final DocumentImportStatus status = new DocumentImportStatus();
+		try {
+			final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+			final List<Document> chunk = new ArrayList<>(chunkSize);
+			final List<Long> records = new ArrayList<>(chunkSize);
+			long record = 0;
+			while (documents.hasNext()) {
+				final Document submitted = documents.next();
+				status.recordProcessed();
+				record++;
+				if (StringUtils.isBlank(submitted.getName())) {
+					reject(status, callback, record, submitted, DocumentImportStatus.Rejection.INVALID);
+					continue;
+				}
+				chunk.add(new Document.Builder()
+						.setName(submitted.getName())
+						.setTemplateUri(submitted.getTemplateUri())
+						.setDescription(submitted.getDescription())
+						.markAsCreated().build());
+				records.add(record);
+				if (chunk.size() == chunkSize) {
+					importChunk(transactionTemplate, chunk, records, status, callback);
+					chunk.clear();
+					records.clear();
+				}
+			}
+			if (!chunk.isEmpty()) {
+				importChunk(transactionTemplate, chunk, records, status, callback);
+			}
+			LOG.info("Imported documents; " + status);
+			return status;
+		} catch (final Throwable t) {
+			throw new DocumentServiceException("Unable to import documents! status = " + status, t);
+		}
+	}
+
+	/**
+	 * Imports one chunk of documents, splitting it by shard and importing each
+	 * part in parallel. Rejections are then reported, and events published, in
+	 * the order of the chunk.
+	 */
+	private void importChunk(
+			final TransactionTemplate transactionTemplate,
+			final List<Document> chunk,
+			final List<Long> records,
+			final DocumentImportStatus status,
+			final DocumentImportCallback callback) throws Exception {
+		final boolean[] duplicate = new boolean[chunk.size()];
+		final List<List<Document>> imported = shards.gather(new ShardCallback<List<Document>>() {
+			@Override
+			public List<Document> doInShard(final int shard) {
+				final List<Integer> indexes = new ArrayList<>();
+				for (int i = 0; i < chunk.size(); i++) {
+					if (shards.shardOf(chunk.get(i).getName()) == shard) {
+						indexes.add(i);
+					}
+				}
+				return importShardChunk(transactionTemplate, chunk, indexes, duplicate);
+			}
+		});
+
+		for (int i = 0; i < chunk.size(); i++) {
+			if (duplicate[i]) {
+				reject(status, callback, records.get(i), chunk.get(i), DocumentImportStatus.Rejection.DUPLICATE);
+			}
+		}
+		for (final List<Document> documents : imported) {
+			status.recordImported(documents.size());
+			for (final Document document : documents) {
+				dispatch(new DocumentEvent(this, DocumentEvent.Type.IMPORTED, document));
+			}
+		}
+		callback.chunkCommitted(status);
+	}
+
+	/**
+	 * Imports the documents of one chunk that belong to the current shard in a
+	 * single transaction. Names already taken, either in the database or
+	 * earlier in the chunk, are rejected up front so that the batch itself
+	 * does not fail. Should another writer take a name in the meantime, the
+	 * part is rolled back and retried one document per transaction.
+	 * 
+	 * @return the imported documents, as stored
+	 */
+	private List<Document> importShardChunk(
+			final TransactionTemplate transactionTemplate,
+			final List<Document> chunk,
+			final List<Integer> indexes,
+			final boolean[] duplicate) {
+		final List<Document> imported = new ArrayList<>(indexes.size());
+		if (indexes.isEmpty()) {
+			return imported;
+		}
+		try {
+			transactionTemplate.execute(new TransactionCallback<Void>() {
+				@Override
+				public Void doInTransaction(final TransactionStatus transaction) {
+					final Set<String> names = new HashSet<>();
+					for (final int i : indexes) {
+						names.add(chunk.get(i).getName());
+					}
+					final Set<String> taken = documentRepository.findExistingNames(names);
+					for (final int i : indexes) {
+						final Document document = chunk.get(i);
+						duplicate[i] = !taken.add(document.getName());
+						if (!duplicate[i]) {
+							imported.add(document);
+						}
+					}
+					documentRepository.insertDocuments(imported);
+					recordImports(imported);
+					return null;
+				}
+			});
+		} catch (final DataIntegrityViolationException e) {
+			LOG.debug("Retrying import chunk one document at a time", e);
+			imported.clear();
+			for (final int i : indexes) {
+				final Document document = chunk.get(i);
+				try {
+					transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+						@Override
+						protected void doInTransactionWithoutResult(final TransactionStatus transaction) {
+							final List<Document> single = new ArrayList<>(1);
+							single.add(document);
+							documentRepository.insertDocuments(single);
+							recordImports(single);
+						}
+					});
+					duplicate[i] = false;
+					imported.add(document);
+				} catch (final DataIntegrityViolationException ex) {
+					duplicate[i] = true;
+				}
+			}
+		}
+
+		if (imported.isEmpty()) {
+			return imported;
+		}
+		return documentRepository.findByNameIn(names(imported));
+	}
+
+	@PostConstruct
+	public void init() {
+		this.storeTemplates = env.getRequiredProperty("document.template.store", Boolean.class);
+	}
+
 	private Document loadDocument(final NamedKey key) throws IOException {
-		final Document document = (key.hasId()) 
-				? documentRepository.findOne(key.getId())
-						: documentRepository.findByName(key.getName());
-		if (document != null) {
-			final URI templateUri = document.getTemplateUri();
-			try (final InputStream is = templateUri.toURL().openStream()) {
-				document.setTemplate(IOUtils.toString(is));
+		final int shard = (key.hasId()) ? shards.shardOf(key.getId()) : shards.shardOf(key.getName());
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shard)) {
+			final Document document = (key.hasId()) 
+					? documentRepository.findOne(key.getId())
+							: documentRepository.findByName(key.getName());
+			if (document != null) {
+				if (document.getStoredTemplate() != null) {
+					document.setTemplate(document.getStoredTemplate().getText());
+					final DocumentResidual residual = residualRepository.findOne(document.getId());
+					if (residual != null && residual.getDocumentVersion().equals(document.getVersion())) {
+						document.setResidualTemplate(residual.getTemplate().getText());
+					}
+				} else if (document.getTemplateUri() != null) {
+					document.setTemplate(fetchTemplate(document.getTemplateUri()));
+				}
 			}
+			return document;
 		}
-		return document;
+	}
+
+	private Set<String> names(final List<Document> documents) {
+		final Set<String> names = new HashSet<>();
+		for (final Document document : documents) {
+			names.add(document.getName());
+		}
+		return names;
 	}
 	
 	@Override
+	public Document patchDocument(final Document patch)
+			throws UnknownDocumentException, StaleDocumentException, DuplicateDocumentException,
+			DocumentServiceException {
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shards.shardOf(patch.getId()))) {
+			if (patch.getName() == null && patch.getDescription() == null) {
+				return unchanged(patch);
+			}
+			checkShard(patch.getId(), patch.getName());
+			if (documentRepository.patchDocument(patch, new Date()) == 0) {
+				if (patch.getVersion() != null && documentRepository.exists(patch.getId())) {
+					throw new StaleDocumentException("Document is stale! id = " + patch.getId() + ", version = "
+							+ patch.getVersion());
+				}
+				throw new UnknownDocumentException("Document is unknown! id = " + patch.getId());
+			}
+			return publish(DocumentEvent.Type.PATCHED, documentRepository.findDetached(patch.getId()));
+		} catch (final UnknownDocumentException | StaleDocumentException | InvalidDocumentException e) {
+			throw e;
+		} catch (final DataIntegrityViolationException e) {
+			throw new DuplicateDocumentException("Duplicate document! patch = " + patch, e);
+		} catch (final Throwable t) {
+			throw new DocumentServiceException("Unable to patch document! patch = " + patch, t);
+		}
+	}
+
+	/**
+	 * Records a change to a document in the change log, and publishes a
+	 * document event once the current transaction commits, or at once if no
+	 * transaction is active. Cached copies of a changed document are evicted
+	 * again before the event is published, so that listeners reload the
+	 * committed state.
+	 */
+	private Document publish(final DocumentEvent.Type type, final Document document) {
+		record(type, document);
+		final DocumentEvent event = new DocumentEvent(this, type, document);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+				@Override
+				public void afterCommit() {
+					dispatch(event);
+				}
+			});
+		} else {
+			dispatch(event);
+		}
+		return document;
+	}
+
+	private TransactionDefinition readOnly() {
+		final DefaultTransactionDefinition definition = new DefaultTransactionDefinition();
+		definition.setReadOnly(true);
+		return definition;
+	}
+
+	private void record(final DocumentEvent.Type type, final Document document) {
+		switch (type) {
+		case CREATED:
+		case IMPORTED:
+			record(new DocumentChange(DocumentChange.Type.CREATED, document, document.getCreatedOn()));
+			break;
+		case UPDATED:
+		case PATCHED:
+			record(new DocumentChange(DocumentChange.Type.UPDATED, document, document.getUpdatedOn()));
+			break;
+		case DELETED:
+			record(new DocumentChange(DocumentChange.Type.DELETED, document, new Date()));
+			break;
+		}
+	}
+
+	/**
+	 * Records a change in the change log within the current transaction if it
+	 * belongs to the home shard, or else in the home shard once the current
+	 * transaction commits.
+	 */
+	private void record(final DocumentChange change) {
+		if (DocumentShards.current() == DocumentShards.HOME) {
+			changeRepository.save(change);
+		} else {
+			recordAtHomeAfterCommit(Collections.singletonList(change));
+		}
+	}
+
+	private void recordAtHome(final List<DocumentChange> changes) {
+		final TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+		transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+		try (final DocumentShards.Binding binding = DocumentShards.bind(DocumentShards.HOME)) {
+			transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+				@Override
+				protected void doInTransactionWithoutResult(final TransactionStatus transaction) {
+					changeRepository.insertChanges(changes);
+				}
+			});
+		}
+	}
+
+	/**
+	 * Records changes to documents of another shard in the home shard, within
+	 * a transaction of its own, once the current transaction commits, or at
+	 * once if no transaction is active. As the changes are committed by then,
+	 * a failure to record them is logged rather than thrown.
+	 */
+	private void recordAtHomeAfterCommit(final List<DocumentChange> changes) {
+		if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+			recordAtHome(changes);
+			return;
+		}
+		TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronizationAdapter() {
+			@Override
+			public void afterCommit() {
+				try {
+					recordAtHome(changes);
+				} catch (final RuntimeException e) {
+					LOG.error("Unable to record committed document changes! changes = " + changes, e);
+				}
+			}
+		});
+	}
+
+	private void recordImports(final List<Document> imported) {
+		if (imported.isEmpty()) {
+			return;
+		}
+		if (DocumentShards.current() == DocumentShards.HOME) {
+			changeRepository.insertCreations(names(imported));
+			return;
+		}
+		final List<DocumentChange> changes = new ArrayList<>(imported.size());
+		for (final Document document : documentRepository.findByNameIn(names(imported))) {
+			changes.add(new DocumentChange(DocumentChange.Type.CREATED, document, document.getCreatedOn()));
+		}
+		recordAtHomeAfterCommit(changes);
+	}
+
+	private void reject(
+			final DocumentImportStatus status,
+			final DocumentImportCallback callback,
+			final long record,
+			final Document document,
+			final DocumentImportStatus.Rejection reason) throws IOException {
+		status.recordRejected(reason);
+		callback.documentRejected(record, document, reason);
+	}
+
+	@Override
+	@Transactional(readOnly = true)
+	public List<DocumentChange> retrieveDocumentChanges(final Long since, final int limit)
+			throws DocumentServiceException {
+		try {
+			return changeRepository.findBySequenceGreaterThanOrderBySequenceAsc(since, new PageRequest(0, limit));
+		} catch (final Throwable t) {
+			throw new DocumentServiceException("Unable to retrieve document changes! since = " + since, t);
+		}
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public List<DocumentSummary> retrieveDocumentSummaries(final DocumentCriteria criteria)
+			throws DocumentServiceException {
+		try {
+			return concatenate(gather(new ShardCallback<List<DocumentSummary>>() {
+				@Override
+				public List<DocumentSummary> doInShard(final int shard) {
+					if (shard < shards.shardOf(criteria.getAfterId())) {
+						return Collections.emptyList();
+					}
+					return documentRepository.findSummariesByCriteria(criteria);
+				}
+			}), criteria.getLimit());
+		} catch (final Throwable t) {
+			throw new DocumentServiceException("Unable to retrieve document summaries! criteria = " + criteria, t);
+		}
+	}
+
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
 	public List<Document> retrieveDocuments(final Document criteria) throws DocumentServiceException {
+		return retrieveMatchingDocuments(new DocumentCriteria.Builder().from(criteria).build());
+	}
+
+	/**
+	 * Retrieves a page of documents. When partitioned, every shard returns the
+	 * documents up to the end of the page, which are merged in the order of
+	 * the page before it is cut out.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public Page<Document> retrieveDocuments(final Document criteria, final Pageable pageable)
+			throws DocumentServiceException {
 		try {
-			return Lists.newArrayList(documentRepository.findAll());
+			final Pageable head = (shards.isPartitioned())
+					? new PageRequest(0, pageable.getOffset() + pageable.getPageSize(), pageable.getSort())
+					: pageable;
+			final List<Page<Document>> pages = gather(new ShardCallback<Page<Document>>() {
+				@Override
+				public Page<Document> doInShard(final int shard) {
+					return documentRepository.findAll(head);
+				}
+			});
+			if (pages.size() == 1) {
+				return pages.get(0);
+			}
+
+			final List<Document> content = new ArrayList<>();
+			long total = 0;
+			for (final Page<Document> page : pages) {
+				content.addAll(page.getContent());
+				total += page.getTotalElements();
+			}
+			if (pageable.getSort() != null) {
+				Collections.sort(content, comparator(pageable.getSort()));
+			}
+			final int from = Math.min(pageable.getOffset(), content.size());
+			final int to = Math.min(pageable.getOffset() + pageable.getPageSize(), content.size());
+			return new PageImpl<>(new ArrayList<>(content.subList(from, to)), pageable, total);
 		} catch (final Throwable t) {
 			throw new DocumentServiceException("Unable to retrieve documents! criteria = " + criteria, t);
 		}
 	}
-	
+
 	@Override
-	public Page<Document> retrieveDocuments(final Document criteria, Pageable pageable) throws DocumentServiceException {
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public List<Document> retrieveMatchingDocuments(final DocumentCriteria criteria) throws DocumentServiceException {
 		try {
-			return documentRepository.findAll(pageable);
+			return concatenate(gather(new ShardCallback<List<Document>>() {
+				@Override
+				public List<Document> doInShard(final int shard) {
+					if (shard < shards.shardOf(criteria.getAfterId())) {
+						return Collections.emptyList();
+					}
+					return documentRepository.findByCriteria(criteria);
+				}
+			}), criteria.getLimit());
 		} catch (final Throwable t) {
 			throw new DocumentServiceException("Unable to retrieve documents! criteria = " + criteria, t);
 		}
 	}
 
+	/**
+	 * Saves the residual template of a document version in the shard of the
+	 * document, within a transaction of its own. The residual of an earlier
+	 * version is replaced, while that of a later version is kept.
+	 */
+	@Override
+	@Transactional(propagation = Propagation.NOT_SUPPORTED)
+	public void saveResidualTemplate(final Long id, final Integer version, final String residual)
+			throws DocumentServiceException {
+		try {
+			executeInShard(shards.shardOf(id), new DefaultTransactionDefinition(), new ShardCallback<Void>() {
+				@Override
+				public Void doInShard(final int shard) {
+					final DocumentResidual existing = residualRepository.findOne(id);
+					if (existing == null) {
+						residualRepository.save(new DocumentResidual(id, version, residual));
+					} else if (existing.getDocumentVersion() < version) {
+						existing.setTemplate(version, residual);
+						residualRepository.save(existing);
+					}
+					return null;
+				}
+			});
+		} catch (final Throwable t) {
+			throw new DocumentServiceException("Unable to save residual template! id = " + id + ", version = "
+					+ version, t);
+		}
+	}
+
 	public void setMaxCacheSize(final int maxCacheSize) {
 		this.maxCacheSize = maxCacheSize;
 	}
+
+	/**
+	 * Prepares the stored template of a document being written: submitted
+	 * template text is always stored, while the content of a template URI is
+	 * stored only when templates are configured to be stored.
+	 * 
+	 * @return the template to store, or <code>null</code> if the template is
+	 *         to be fetched from its URI when needed
+	 */
+	private DocumentTemplate storeTemplate(final String text, final URI templateUri) throws IOException {
+		if (text != null) {
+			return new DocumentTemplate(text);
+		} else if (storeTemplates && templateUri != null) {
+			return new DocumentTemplate(fetchTemplate(templateUri));
+		}
+		return null;
+	}
 	
+	/**
+	 * Answers a patch that changes nothing with the document as it stands,
+	 * neither bumping its version nor recording a change, provided the patch
+	 * is not of a superseded version.
+	 */
+	private Document unchanged(final Document patch) throws UnknownDocumentException, StaleDocumentException {
+		final Document document = findDocument(patch.getId());
+		if (patch.getVersion() != null && !patch.getVersion().equals(document.getVersion())) {
+			throw new StaleDocumentException("Document is stale! id = " + patch.getId() + ", version = "
+					+ patch.getVersion());
+		}
+		return document;
+	}
+
 	@Override
 	public Document updateDocument(final Document document) throws InvalidDocumentException, DocumentServiceException {
-		try {
-			final Document updated = new Document.Builder()
-				.from(documentRepository.findOne(document.getId()))
+		try (final DocumentShards.Binding binding = DocumentShards.bind(shards.shardOf(document.getId()))) {
+			checkShard(document.getId(), document.getName());
+			final Document existing = documentRepository.findOne(document.getId());
+			final Document.Builder builder = new Document.Builder()
+				.from(existing)
 				.setName(document.getName())
 				.setTemplateUri(document.getTemplateUri())
 				.setDescription(document.getDescription())
-				.markAsUpdated()
-				.build();
-			return documentRepository.save(updated);
+				.markAsUpdated();
+			if (document.getTemplate() != null
+					|| !ObjectUtils.equals(document.getTemplateUri(), existing.getTemplateUri())) {
+				builder.setStoredTemplate(storeTemplate(document.getTemplate(), document.getTemplateUri()));
+			}
+			final Document updated = builder.build();
+			evict(existing);
+			return publish(DocumentEvent.Type.UPDATED, documentRepository.save(updated));
+		} catch (final InvalidDocumentException e) {
+			throw e;
 		} catch (final IllegalArgumentException e) {
 			throw new InvalidDocumentException("Invalid document! document = " + document, e);
 		} catch (final Throwable t) {
@@ -37,4 +37,8 @@ public class InvalidDocumentException extends DocumentServiceException {
 		super(message, cause);
 	}
 
+	public InvalidDocumentException(String message) {
+		super(message, null);
+	}
+
 }
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.search;
+
+import java.util.Date;
+
+import org.jrb.docasm.domain.DocumentSummary;
+import org.springframework.hateoas.Identifiable;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Immutable summary of a document matching a search, along with its relevance
+ * score.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@JsonInclude(Include.NON_EMPTY)
+public class DocumentSearchHit implements Identifiable<Long> {
+
+	private final DocumentSummary summary;
+	private final float score;
+
+	public DocumentSearchHit(final DocumentSummary summary, final float score) {
+		this.summary = summary;
+		this.score = score;
+	}
+
+	public String getDescription() {
+		return summary.getDescription();
+	}
+
+	@Override
+	public Long getId() {
+		return summary.getId();
+	}
+
+	public String getName() {
+		return summary.getName();
+	}
+
+	public float getScore() {
+		return score;
+	}
+
+	public Date getUpdatedOn() {
+		return summary.getUpdatedOn();
+	}
+
+	@Override
+	public String toString() {
+		return "DocumentSearchHit [id=" + getId() + ", name=" + getName() + ", score=" + score + "]";
+	}
+
+}
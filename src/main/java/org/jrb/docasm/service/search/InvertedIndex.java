@@ -0,0 +1,398 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process inverted index of term frequencies, ranked by TF-IDF. Each entry
+ * is numbered with a dense ordinal, and each term maps to primitive arrays of
+ * the ordinals containing it and their weights, <code>(1 + log tf)</code>
+ * scaled by the length norm of the entry, <code>1 / sqrt(terms)</code>. A
+ * query is scored by walking only the postings of its terms into a table of
+ * accumulators sized to those postings, weighting each by the inverse document
+ * frequency of the term, <code>log(1 + N / df)</code>, and keeping the best
+ * hits in a bounded heap.
+ * <p>
+ * Replaced and removed entries are retired lazily: their ordinals are marked
+ * dead and skipped, a term's postings are compacted once half of them are
+ * dead, and all ordinals are renumbered once most of them are dead. Searches
+ * run concurrently; changes are exclusive.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class InvertedIndex {
+
+	private final static int INITIAL_CAPACITY = 1024;
+
+	private final static Comparator<Hit> RANKING = new Comparator<Hit>() {
+		@Override
+		public int compare(final Hit a, final Hit b) {
+			final int byScore = Float.compare(b.score, a.score);
+			return (byScore != 0) ? byScore : a.id.compareTo(b.id);
+		}
+	};
+
+	private final Map<String, Postings> postings = new HashMap<>();
+	private final Map<Long, Integer> ordinals = new HashMap<>();
+	private final Map<Long, String[]> entries = new HashMap<>();
+	private final BitSet live = new BitSet();
+	private long[] ids = new long[INITIAL_CAPACITY];
+	private int nextOrdinal;
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	/**
+	 * Indexes an entry, replacing any previous version of it.
+	 * 
+	 * @param id
+	 *            the entry identifier
+	 * @param frequencies
+	 *            the (possibly weighted) frequency of each term of the entry
+	 */
+	public void put(final Long id, final Map<String, Float> frequencies) {
+		final float norm = (float) (1.0 / Math.sqrt(Math.max(1, frequencies.size())));
+		lock.writeLock().lock();
+		try {
+			unindex(id);
+			if (nextOrdinal == ids.length) {
+				ids = Arrays.copyOf(ids, ids.length << 1);
+			}
+			final int ordinal = nextOrdinal++;
+			ids[ordinal] = id;
+			live.set(ordinal);
+			ordinals.put(id, ordinal);
+			for (final Map.Entry<String, Float> frequency : frequencies.entrySet()) {
+				Postings termPostings = postings.get(frequency.getKey());
+				if (termPostings == null) {
+					termPostings = new Postings();
+					postings.put(frequency.getKey(), termPostings);
+				}
+				termPostings.add(ordinal, (float) (1.0 + Math.log(frequency.getValue())) * norm);
+			}
+			entries.put(id, frequencies.keySet().toArray(new String[frequencies.size()]));
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Removes an entry from the index.
+	 * 
+	 * @param id
+	 *            the entry identifier
+	 */
+	public void remove(final Long id) {
+		lock.writeLock().lock();
+		try {
+			unindex(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Renumbers the live entries densely, dropping every dead posting.
+	 */
+	private void renumber() {
+		final int[] renumbered = new int[nextOrdinal];
+		final long[] liveIds = new long[Math.max(INITIAL_CAPACITY, ordinals.size() << 1)];
+		int count = 0;
+		for (int ordinal = 0; ordinal < nextOrdinal; ordinal++) {
+			if (live.get(ordinal)) {
+				liveIds[count] = ids[ordinal];
+				renumbered[ordinal] = count++;
+			} else {
+				renumbered[ordinal] = -1;
+			}
+		}
+		for (final Iterator<Postings> it = postings.values().iterator(); it.hasNext();) {
+			final Postings termPostings = it.next();
+			termPostings.renumber(renumbered);
+			if (termPostings.size == 0) {
+				it.remove();
+			}
+		}
+		for (final Map.Entry<Long, Integer> ordinal : ordinals.entrySet()) {
+			ordinal.setValue(renumbered[ordinal.getValue()]);
+		}
+		ids = liveIds;
+		nextOrdinal = count;
+		live.clear();
+		live.set(0, count);
+	}
+
+	/**
+	 * Ranks the entries containing any of the given terms.
+	 * 
+	 * @param terms
+	 *            the query terms
+	 * @param offset
+	 *            the number of leading hits to skip; an offset at or beyond
+	 *            the number of matching entries yields an empty page
+	 * @param limit
+	 *            the maximum number of hits to return
+	 * @return the requested page of hits, best first
+	 */
+	public Result search(final Collection<String> terms, final long offset, final int limit) {
+		PriorityQueue<Hit> best = null;
+		int total = 0;
+		lock.readLock().lock();
+		try {
+			final List<Postings> termPostings = new ArrayList<>();
+			int walked = 0;
+			for (final String term : new HashSet<>(terms)) {
+				final Postings found = postings.get(term);
+				if (found != null) {
+					termPostings.add(found);
+					walked += found.size;
+				}
+			}
+			final Accumulators scores = new Accumulators(walked);
+			final int count = ordinals.size();
+			for (final Postings found : termPostings) {
+				final float idf = (float) Math.log(1.0 + (double) count / found.liveSize());
+				for (int i = 0; i < found.size; i++) {
+					final int ordinal = found.ordinals[i];
+					if (live.get(ordinal)) {
+						scores.add(ordinal, found.weights[i] * idf);
+					}
+				}
+			}
+			total = scores.size;
+			if (offset >= total || limit <= 0) {
+				return new Result(Collections.<Hit> emptyList(), total);
+			}
+			final int wanted = (int) Math.min(offset + limit, total);
+			best = new PriorityQueue<>(wanted, Collections.reverseOrder(RANKING));
+			for (int i = 0; i < total; i++) {
+				final int ordinal = scores.ordinal(i);
+				final float score = scores.score(i);
+				if (best.size() < wanted) {
+					best.add(new Hit(ids[ordinal], score));
+				} else if (score >= best.peek().score) {
+					final Hit hit = new Hit(ids[ordinal], score);
+					if (RANKING.compare(hit, best.peek()) < 0) {
+						best.poll();
+						best.add(hit);
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+
+		final List<Hit> ranked = new ArrayList<>(best);
+		Collections.sort(ranked, RANKING);
+		return new Result(new ArrayList<>(ranked.subList((int) offset, ranked.size())), total);
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return ordinals.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private void unindex(final Long id) {
+		final Integer ordinal = ordinals.remove(id);
+		if (ordinal == null) {
+			return;
+		}
+		live.clear(ordinal);
+		for (final String term : entries.remove(id)) {
+			final Postings termPostings = postings.get(term);
+			if (++termPostings.dead << 1 > termPostings.size) {
+				termPostings.compact(live);
+				if (termPostings.size == 0) {
+					postings.remove(term);
+				}
+			}
+		}
+		if (nextOrdinal > INITIAL_CAPACITY && ordinals.size() << 1 < nextOrdinal) {
+			renumber();
+		}
+	}
+
+	/**
+	 * Scores accumulated by one search, in an open-addressed table sized to
+	 * the postings it walks rather than to the whole index, so that a query
+	 * of rare terms allocates little however many entries are indexed. Slots
+	 * are remembered in the order their ordinals were first matched.
+	 */
+	private static class Accumulators {
+
+		private final int[] keys;
+		private final float[] scores;
+		private final int[] matched;
+		private final int mask;
+		private int size;
+
+		public Accumulators(final int postings) {
+			final int capacity = Integer.highestOneBit(Math.max(1, postings) * 2 - 1) << 1;
+			keys = new int[capacity];
+			scores = new float[capacity];
+			matched = new int[Math.max(1, postings)];
+			mask = capacity - 1;
+		}
+
+		public void add(final int ordinal, final float score) {
+			final int key = ordinal + 1;
+			final int hash = key * 0x9E3779B9;
+			int slot = (hash ^ (hash >>> 16)) & mask;
+			while (keys[slot] != key) {
+				if (keys[slot] == 0) {
+					keys[slot] = key;
+					matched[size++] = slot;
+					break;
+				}
+				slot = (slot + 1) & mask;
+			}
+			scores[slot] += score;
+		}
+
+		public int ordinal(final int match) {
+			return keys[matched[match]] - 1;
+		}
+
+		public float score(final int match) {
+			return scores[matched[match]];
+		}
+
+	}
+
+	/**
+	 * One ranked result of a search.
+	 */
+	public static class Hit {
+
+		private final Long id;
+		private final float score;
+
+		public Hit(final Long id, final float score) {
+			this.id = id;
+			this.score = score;
+		}
+
+		public Long getId() {
+			return id;
+		}
+
+		public float getScore() {
+			return score;
+		}
+
+	}
+
+	/**
+	 * The ordinals and weights of the entries containing one term, in
+	 * parallel arrays, along with a count of those since retired.
+	 */
+	private static class Postings {
+
+		private int[] ordinals = new int[4];
+		private float[] weights = new float[4];
+		private int size;
+		private int dead;
+
+		public void add(final int ordinal, final float weight) {
+			if (size == ordinals.length) {
+				ordinals = Arrays.copyOf(ordinals, size << 1);
+				weights = Arrays.copyOf(weights, size << 1);
+			}
+			ordinals[size] = ordinal;
+			weights[size] = weight;
+			size++;
+		}
+
+		public void compact(final BitSet live) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				if (live.get(ordinals[i])) {
+					ordinals[kept] = ordinals[i];
+					weights[kept] = weights[i];
+					kept++;
+				}
+			}
+			size = kept;
+			dead = 0;
+		}
+
+		public int liveSize() {
+			return Math.max(1, size - dead);
+		}
+
+		public void renumber(final int[] renumbered) {
+			int kept = 0;
+			for (int i = 0; i < size; i++) {
+				final int ordinal = renumbered[ordinals[i]];
+				if (ordinal >= 0) {
+					ordinals[kept] = ordinal;
+					weights[kept] = weights[i];
+					kept++;
+				}
+			}
+			size = kept;
+			dead = 0;
+		}
+
+	}
+
+	/**
+	 * A page of ranked results, along with the total number of matches.
+	 */
+	public static class Result {
+
+		private final List<Hit> hits;
+		private final int total;
+
+		public Result(final List<Hit> hits, final int total) {
+			this.hits = hits;
+			this.total = total;
+		}
+
+		public List<Hit> getHits() {
+			return hits;
+		}
+
+		public int getTotal() {
+			return total;
+		}
+
+	}
+
+}
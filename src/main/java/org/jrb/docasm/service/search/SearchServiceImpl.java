@@ -0,0 +1,331 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.service.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.regex.Pattern;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceUtil;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.domain.DocumentTemplate;
+import org.jrb.docasm.repository.DocumentCriteria;
+import org.jrb.docasm.repository.DocumentRepositoryCustom.DocumentCallback;
+import org.jrb.docasm.service.document.DocumentEvent;
+import org.jrb.docasm.service.document.DocumentService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+
+/**
+ * {@link SearchService} backed by an in-process {@link InvertedIndex} over the
+ * description and template text of every document. The index is built from
+ * the catalogue at startup and kept current by {@link DocumentEvent}s, so
+ * searches never touch the database. Template directives are stripped before
+ * indexing, and description terms weigh more than template terms.
+ * <p>
+ * Names are held apart in a sorted, lock-free map keyed by lower-case name,
+ * so that name completion is a range read over the names sharing a prefix.
+ * <p>
+ * Templates are indexed only when they are at hand: stored templates always,
+ * read at startup in the same query as their documents, and templates fetched
+ * from their URI when a document is created or updated.
+ * A change is indexed in the thread committing it only as far as the
+ * committed document allows; a template to be fetched from its URI is fetched
+ * and indexed afterwards on a single background thread, so that changes to a
+ * document are indexed in order, while the terms indexed before stand in for
+ * it. A stored template left unchanged by an update is not read again. Neither
+ * the startup build nor a bulk import fetches templates, so documents they
+ * index are searchable by description until they are next updated.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@Service("searchService")
+public class SearchServiceImpl implements SearchService, ApplicationListener<DocumentEvent> {
+
+	private final static Logger LOG = LoggerFactory.getLogger(SearchService.class);
+
+	private final static float DESCRIPTION_WEIGHT = 2.0f;
+	private final static int MIN_TERM_LENGTH = 2;
+	private final static Pattern DIRECTIVE = Pattern.compile("[$#]\\{[^}]*\\}");
+	private final static Pattern SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private final static PersistenceUtil PERSISTENCE = Persistence.getPersistenceUtil();
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private Environment env;
+
+	@Resource
+	private Executor searchIndexExecutor;
+
+	private final InvertedIndex index = new InvertedIndex();
+
+	private final Map<Long, IndexedDocument> documents = new ConcurrentHashMap<>();
+
+	private final ConcurrentNavigableMap<String, DocumentSummary> names = new ConcurrentSkipListMap<>();
+
+	@Override
+	public List<DocumentSummary> completeNames(final String prefix, final int limit) {
+		final String from = nameKey(prefix, null);
+		final List<DocumentSummary> completions = new ArrayList<>(limit);
+		for (final DocumentSummary name : names.subMap(from, from + Character.MAX_VALUE).values()) {
+			if (completions.size() == limit) {
+				break;
+			}
+			completions.add(name);
+		}
+		return completions;
+	}
+
+	/**
+	 * Fetches the template of a document from its URI and indexes it, on the
+	 * background thread.
+	 */
+	private void fetchTemplate(final Long id) {
+		try {
+			searchIndexExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						indexTemplate(id, documentService.findDocument(id).getTemplate());
+					} catch (final RuntimeException e) {
+						LOG.warn("Unable to index template! document = " + id, e);
+					}
+				}
+			});
+		} catch (final RejectedExecutionException e) {
+			LOG.warn("Template indexing queue is full! document = " + id);
+		}
+	}
+
+	private synchronized void index(final Document document, final String template) {
+		index(new IndexedDocument(
+				summary(document),
+				terms(document.getDescription()),
+				terms(stripDirectives(template))));
+	}
+
+	private void index(final IndexedDocument document) {
+		final Map<String, Float> frequencies = new HashMap<>();
+		for (final Map.Entry<String, Integer> term : document.templateTerms.entrySet()) {
+			frequencies.put(term.getKey(), term.getValue().floatValue());
+		}
+		for (final Map.Entry<String, Integer> term : document.descriptionTerms.entrySet()) {
+			final Float frequency = frequencies.get(term.getKey());
+			frequencies.put(
+					term.getKey(),
+					((frequency != null) ? frequency : 0f) + DESCRIPTION_WEIGHT * term.getValue());
+		}
+		final Long id = document.summary.getId();
+		index.put(id, frequencies);
+		unname(documents.put(id, document));
+		names.put(
+				nameKey(document.summary.getName(), id),
+				new DocumentSummary(id, document.summary.getName(), null, null));
+	}
+
+	/**
+	 * Replaces the template terms of a document, unless it has been removed
+	 * from the index meanwhile.
+	 */
+	private synchronized void indexTemplate(final Long id, final String template) {
+		final IndexedDocument existing = documents.get(id);
+		if (existing != null) {
+			index(new IndexedDocument(existing.summary, existing.descriptionTerms, terms(stripDirectives(template))));
+		}
+	}
+
+	@PostConstruct
+	public void init() {
+		final int fetchSize = env.getRequiredProperty("document.export.fetch.size", Integer.class);
+		final long started = System.currentTimeMillis();
+		final DocumentCriteria criteria = new DocumentCriteria.Builder().setFetchTemplates(true).build();
+		documentService.exportDocuments(criteria, fetchSize, new DocumentCallback() {
+			@Override
+			public void processDocument(final Document document) {
+				index(document, (document.getStoredTemplate() != null)
+						? document.getStoredTemplate().getText()
+						: null);
+			}
+		});
+		LOG.info("Indexed " + index.size() + " documents in " + (System.currentTimeMillis() - started) + " ms");
+	}
+
+	/**
+	 * Keys a name by its lower-case form, so that completion ignores case,
+	 * followed by a separator below any character and a suffix telling apart
+	 * names differing only in case.
+	 */
+	private String nameKey(final String name, final Object suffix) {
+		return name.toLowerCase(Locale.ROOT) + ((suffix != null) ? "\u0000" + suffix : "");
+	}
+
+	@Override
+	public void onApplicationEvent(final DocumentEvent event) {
+		final Document document = event.getDocument();
+		switch (event.getType()) {
+		case CREATED:
+		case UPDATED:
+			final DocumentTemplate storedTemplate = document.getStoredTemplate();
+			if (storedTemplate != null && PERSISTENCE.isLoaded(storedTemplate)) {
+				index(document, storedTemplate.getText());
+			} else {
+				reindex(document);
+				if (storedTemplate == null && document.getTemplateUri() != null) {
+					fetchTemplate(document.getId());
+				}
+			}
+			break;
+		case IMPORTED:
+			index(document, null);
+			break;
+		case PATCHED:
+			patch(document);
+			break;
+		case DELETED:
+			remove(document.getId());
+			break;
+		}
+	}
+
+	private synchronized void patch(final Document patched) {
+		final IndexedDocument existing = documents.get(patched.getId());
+		if (existing != null) {
+			index(new IndexedDocument(summary(patched), terms(patched.getDescription()), existing.templateTerms));
+		}
+	}
+
+	/**
+	 * Re-indexes a document whose template is not at hand, keeping any
+	 * template terms already indexed for it.
+	 */
+	private synchronized void reindex(final Document document) {
+		final IndexedDocument existing = documents.get(document.getId());
+		index(new IndexedDocument(
+				summary(document),
+				terms(document.getDescription()),
+				(existing != null) ? existing.templateTerms : Collections.<String, Integer> emptyMap()));
+	}
+
+	private synchronized void remove(final Long id) {
+		index.remove(id);
+		unname(documents.remove(id));
+	}
+
+	@Override
+	public Page<DocumentSearchHit> searchDocuments(final String query, final Pageable pageable) {
+		final InvertedIndex.Result result = index.search(
+				terms(query).keySet(),
+				(long) pageable.getPageNumber() * pageable.getPageSize(),
+				pageable.getPageSize());
+		final List<DocumentSearchHit> hits = new ArrayList<>(result.getHits().size());
+		for (final InvertedIndex.Hit hit : result.getHits()) {
+			final IndexedDocument document = documents.get(hit.getId());
+			if (document != null) {
+				hits.add(new DocumentSearchHit(document.summary, hit.getScore()));
+			}
+		}
+		return new PageImpl<>(hits, pageable, result.getTotal());
+	}
+
+	private String stripDirectives(final String template) {
+		return (template != null) ? DIRECTIVE.matcher(template).replaceAll(" ") : null;
+	}
+
+	private DocumentSummary summary(final Document document) {
+		return new DocumentSummary(
+				document.getId(),
+				document.getName(),
+				document.getDescription(),
+				document.getUpdatedOn());
+	}
+
+	private void unname(final IndexedDocument document) {
+		if (document != null) {
+			names.remove(nameKey(document.summary.getName(), document.summary.getId()));
+		}
+	}
+
+	/**
+	 * Splits text into lower-case terms of letters and digits, counting the
+	 * occurrences of each.
+	 */
+	static Map<String, Integer> terms(final String text) {
+		if (text == null) {
+			return Collections.emptyMap();
+		}
+		final Map<String, Integer> terms = new HashMap<>();
+		for (final String token : SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+			if (token.length() >= MIN_TERM_LENGTH) {
+				final Integer count = terms.get(token);
+				terms.put(token, (count != null) ? count + 1 : 1);
+			}
+		}
+		return terms;
+	}
+
+	/**
+	 * What the index holds of a document: its summary, for listing hits, and
+	 * its terms by field, so that a patched description can be re-indexed
+	 * without reloading the template.
+	 */
+	private static class IndexedDocument {
+
+		private final DocumentSummary summary;
+		private final Map<String, Integer> descriptionTerms;
+		private final Map<String, Integer> templateTerms;
+
+		public IndexedDocument(
+				final DocumentSummary summary,
+				final Map<String, Integer> descriptionTerms,
+				final Map<String, Integer> templateTerms) {
+			this.summary = summary;
+			this.descriptionTerms = descriptionTerms;
+			this.templateTerms = templateTerms;
+		}
+
+	}
+
+}
@@ -0,0 +1,92 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+
+/**
+ * Actuator endpoint reporting the hits, misses and hit ratio of each region
+ * of Hibernate's second-level cache, and of its query cache.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class CacheStatisticsEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	private Statistics statistics;
+
+	public CacheStatisticsEndpoint() {
+		super("cache", false, true);
+	}
+
+	@PostConstruct
+	public void init() {
+		final EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			this.statistics = entityManager.unwrap(Session.class).getSessionFactory().getStatistics();
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		final Map<String, Object> regions = new LinkedHashMap<>();
+		for (final String name : statistics.getSecondLevelCacheRegionNames()) {
+			final SecondLevelCacheStatistics region = statistics.getSecondLevelCacheStatistics(name);
+			final Map<String, Object> report = report(region.getHitCount(), region.getMissCount(), region.getPutCount());
+			report.put("elements", region.getElementCountInMemory());
+			regions.put(name, report);
+		}
+		final Map<String, Object> result = new LinkedHashMap<>();
+		result.put("regions", regions);
+		result.put("queries", report(
+				statistics.getQueryCacheHitCount(),
+				statistics.getQueryCacheMissCount(),
+				statistics.getQueryCachePutCount()));
+		return result;
+	}
+
+	private Map<String, Object> report(final long hits, final long misses, final long puts) {
+		final Map<String, Object> report = new LinkedHashMap<>();
+		report.put("hits", hits);
+		report.put("misses", misses);
+		report.put("puts", puts);
+		report.put("hitRatio", (hits + misses > 0) ? (double) hits / (hits + misses) : 0.0);
+		return report;
+	}
+
+}
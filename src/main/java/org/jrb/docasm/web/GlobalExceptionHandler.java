@@ -22,14 +22,17 @@
  */
 package org.jrb.docasm.web;
 
+import org.jrb.commons.web.InvalidCursorException;
 import org.jrb.commons.web.MessageResponse;
 import org.jrb.commons.web.ResponseUtils;
 import org.jrb.docasm.service.document.DuplicateDocumentException;
 import org.jrb.docasm.service.document.InvalidDocumentException;
+import org.jrb.docasm.service.document.StaleDocumentException;
 import org.jrb.docasm.service.document.UnknownDocumentException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskRejectedException;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -52,6 +55,7 @@ public class GlobalExceptionHandler {
 	 * Converts one of several client-based bad request exceptions into an HTTP
 	 * 400 response with an error body. The mapped exceptions are as follows:
 	 * <ul>
+	 * <li>{@link InvalidCursorException}</li>
 	 * <li>{@link InvalidDocumentException}</li>
 	 * </ul>
 	 * 
@@ -59,7 +63,7 @@ public class GlobalExceptionHandler {
 	 *            the client exception
 	 * @return the error body
 	 */
-	@ExceptionHandler({ InvalidDocumentException.class })
+	@ExceptionHandler({ InvalidCursorException.class, InvalidDocumentException.class })
 	public ResponseEntity<MessageResponse> handleClientBadRequest(final Exception e) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug(e.getMessage(), e);
@@ -72,13 +76,14 @@ public class GlobalExceptionHandler {
 	 * response with an error body. The mapped exceptions are as follows:
 	 * <ul>
 	 * <li>{@link DuplicateDocumentException}</li>
+	 * <li>{@link StaleDocumentException}</li>
 	 * </ul>
 	 * 
 	 * @param e
 	 *            the client exception
 	 * @return the error body
 	 */
-	@ExceptionHandler({ DuplicateDocumentException.class })
+	@ExceptionHandler({ DuplicateDocumentException.class, StaleDocumentException.class })
 	public ResponseEntity<MessageResponse> handleConflictError(final Exception e) {
 		if (LOG.isDebugEnabled()) {
 			LOG.debug(e.getMessage(), e);
@@ -105,4 +110,21 @@ public class GlobalExceptionHandler {
 		return utils.createMessageResponse(e.getMessage(), HttpStatus.NOT_FOUND);
 	}
 
+	/**
+	 * Converts one of several server overload exceptions into an HTTP 503
+	 * response with an error body. The mapped exceptions are as follows:
+	 * <ul>
+	 * <li>{@link TaskRejectedException}</li>
+	 * </ul>
+	 * 
+	 * @param e
+	 *            the overload exception
+	 * @return the error body
+	 */
+	@ExceptionHandler({ TaskRejectedException.class })
+	public ResponseEntity<MessageResponse> handleServiceUnavailable(final Exception e) {
+		LOG.warn(e.getMessage());
+		return utils.createMessageResponse(e.getMessage(), HttpStatus.SERVICE_UNAVAILABLE);
+	}
+
 }
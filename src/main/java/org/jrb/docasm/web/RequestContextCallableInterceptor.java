@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.web;
+
+import java.util.concurrent.Callable;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletRequestWrapper;
+
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.context.request.async.CallableProcessingInterceptorAdapter;
+
+/**
+ * Exposes the request to the thread running an asynchronous controller
+ * {@link Callable}, as it is to the thread that received it, so that links
+ * built from the current request resolve there too. Jetty clears the paths
+ * of a request once the thread that received it lets go, so the thread is
+ * given a snapshot of them taken before it does.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class RequestContextCallableInterceptor extends CallableProcessingInterceptorAdapter {
+
+	private final static String SNAPSHOT_ATTRIBUTE = RequestContextCallableInterceptor.class.getName() + ".SNAPSHOT";
+
+	@Override
+	public <T> void beforeConcurrentHandling(final NativeWebRequest request, final Callable<T> task) {
+		request.setAttribute(
+				SNAPSHOT_ATTRIBUTE,
+				new RequestSnapshot(request.getNativeRequest(HttpServletRequest.class)),
+				RequestAttributes.SCOPE_REQUEST);
+	}
+
+	@Override
+	public <T> void postProcess(final NativeWebRequest request, final Callable<T> task, final Object result) {
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Override
+	public <T> void preProcess(final NativeWebRequest request, final Callable<T> task) {
+		final HttpServletRequest snapshot =
+				(HttpServletRequest) request.getAttribute(SNAPSHOT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(
+				(snapshot != null) ? snapshot : request.getNativeRequest(HttpServletRequest.class)));
+	}
+
+	/**
+	 * Request whose location is fixed at the time it was wrapped.
+	 */
+	private static class RequestSnapshot extends HttpServletRequestWrapper {
+
+		private final String scheme;
+		private final String serverName;
+		private final int serverPort;
+		private final String contextPath;
+		private final String servletPath;
+		private final String pathInfo;
+		private final String requestUri;
+		private final String queryString;
+
+		public RequestSnapshot(final HttpServletRequest request) {
+			super(request);
+			this.scheme = request.getScheme();
+			this.serverName = request.getServerName();
+			this.serverPort = request.getServerPort();
+			this.contextPath = request.getContextPath();
+			this.servletPath = request.getServletPath();
+			this.pathInfo = request.getPathInfo();
+			this.requestUri = request.getRequestURI();
+			this.queryString = request.getQueryString();
+		}
+
+		@Override
+		public String getContextPath() {
+			return contextPath;
+		}
+
+		@Override
+		public String getPathInfo() {
+			return pathInfo;
+		}
+
+		@Override
+		public String getQueryString() {
+			return queryString;
+		}
+
+		@Override
+		public String getRequestURI() {
+			return requestUri;
+		}
+
+		@Override
+		public StringBuffer getRequestURL() {
+			final StringBuffer url = new StringBuffer(scheme).append("://").append(serverName);
+			if (serverPort > 0 && !(scheme.equals("http") && serverPort == 80)
+					&& !(scheme.equals("https") && serverPort == 443)) {
+				url.append(':').append(serverPort);
+			}
+			return url.append(requestUri);
+		}
+
+		@Override
+		public String getScheme() {
+			return scheme;
+		}
+
+		@Override
+		public String getServerName() {
+			return serverName;
+		}
+
+		@Override
+		public int getServerPort() {
+			return serverPort;
+		}
+
+		@Override
+		public String getServletPath() {
+			return servletPath;
+		}
+
+	}
+
+}
@@ -0,0 +1,70 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.web;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.springframework.boot.actuate.endpoint.AbstractEndpoint;
+
+/**
+ * Actuator endpoint reporting the live state of the HTTP server thread pool:
+ * its threads, how busy they are, the depth of the request queue, and the
+ * number of requests turned away because the queue was full. The busy
+ * threads include the acceptor and selector threads of the connector, each
+ * of which holds a pool thread for the life of the server.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class ServerStatisticsEndpoint extends AbstractEndpoint<Map<String, Object>> {
+
+	private final ServerThreadPool threadPool;
+
+	public ServerStatisticsEndpoint(final ServerThreadPool threadPool) {
+		super("server", false, true);
+		this.threadPool = threadPool;
+	}
+
+	@Override
+	public Map<String, Object> invoke() {
+		final Map<String, Object> threads = new LinkedHashMap<>();
+		threads.put("min", threadPool.getMinThreads());
+		threads.put("max", threadPool.getMaxThreads());
+		threads.put("current", threadPool.getThreads());
+		threads.put("idle", threadPool.getIdleThreads());
+		threads.put("busy", threadPool.getBusyThreads());
+		threads.put("utilisation", threadPool.getUtilisation());
+		threads.put("lowOnThreads", threadPool.isLowOnThreads());
+
+		final Map<String, Object> queue = new LinkedHashMap<>();
+		queue.put("size", threadPool.getQueueSize());
+		queue.put("capacity", threadPool.getQueueCapacity());
+		queue.put("rejected", threadPool.getRejected());
+
+		final Map<String, Object> result = new LinkedHashMap<>();
+		result.put("threads", threads);
+		result.put("queue", queue);
+		return result;
+	}
+
+}
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2013 Jon Brule
+ * 
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of
+ * this software and associated documentation files (the "Software"), to deal in
+ * the Software without restriction, including without limitation the rights to
+ * use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of
+ * the Software, and to permit persons to whom the Software is furnished to do so,
+ * subject to the following conditions:
+ * 
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ * 
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS
+ * FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER
+ * IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM, OUT OF OR IN
+ * CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+package org.jrb.docasm.web;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+/**
+ * Jetty thread pool whose queue of waiting requests is bounded, so that a
+ * saturated server turns away work rather than letting the queue, and the
+ * latency of everything in it, grow without limit. Jetty closes the
+ * connection of any request the pool refuses; each refusal is counted.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class ServerThreadPool extends QueuedThreadPool {
+
+	private final BlockingQueue<Runnable> queue;
+	private final AtomicLong rejected = new AtomicLong();
+
+	public ServerThreadPool(final int queueSize) {
+		this(new ArrayBlockingQueue<Runnable>(queueSize));
+	}
+
+	private ServerThreadPool(final BlockingQueue<Runnable> queue) {
+		super(queue);
+		this.queue = queue;
+	}
+
+	@Override
+	public boolean dispatch(final Runnable job) {
+		final boolean dispatched = super.dispatch(job);
+		if (!dispatched && isRunning()) {
+			rejected.incrementAndGet();
+		}
+		return dispatched;
+	}
+
+	public int getBusyThreads() {
+		return getThreads() - getIdleThreads();
+	}
+
+	public int getQueueCapacity() {
+		return queue.size() + queue.remainingCapacity();
+	}
+
+	public int getQueueSize() {
+		return queue.size();
+	}
+
+	public long getRejected() {
+		return rejected.get();
+	}
+
+	/**
+	 * Returns the share of the maximum number of threads currently busy.
+	 * 
+	 * @return the utilisation of the pool, from zero to one
+	 */
+	public double getUtilisation() {
+		return (double) getBusyThreads() / getMaxThreads();
+	}
+
+}
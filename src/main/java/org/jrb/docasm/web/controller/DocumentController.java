@@ -22,33 +22,75 @@
  */
 package org.jrb.docasm.web.controller;
 
+import java.io.IOException;
+import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 
 import javax.annotation.PostConstruct;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.lang3.StringUtils;
+import org.jrb.commons.web.InvalidCursorException;
 import org.jrb.commons.web.MessageResponse;
 import org.jrb.commons.web.ResponseUtils;
+import org.jrb.commons.web.Versioned;
 import org.jrb.commons.web.controller.CrudControllerUtils;
 import org.jrb.commons.web.controller.CrudControllerUtils.CreateEntityCallback;
 import org.jrb.commons.web.controller.CrudControllerUtils.DeleteEntityCallback;
-import org.jrb.commons.web.controller.CrudControllerUtils.FindEntityCallback;
+import org.jrb.commons.web.controller.CrudControllerUtils.FindVersionedEntityCallback;
 import org.jrb.commons.web.controller.CrudControllerUtils.RetrieveEntitiesCallback;
+import org.jrb.commons.web.controller.CrudControllerUtils.RetrieveEntityPageCallback;
 import org.jrb.commons.web.controller.CrudControllerUtils.UpdateEntityCallback;
+import org.jrb.commons.web.controller.LinkTemplates;
 import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentChange;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.repository.DocumentCriteria;
+import org.jrb.docasm.repository.DocumentRepositoryCustom.DocumentCallback;
+import org.jrb.docasm.service.assembly.AssemblyBuffer;
+import org.jrb.docasm.service.assembly.AssemblyService;
+import org.jrb.docasm.service.assembly.AssemblyServiceException;
+import org.jrb.docasm.service.document.DocumentImportCallback;
+import org.jrb.docasm.service.document.DocumentImportStatus;
 import org.jrb.docasm.service.document.DocumentService;
 import org.jrb.docasm.service.document.DocumentServiceException;
 import org.jrb.docasm.service.document.DuplicateDocumentException;
 import org.jrb.docasm.service.document.InvalidDocumentException;
+import org.jrb.docasm.service.document.StaleDocumentException;
 import org.jrb.docasm.service.document.UnknownDocumentException;
+import org.jrb.docasm.service.search.DocumentSearchHit;
+import org.jrb.docasm.service.search.SearchService;
+import org.jrb.docasm.web.response.DocumentChangeListResponse;
 import org.jrb.docasm.web.response.DocumentListResponse;
 import org.jrb.docasm.web.response.DocumentResponse;
+import org.jrb.docasm.web.response.DocumentSearchResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.env.Environment;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 
 /**
  * RESTful API for managing {@link Document} entities and their actions.
@@ -59,18 +101,135 @@ import org.springframework.web.bind.annotation.RequestMethod;
 @RequestMapping("/api/document")
 public class DocumentController {
 
+	private final static String NDJSON_CONTENT_TYPE = "application/x-ndjson";
+
+	@Autowired
+	private AssemblyService assemblyService;
+
 	@Autowired
 	private DocumentService documentService;
 
+	@Autowired
+	private LinkTemplates linkTemplates;
+
 	@Autowired
 	private ResponseUtils responseUtils;
 
-	private CrudControllerUtils<Document, DocumentResponse, DocumentListResponse> controllerUtils;
+	@Autowired
+	private SearchService searchService;
+
+	@Autowired
+	private Environment env;
+
+	@Autowired
+	private MappingJackson2HttpMessageConverter messageConverter;
+
+	private CrudControllerUtils<Document, DocumentSummary, DocumentResponse, DocumentListResponse> controllerUtils;
+
+	private int defaultLimit;
+	private int maxLimit;
+	private int exportFetchSize;
+	private int importChunkSize;
+	private int defaultNamesLimit;
+	private int maxNamesLimit;
+	private int defaultSearchSize;
+	private int maxSearchSize;
+	private ObjectWriter exportWriter;
 
 	@PostConstruct
 	public void init() {
 		this.controllerUtils =
-				new CrudControllerUtils<Document, DocumentResponse, DocumentListResponse>(responseUtils);
+				new CrudControllerUtils<Document, DocumentSummary, DocumentResponse, DocumentListResponse>(responseUtils, linkTemplates);
+		this.defaultLimit = env.getRequiredProperty("document.list.limit.default", Integer.class);
+		this.maxLimit = env.getRequiredProperty("document.list.limit.max", Integer.class);
+		this.exportFetchSize = env.getRequiredProperty("document.export.fetch.size", Integer.class);
+		this.importChunkSize = env.getRequiredProperty("document.import.chunk.size", Integer.class);
+		this.defaultNamesLimit = env.getRequiredProperty("document.names.limit.default", Integer.class);
+		this.maxNamesLimit = env.getRequiredProperty("document.names.limit.max", Integer.class);
+		this.defaultSearchSize = env.getRequiredProperty("document.search.size.default", Integer.class);
+		this.maxSearchSize = env.getRequiredProperty("document.search.size.max", Integer.class);
+		this.exportWriter = messageConverter.getObjectMapper()
+				.writer()
+				.without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+	}
+
+	/**
+	 * RESTful endpoint to assemble a document from its template and the
+	 * submitted merge data. The assembled content is streamed to the client
+	 * rather than wrapped in a response envelope. The document is loaded and
+	 * assembled asynchronously, releasing the server thread meanwhile.
+	 * 
+	 * @param documentId
+	 *            the identifier of the document to be assembled
+	 * @param data
+	 *            the merge data bound into the document template
+	 * @param acceptEncoding
+	 *            the encodings accepted by the client, if any
+	 * @param response
+	 *            the servlet response receiving the assembled content
+	 * @return a callable assembling the document into the response
+	 * @throws UnknownDocumentException
+	 *             if attempt made to assemble an unregistered document
+	 * @throws DocumentServiceException
+	 *             if an unexpected error occurred while finding the document
+	 * @throws AssemblyServiceException
+	 *             if an unexpected error occurred while assembling the document
+	 * @throws IOException
+	 *             if the assembled content could not be written
+	 */
+	@RequestMapping(value = "{documentId}/assembly", method = RequestMethod.POST)
+	public Callable<Void> assembleDocument(
+			@PathVariable final Long documentId,
+			@RequestBody final Map<String, Object> data,
+			@RequestHeader(value = "Accept-Encoding", required = false) final String acceptEncoding,
+			final HttpServletResponse response)
+			throws UnknownDocumentException, DocumentServiceException, AssemblyServiceException, IOException {
+
+		final boolean compressionAccepted = StringUtils.containsIgnoreCase(acceptEncoding, "gzip");
+		return new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				final AssemblyBuffer buffer = assemblyService.assembleDocument(documentId, data, compressionAccepted);
+				try {
+					response.setContentType(buffer.getContentType());
+					for (final Map.Entry<String, String> header : buffer.getHeaders().entrySet()) {
+						response.setHeader(header.getKey(), header.getValue());
+					}
+					response.setHeader("Content-Length", Long.toString(buffer.size()));
+					buffer.writeTo(response.getOutputStream());
+				} finally {
+					buffer.release();
+				}
+				return null;
+			}
+		};
+	}
+
+	/**
+	 * RESTful endpoint to complete a document name for type-ahead. Names are
+	 * matched by prefix, ignoring case, from an in-memory index, and listed in
+	 * alphabetical order along with their document identifiers.
+	 * 
+	 * @param prefix
+	 *            the leading characters of the desired names
+	 * @param limit
+	 *            the maximum number of names to list
+	 * @return a Spring MVC response containing the matching names
+	 */
+	@RequestMapping(value = "names", method = RequestMethod.GET)
+	public ResponseEntity<DocumentListResponse> completeNames(
+			@RequestParam(value = "prefix", required = false, defaultValue = "") final String prefix,
+			@RequestParam(value = CrudControllerUtils.LIMIT_PARAM, required = false) final Integer limit) {
+
+		final int namesLimit = (limit == null) ? defaultNamesLimit : Math.max(1, Math.min(limit, maxNamesLimit));
+		return controllerUtils.retrieveEntities(
+				DocumentListResponse.class,
+				new RetrieveEntitiesCallback<DocumentSummary>() {
+					@Override
+					public List<DocumentSummary> retrieveEntities() {
+						return searchService.completeNames(prefix, namesLimit);
+					}
+				});
 	}
 
 	/**
@@ -133,99 +292,374 @@ public class DocumentController {
 	}
 
 	/**
-	 * RESTful CRUD endpoint to find an existing document.
+	 * RESTful endpoint to export every document as newline-delimited JSON.
+	 * Documents are streamed from a database cursor straight to the client,
+	 * one line each, so memory use does not grow with the number of
+	 * documents.
+	 * 
+	 * @param response
+	 *            the servlet response receiving the exported documents
+	 * @throws DocumentServiceException
+	 *             if an unexpected error occurred while exporting the
+	 *             documents
+	 * @throws IOException
+	 *             if the exported documents could not be written
+	 */
+	@RequestMapping(value = "export", method = RequestMethod.GET)
+	public void exportDocuments(final HttpServletResponse response) throws DocumentServiceException, IOException {
+
+		response.setContentType(NDJSON_CONTENT_TYPE);
+		final JsonGenerator generator = messageConverter.getObjectMapper()
+				.getFactory()
+				.createGenerator(response.getOutputStream());
+		generator.setRootValueSeparator(null);
+		try {
+			documentService.exportDocuments(
+					new DocumentCriteria.Builder().build(),
+					exportFetchSize,
+					new DocumentCallback() {
+						private int count;
+
+						@Override
+						public void processDocument(final Document document) throws IOException {
+							writeLine(generator, document);
+							if (++count % exportFetchSize == 0) {
+								generator.flush();
+							}
+						}
+					});
+		} finally {
+			generator.close();
+		}
+	}
+
+	/**
+	 * RESTful CRUD endpoint to find an existing document. The response carries
+	 * an ETag derived from the version of the document and its last update
+	 * time, and a conditional request for a version the client already holds
+	 * is answered with 304 (Not Modified) without loading the document or its
+	 * template. The document is found asynchronously, releasing the server
+	 * thread meanwhile.
 	 * 
 	 * @param documentId
 	 *            the identifier of the desired document
-	 * @return a Spring MVC response containing the found entity
+	 * @param request
+	 *            the servlet request, carrying any conditional headers
+	 * @return a callable producing the Spring MVC response containing the
+	 *         found entity
 	 * @throws UnknownDocumentException
 	 *             if attempt made to locate an unregistered document
 	 * @throws DocumentServiceException
 	 *             if an unexpected error occurred while finding a document
 	 */
 	@RequestMapping(value = "{documentId}", method = RequestMethod.GET)
-	public ResponseEntity<DocumentResponse> findEntity(@PathVariable final Long documentId)
+	public Callable<ResponseEntity<DocumentResponse>> findEntity(
+			@PathVariable final Long documentId,
+			final HttpServletRequest request)
 			throws UnknownDocumentException, DocumentServiceException {
 
-		return controllerUtils.findEntity(
-				documentId,
-				Document.class,
-				DocumentResponse.class,
-				DocumentController.class,
-				new FindEntityCallback<Document>() {
-					@Override
-					public Document findEntity(Long entityId) {
-						return documentService.findDocument(documentId);
-					}
-				});
+		return new Callable<ResponseEntity<DocumentResponse>>() {
+			@Override
+			public ResponseEntity<DocumentResponse> call() {
+				return controllerUtils.findEntity(
+						documentId,
+						Document.class,
+						DocumentResponse.class,
+						DocumentController.class,
+						request,
+						new FindVersionedEntityCallback<Document>() {
+							@Override
+							public Document findEntity(Long entityId) {
+								return documentService.findDocument(documentId);
+							}
+
+							@Override
+							public Versioned findEntityVersion(Long entityId) {
+								return documentService.findDocumentVersion(documentId);
+							}
+						});
+			}
+		};
 	}
 
 	/**
-	 * RESTful CRUD endpoint to retrieve existing documents.
+	 * RESTful endpoint to bulk import documents submitted as newline-delimited
+	 * JSON. Documents are inserted in JDBC batches, each chunk committed on its
+	 * own, and progress is streamed back as newline-delimited JSON: a line for
+	 * each document skipped as a duplicate or invalid, a line of running
+	 * totals after each committed chunk, and a final line of totals. Chunks
+	 * committed before a failure stay committed; the failure is reported as
+	 * the last line.
 	 * 
+	 * @param request
+	 *            the servlet request carrying the documents to be imported
+	 * @param response
+	 *            the servlet response receiving the import progress
+	 * @throws IOException
+	 *             if the submission could not be read or the progress could
+	 *             not be written
+	 */
+	@RequestMapping(value = "import", method = RequestMethod.POST)
+	public void importDocuments(final HttpServletRequest request, final HttpServletResponse response)
+			throws IOException {
+
+		response.setContentType(NDJSON_CONTENT_TYPE);
+		final MappingIterator<Document> documents = messageConverter.getObjectMapper()
+				.reader(Document.class)
+				.readValues(request.getInputStream());
+		final JsonGenerator generator = messageConverter.getObjectMapper()
+				.getFactory()
+				.createGenerator(response.getOutputStream());
+		generator.setRootValueSeparator(null);
+		try {
+			final DocumentImportStatus status = documentService.importDocuments(
+					documents,
+					importChunkSize,
+					new DocumentImportCallback() {
+						@Override
+						public void chunkCommitted(final DocumentImportStatus status) throws IOException {
+							writeLine(generator, status);
+							generator.flush();
+						}
+
+						@Override
+						public void documentRejected(
+								final long record,
+								final Document document,
+								final DocumentImportStatus.Rejection reason) throws IOException {
+							final Map<String, Object> rejection = new LinkedHashMap<>();
+							rejection.put("record", record);
+							rejection.put("name", document.getName());
+							rejection.put("rejected", reason);
+							writeLine(generator, rejection);
+						}
+					});
+			final Map<String, Object> summary = new LinkedHashMap<>();
+			summary.put("complete", true);
+			summary.put("status", status);
+			writeLine(generator, summary);
+		} catch (final DocumentServiceException e) {
+			final Map<String, Object> failure = new LinkedHashMap<>();
+			failure.put("complete", false);
+			failure.put("error", e.getMessage());
+			writeLine(generator, failure);
+		} finally {
+			documents.close();
+			generator.close();
+		}
+	}
+
+	/**
+	 * RESTful endpoint to read the log of changes to documents, for
+	 * incremental synchronization. Changes are listed in sequence order,
+	 * starting after the given sequence number, so a reader that keeps the
+	 * last sequence number it saw reads only what changed since. When more
+	 * changes follow, the response carries a <em>next</em> link to them.
+	 * 
+	 * @param since
+	 *            the sequence number after which changes are listed; omitted
+	 *            to list from the start of the log
+	 * @param limit
+	 *            the maximum number of changes to list
+	 * @return a Spring MVC response containing the changes
+	 * @throws DocumentServiceException
+	 *             if an unexpected error occurred while reading the changes
+	 */
+	@RequestMapping(value = "changes", method = RequestMethod.GET)
+	public ResponseEntity<DocumentChangeListResponse> retrieveDocumentChanges(
+			@RequestParam(value = "since", required = false, defaultValue = "0") final Long since,
+			@RequestParam(value = CrudControllerUtils.LIMIT_PARAM, required = false) final Integer limit)
+			throws DocumentServiceException {
+
+		final int pageLimit = (limit == null) ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+		final List<DocumentChange> changes = documentService.retrieveDocumentChanges(since, pageLimit + 1);
+		final DocumentChangeListResponse response = responseUtils.createResponse(DocumentChangeListResponse.class);
+		if (changes.size() > pageLimit) {
+			final List<DocumentChange> page = changes.subList(0, pageLimit);
+			response.setContent(page);
+			response.add(new Link(ServletUriComponentsBuilder.fromCurrentRequest()
+					.replaceQueryParam("since", page.get(pageLimit - 1).getSequence())
+					.replaceQueryParam(CrudControllerUtils.LIMIT_PARAM, pageLimit)
+					.build()
+					.toUriString(), Link.REL_NEXT));
+		} else {
+			response.setContent(changes);
+		}
+		return responseUtils.finalize(response, HttpStatus.OK);
+	}
+
+	/**
+	 * RESTful CRUD endpoint to retrieve summaries of existing documents,
+	 * optionally filtered, one keyset-paged list at a time. Timestamps are
+	 * given in ISO-8601 format. When more documents follow, the response
+	 * carries a <em>next</em> link to them.
+	 * 
+	 * @param after
+	 *            the opaque cursor of the desired page, taken from a
+	 *            <em>next</em> link; omitted for the first page
+	 * @param limit
+	 *            the maximum number of documents on the page
+	 * @param name
+	 *            the prefix of the names of the desired documents
+	 * @param description
+	 *            text contained in the descriptions of the desired documents
+	 * @param createdAfter
+	 *            the earliest creation time of the desired documents
+	 * @param createdBefore
+	 *            the creation time before which the desired documents were
+	 *            created
+	 * @param updatedAfter
+	 *            the earliest update time of the desired documents
+	 * @param updatedBefore
+	 *            the update time before which the desired documents were last
+	 *            updated
 	 * @return a Spring MVC response containing the entity list
+	 * @throws InvalidCursorException
+	 *             if the cursor is malformed
 	 * @throws DocumentServiceException
 	 *             if an unexpected error occurred while retrieving the
 	 *             documents
 	 */
 	@RequestMapping(method = RequestMethod.GET)
-	public ResponseEntity<DocumentListResponse> retrieveDocuments() throws DocumentServiceException {
+	public ResponseEntity<DocumentListResponse> retrieveDocuments(
+			@RequestParam(value = CrudControllerUtils.CURSOR_PARAM, required = false) final String after,
+			@RequestParam(value = CrudControllerUtils.LIMIT_PARAM, required = false) final Integer limit,
+			@RequestParam(value = "name", required = false) final String name,
+			@RequestParam(value = "description", required = false) final String description,
+			@RequestParam(value = "createdAfter", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) final Date createdAfter,
+			@RequestParam(value = "createdBefore", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) final Date createdBefore,
+			@RequestParam(value = "updatedAfter", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) final Date updatedAfter,
+			@RequestParam(value = "updatedBefore", required = false) @DateTimeFormat(iso = ISO.DATE_TIME) final Date updatedBefore)
+			throws InvalidCursorException, DocumentServiceException {
 
-		return controllerUtils.retrieveEntities(
+		final int pageLimit = (limit == null) ? defaultLimit : Math.max(1, Math.min(limit, maxLimit));
+		return controllerUtils.retrieveEntityPage(
+				after,
+				pageLimit,
 				DocumentListResponse.class,
-				new RetrieveEntitiesCallback<Document>() {
+				new RetrieveEntityPageCallback<DocumentSummary>() {
 					@Override
-					public List<Document> retrieveEntities() {
-						return documentService.retrieveDocuments(null);
+					public List<DocumentSummary> retrieveEntities(final Long afterId, final int limit) {
+						return documentService.retrieveDocumentSummaries(new DocumentCriteria.Builder()
+								.setNamePrefix(name)
+								.setDescriptionContains(description)
+								.setCreatedAfter(createdAfter)
+								.setCreatedBefore(createdBefore)
+								.setUpdatedAfter(updatedAfter)
+								.setUpdatedBefore(updatedBefore)
+								.setAfterId(afterId)
+								.setLimit(limit)
+								.build());
 					}
 				});
 
 	}
 
 	/**
-	 * RESTful CRUD endpoint to update an existing document.
+	 * RESTful endpoint to search the descriptions and template text of
+	 * documents. Hits are ranked by relevance to the query terms, best first,
+	 * and returned one page at a time.
+	 * 
+	 * @param query
+	 *            the words searched for
+	 * @param page
+	 *            the zero-based number of the desired page
+	 * @param size
+	 *            the maximum number of hits on the page
+	 * @return a Spring MVC response containing the page of hits
+	 */
+	@RequestMapping(value = "search", method = RequestMethod.GET)
+	public ResponseEntity<DocumentSearchResponse> searchDocuments(
+			@RequestParam(value = "q") final String query,
+			@RequestParam(value = "page", required = false) final Integer page,
+			@RequestParam(value = "size", required = false) final Integer size) {
+
+		final int pageSize = (size == null) ? defaultSearchSize : Math.max(1, Math.min(size, maxSearchSize));
+		final Page<DocumentSearchHit> hits = searchService.searchDocuments(
+				query,
+				new PageRequest((page == null) ? 0 : Math.max(0, page), pageSize));
+		final DocumentSearchResponse response = responseUtils.createResponse(DocumentSearchResponse.class);
+		response.setPage(hits);
+		return responseUtils.finalize(response, HttpStatus.OK);
+	}
+
+	/**
+	 * RESTful CRUD endpoint to update an existing document. A patch of the name
+	 * or description alone is applied as a single versioned update, without
+	 * reading the template, and the response carries the document as updated,
+	 * with its new version. If the patch carries a version, it is applied only to
+	 * that version of the document. A patch of the template is applied to the
+	 * whole document. The update is made asynchronously, releasing the server
+	 * thread meanwhile.
 	 * 
 	 * @param documentId
 	 *            the identifier of the document to be updated
 	 * @param document
 	 *            the document updates
-	 * @return a Spring MVC response containing the updated document
+	 * @return a callable producing the Spring MVC response containing the
+	 *         updated document
 	 * @throws InvalidDocumentException
 	 *             if the document updates do not pass the established
 	 *             validation rules
 	 * @throws UnknownDocumentException
 	 *             if attempt made to updated an unregistered document
+	 * @throws StaleDocumentException
+	 *             if the document is no longer at the version patched
+	 * @throws DuplicateDocumentException
+	 *             if the document is renamed to the name of another document
 	 * @throws DocumentServiceException
 	 *             if an unexpected error occurred while updating a document
 	 */
 	@RequestMapping(value = "{documentId}", method = RequestMethod.PATCH)
-	public ResponseEntity<DocumentResponse> updateDocument(
+	public Callable<ResponseEntity<DocumentResponse>> updateDocument(
 			@PathVariable final Long documentId,
 			@RequestBody final Document document)
-			throws InvalidDocumentException, UnknownDocumentException, DocumentServiceException {
-		return controllerUtils.updateEntity(
-				documentId,
-				document,
-				Document.class,
-				DocumentResponse.class,
-				DocumentController.class,
-				new UpdateEntityCallback<Document>() {
-					@Override
-					public Document updateEntity(Long entityId, Document submitted) {
-						final Document existing = documentService.findDocument(documentId);
-						final Document.Builder builder = new Document.Builder().from(existing);
-						if (controllerUtils.different(submitted.getName(), existing.getName())) {
-							builder.setName(submitted.getName());
-						}
-						if (controllerUtils.different(submitted.getTemplateUri(), existing.getTemplateUri())) {
-							builder.setTemplateUri(submitted.getTemplateUri());
-						}
-						if (controllerUtils.different(submitted.getDescription(), existing.getDescription())) {
-							builder.setDescription(submitted.getDescription());
-						}
-						return documentService.updateDocument(builder.build());
-					}
-				});
+			throws InvalidDocumentException, UnknownDocumentException, StaleDocumentException,
+			DuplicateDocumentException, DocumentServiceException {
+		return new Callable<ResponseEntity<DocumentResponse>>() {
+			@Override
+			public ResponseEntity<DocumentResponse> call() {
+				return controllerUtils.updateEntity(
+						documentId,
+						document,
+						Document.class,
+						DocumentResponse.class,
+						DocumentController.class,
+						new UpdateEntityCallback<Document>() {
+							@Override
+							public Document updateEntity(Long entityId, Document submitted) {
+								if (submitted.getTemplateUri() == null && submitted.getTemplate() == null) {
+									return documentService.patchDocument(new Document.Builder()
+											.setId(documentId)
+											.setVersion(submitted.getVersion())
+											.setName(submitted.getName())
+											.setDescription(submitted.getDescription())
+											.build());
+								}
+								final Document existing = documentService.findDocument(documentId);
+								final Document.Builder builder = new Document.Builder().from(existing);
+								if (controllerUtils.different(submitted.getName(), existing.getName())) {
+									builder.setName(submitted.getName());
+								}
+								if (controllerUtils.different(submitted.getTemplateUri(), existing.getTemplateUri())) {
+									builder.setTemplateUri(submitted.getTemplateUri());
+								}
+								if (submitted.getTemplate() != null) {
+									builder.setTemplate(submitted.getTemplate());
+								}
+								if (controllerUtils.different(submitted.getDescription(), existing.getDescription())) {
+									builder.setDescription(submitted.getDescription());
+								}
+								return documentService.updateDocument(builder.build());
+							}
+						});
+			}
+		};
+	}
+
+	private void writeLine(final JsonGenerator generator, final Object value) throws IOException {
+		exportWriter.writeValue(generator, value);
+		generator.writeRaw('\n');
 	}
 
 }
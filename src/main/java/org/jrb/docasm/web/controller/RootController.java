@@ -22,8 +22,6 @@
  */
 package org.jrb.docasm.web.controller;
 
-import static org.springframework.hateoas.mvc.ControllerLinkBuilder.linkTo;
-
 import org.jrb.commons.web.MessageResponse;
 import org.jrb.commons.web.controller.AbstractRootController;
 import org.jrb.docasm.domain.Document;
@@ -40,7 +38,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 public class RootController extends AbstractRootController {
 	
 	protected void addLinks(final MessageResponse response) {
-		response.add(linkTo(DocumentController.class).withRel(entityRel(Document.class)));		
+		response.add(collectionLink(DocumentController.class, Document.class));		
 	}
 
 }
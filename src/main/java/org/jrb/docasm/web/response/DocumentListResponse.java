@@ -23,12 +23,13 @@
 package org.jrb.docasm.web.response;
 
 import org.jrb.commons.web.AbstractEntityListResponse;
-import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentSummary;
 
 /**
- * RESTful document list response for the Document Assembly application.
+ * RESTful document list response for the Document Assembly application,
+ * listing document summaries.
  *
  * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
  */
-public class DocumentListResponse extends AbstractEntityListResponse<Document> {
+public class DocumentListResponse extends AbstractEntityListResponse<DocumentSummary> {
 }
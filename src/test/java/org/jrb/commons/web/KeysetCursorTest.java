@@ -0,0 +1,68 @@
+package org.jrb.commons.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link KeysetCursor}.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class KeysetCursorTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(KeysetCursorTest.class);
+
+	private void assertInvalid(final String cursor) {
+		try {
+			KeysetCursor.decode(cursor);
+			fail("Invalid cursor was accepted! cursor = " + cursor);
+		} catch (final InvalidCursorException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void test01_EncodeAndDecode() {
+		LOG.info("BEGIN: test01_EncodeAndDecode()");
+		try {
+
+			for (final Long id : new Long[] { 0L, 1L, 42L, -1L, Long.MAX_VALUE, Long.MIN_VALUE }) {
+				final String cursor = KeysetCursor.encode(id);
+				assertEquals(cursor, cursor.replaceAll("[^A-Za-z0-9_-]", ""));
+				assertEquals(id, KeysetCursor.decode(cursor));
+			}
+
+			// no cursor marks the start of the list
+			assertNull(KeysetCursor.decode(null));
+			assertNull(KeysetCursor.decode(""));
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_EncodeAndDecode()");
+	}
+
+	@Test
+	public void test02_DecodeInvalid() {
+		LOG.info("BEGIN: test02_DecodeInvalid()");
+		try {
+
+			assertInvalid("not a cursor!");
+			assertInvalid("AAAA");
+			assertInvalid(KeysetCursor.encode(1L) + "AA");
+			assertInvalid(KeysetCursor.encode(1L).substring(1));
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_DecodeInvalid()");
+	}
+
+}
@@ -0,0 +1,137 @@
+package org.jrb.docasm;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import javax.sql.DataSource;
+
+import org.hsqldb.jdbc.JDBCDataSource;
+import org.jrb.docasm.PersistenceConfig.ReplicaRoutingConfigurer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Unit test cases for the routing of read-only transactions to a replica
+ * data source, using a second in-memory HSQLDB database as the replica.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class ReplicaRoutingTests {
+
+	private final static Logger LOG = LoggerFactory.getLogger(ReplicaRoutingTests.class);
+
+	private ReplicaRoutingConfigurer configurer;
+	private JDBCDataSource primary;
+	private JDBCDataSource replica;
+	private TransactionTemplate transactionTemplate;
+	private JdbcTemplate jdbcTemplate;
+
+	@Before
+	public void setUp() throws SQLException {
+		primary = database("routing_primary");
+		replica = database("routing_replica");
+		configurer = new ReplicaRoutingConfigurer(new String[] { replica.getUrl() }, "SA", "", 2);
+		final DataSource routed = (DataSource) configurer.postProcessAfterInitialization(primary, "dataSource");
+		transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(routed));
+		jdbcTemplate = new JdbcTemplate(routed);
+	}
+
+	@After
+	public void tearDown() throws SQLException {
+		configurer.destroy();
+		execute(primary, "SHUTDOWN");
+		execute(replica, "SHUTDOWN");
+	}
+
+	@Test
+	public void test01_RouteReadOnlyToReplica() {
+		LOG.info("BEGIN: test01_RouteReadOnlyToReplica");
+		try {
+
+			assertEquals("routing_replica", origin(true));
+			assertEquals("routing_primary", origin(false));
+			assertEquals("routing_primary", jdbcTemplate.queryForObject("SELECT origin FROM marker", String.class));
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_RouteReadOnlyToReplica");
+	}
+
+	@Test
+	public void test02_IgnoreOtherDataSources() {
+		LOG.info("BEGIN: test02_IgnoreOtherDataSources");
+		try {
+
+			assertEquals(primary, configurer.postProcessAfterInitialization(primary, "otherDataSource"));
+			final ReplicaRoutingConfigurer unrouted = new ReplicaRoutingConfigurer(new String[0], "SA", "", 2);
+			assertEquals(primary, unrouted.postProcessAfterInitialization(primary, "dataSource"));
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_IgnoreOtherDataSources");
+	}
+
+	@Test
+	public void test03_ReleaseConnectionAfterTransaction() {
+		LOG.info("BEGIN: test03_ReleaseConnectionAfterTransaction");
+		try {
+
+			final LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+			configurer.postProcessBeforeInitialization(factory, "entityManagerFactory");
+			assertEquals("after_transaction", factory.getJpaPropertyMap().get("hibernate.connection.release_mode"));
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_ReleaseConnectionAfterTransaction");
+	}
+
+	private JDBCDataSource database(final String name) throws SQLException {
+		final JDBCDataSource dataSource = new JDBCDataSource();
+		dataSource.setUrl("jdbc:hsqldb:mem:" + name);
+		dataSource.setUser("SA");
+		dataSource.setPassword("");
+		execute(dataSource, "CREATE TABLE marker (origin VARCHAR(32))", "INSERT INTO marker VALUES ('" + name + "')");
+		return dataSource;
+	}
+
+	private void execute(final DataSource dataSource, final String... statements) throws SQLException {
+		try (final Connection connection = dataSource.getConnection(); final Statement statement = connection.createStatement()) {
+			for (final String sql : statements) {
+				statement.execute(sql);
+			}
+		}
+	}
+
+	private String origin(final boolean readOnly) {
+		transactionTemplate.setReadOnly(readOnly);
+		return transactionTemplate.execute(new TransactionCallback<String>() {
+			@Override
+			public String doInTransaction(final TransactionStatus status) {
+				return jdbcTemplate.queryForObject("SELECT origin FROM marker", String.class);
+			}
+		});
+	}
+
+}
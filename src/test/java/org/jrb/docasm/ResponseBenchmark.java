@@ -0,0 +1,67 @@
+package org.jrb.docasm;
+
+import java.lang.management.ManagementFactory;
+
+import org.jrb.commons.web.MessageResponse;
+import org.jrb.commons.web.ResponseUtils;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.hateoas.Link;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Measures the cost of the response envelope alone: creating a small message
+ * response, linking it and finalizing it into a response entity, reporting
+ * the time and heap allocated per response. Not run as part of the test
+ * suite; run its main method with the number of responses, e.g.
+ * <code>1000000</code>.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class ResponseBenchmark {
+
+	private final static int WARMUP = 200000;
+
+	public static void main(final String[] args) throws Exception {
+		final int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+		final ConfigurableApplicationContext context = SpringApplication.run(
+				Application.class,
+				"--http.server.port=0");
+		try {
+			final ResponseUtils responseUtils = context.getBean(ResponseUtils.class);
+			final Link link = new Link("http://localhost/documents/1");
+
+			benchmark(responseUtils, link, WARMUP);
+			final com.sun.management.ThreadMXBean threads =
+					(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+			final long thread = Thread.currentThread().getId();
+			final long allocated = threads.getThreadAllocatedBytes(thread);
+			final long start = System.nanoTime();
+			final long checksum = benchmark(responseUtils, link, count);
+			final long elapsed = System.nanoTime() - start;
+			final long bytes = threads.getThreadAllocatedBytes(thread) - allocated;
+			System.out.println(String.format(
+					"%,d responses: %,d ns/response, %,d bytes/response (%d)",
+					count,
+					elapsed / count,
+					bytes / count,
+					checksum));
+		} finally {
+			context.close();
+		}
+	}
+
+	private static long benchmark(final ResponseUtils responseUtils, final Link link, final int count) {
+		long checksum = 0;
+		for (int i = 0; i < count; i++) {
+			final MessageResponse response = responseUtils.createResponse(MessageResponse.class);
+			response.setMessage("OK");
+			response.add(link);
+			final ResponseEntity<MessageResponse> entity = responseUtils.finalize(response, HttpStatus.OK);
+			checksum += entity.getHeaders().size();
+		}
+		return checksum;
+	}
+
+}
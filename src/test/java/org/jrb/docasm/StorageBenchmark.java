@@ -0,0 +1,155 @@
+package org.jrb.docasm;
+
+import java.io.File;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.repository.DocumentCriteria;
+import org.jrb.docasm.repository.DocumentRepository;
+import org.jrb.docasm.repository.DocumentRepositoryCustom.DocumentCallback;
+import org.jrb.docasm.service.document.DocumentImportCallback;
+import org.jrb.docasm.service.document.DocumentImportStatus;
+import org.jrb.docasm.service.document.DocumentService;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.util.FileSystemUtils;
+
+/**
+ * Compares the document storage modes. For each mode, a catalogue of
+ * documents is bulk imported, then scanned by keyset pages, exported through
+ * a cursor and probed by name, reporting throughput and heap in use. Not run
+ * as part of the test suite; run its main method with the number of
+ * documents and the modes to compare, e.g. <code>200000 memory file</code>.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class StorageBenchmark {
+
+	private final static int PAGE_SIZE = 1000;
+	private final static int LOOKUPS = 10000;
+
+	public static void main(final String[] args) throws Exception {
+		final int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+		final String[] modes = (args.length > 1)
+				? Arrays.copyOfRange(args, 1, args.length)
+				: new String[] { "memory", "file" };
+		for (final String mode : modes) {
+			benchmark(mode, count);
+		}
+	}
+
+	private static void benchmark(final String mode, final int count) throws Exception {
+		final File directory = Files.createTempDirectory("docasm-benchmark").toFile();
+		final ConfigurableApplicationContext context = SpringApplication.run(
+				Application.class,
+				"--document.storage.mode=" + mode,
+				"--document.storage.file.path=" + new File(directory, "catalogue").getAbsolutePath(),
+				"--http.server.port=0");
+		try {
+			final DocumentService documentService = context.getBean(DocumentService.class);
+			final DocumentRepository documentRepository = context.getBean(DocumentRepository.class);
+			final URI templateUri = new URI("http://example.com/templates/benchmark.txt");
+
+			long start = System.nanoTime();
+			final DocumentImportStatus status = documentService.importDocuments(
+					documents(count, templateUri),
+					1000,
+					new DocumentImportCallback() {
+						@Override
+						public void chunkCommitted(final DocumentImportStatus status) {
+						}
+
+						@Override
+						public void documentRejected(
+								final long record,
+								final Document document,
+								final DocumentImportStatus.Rejection reason) {
+						}
+					});
+			report(mode, "import", status.getImported(), start);
+
+			start = System.nanoTime();
+			long scanned = 0;
+			Long afterId = null;
+			List<DocumentSummary> page;
+			do {
+				page = documentService.retrieveDocumentSummaries(new DocumentCriteria.Builder()
+						.setAfterId(afterId)
+						.setLimit(PAGE_SIZE)
+						.build());
+				scanned += page.size();
+				if (!page.isEmpty()) {
+					afterId = page.get(page.size() - 1).getId();
+				}
+			} while (page.size() == PAGE_SIZE);
+			report(mode, "keyset scan", scanned, start);
+
+			start = System.nanoTime();
+			final long[] exported = new long[1];
+			documentService.exportDocuments(new DocumentCriteria.Builder().build(), 500, new DocumentCallback() {
+				@Override
+				public void processDocument(final Document document) {
+					exported[0]++;
+				}
+			});
+			report(mode, "export", exported[0], start);
+
+			start = System.nanoTime();
+			final Random random = new Random(42);
+			for (int i = 0; i < LOOKUPS; i++) {
+				documentRepository.findByName(name(random.nextInt(count)));
+			}
+			report(mode, "lookup by name", LOOKUPS, start);
+		} finally {
+			context.close();
+			FileSystemUtils.deleteRecursively(directory);
+		}
+	}
+
+	private static Iterator<Document> documents(final int count, final URI templateUri) {
+		return new Iterator<Document>() {
+			private int next;
+
+			@Override
+			public boolean hasNext() {
+				return next < count;
+			}
+
+			@Override
+			public Document next() {
+				final int n = next++;
+				return new Document.Builder()
+						.setName(name(n))
+						.setTemplateUri(templateUri)
+						.setDescription("Benchmark document number " + n + " of " + count)
+						.build();
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	private static String name(final int n) {
+		return String.format("BENCH_%08d", n);
+	}
+
+	private static void report(final String mode, final String operation, final long count, final long start) {
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		final Runtime runtime = Runtime.getRuntime();
+		System.gc();
+		final long heap = (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024);
+		System.out.println(String.format(
+				"%-8s %-16s %10d rows %8.2f s %10.0f rows/s %6d MB heap",
+				mode, operation, count, seconds, count / seconds, heap));
+	}
+
+}
@@ -0,0 +1,201 @@
+package org.jrb.docasm.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+import org.jrb.docasm.Application;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.web.CacheStatisticsEndpoint;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationContextLoader;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Unit test cases for the second-level and query caches of the
+ * {@link DocumentRepository}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(
+		classes = Application.class,
+		loader = SpringApplicationContextLoader.class,
+		initializers = DocumentCacheTests.CacheEnabler.class)
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class DocumentCacheTests {
+
+	public static class CacheEnabler implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+		@Override
+		public void initialize(final ConfigurableApplicationContext context) {
+			context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(
+					"cache",
+					Collections.<String, Object> singletonMap("document.cache.enabled", "true")));
+		}
+	}
+
+	private final static Logger LOG = LoggerFactory.getLogger(DocumentCacheTests.class);
+
+	@Autowired
+	private DocumentRepository repository;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private CacheStatisticsEndpoint cacheStatisticsEndpoint;
+
+	private Statistics statistics() {
+		final EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			return entityManager.unwrap(Session.class).getSessionFactory().getStatistics();
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	@Test
+	public void test01_cachesDocuments() {
+		LOG.info("BEGIN: test01_cachesDocuments()");
+		try {
+
+			final Document saved = repository.save(new Document.Builder()
+					.setName("CACHED")
+					.setDescription("Cached document")
+					.markAsCreated()
+					.build());
+			statistics().clear();
+
+			// a document read twice is served from the entity cache the second time
+			repository.findOne(saved.getId());
+			repository.findOne(saved.getId());
+			assertTrue(statistics().getSecondLevelCacheStatistics(Document.class.getName()).getHitCount() > 0);
+
+			// a lookup by name repeated is served from the query cache
+			repository.findByName("CACHED");
+			assertEquals("Cached document", repository.findByName("CACHED").getDescription());
+			assertTrue(statistics().getQueryCacheHitCount() > 0);
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_cachesDocuments()");
+	}
+
+	@Test
+	public void test02_invalidatesDocuments() {
+		LOG.info("BEGIN: test02_invalidatesDocuments()");
+		try {
+
+			// a renamed document is no longer found by its cached name
+			final Document cached = repository.findByName("CACHED");
+			repository.save(new Document.Builder().from(cached).setName("RENAMED").markAsUpdated().build());
+			assertNull(repository.findByName("CACHED"));
+			assertNotNull(repository.findByName("RENAMED"));
+
+			// a document inserted through JDBC is found despite a cached miss
+			assertNull(repository.findByName("INSERTED"));
+			new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+				@Override
+				protected void doInTransactionWithoutResult(final TransactionStatus status) {
+					repository.insertDocuments(Arrays.asList(new Document.Builder()
+							.setName("INSERTED")
+							.markAsCreated()
+							.build()));
+				}
+			});
+			assertNotNull(repository.findByName("INSERTED"));
+
+			// hit rates are reported
+			@SuppressWarnings("unchecked")
+			final Map<String, Object> regions = (Map<String, Object>) cacheStatisticsEndpoint.invoke().get("regions");
+			assertTrue(regions.containsKey(Document.class.getName()));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_invalidatesDocuments()");
+	}
+
+	@Test
+	public void test03_patchEvictsOnlyPatchedDocument() {
+		LOG.info("BEGIN: test03_patchEvictsOnlyPatchedDocument()");
+		try {
+
+			final Document patched = repository.save(new Document.Builder()
+					.setName("PATCHED")
+					.setDescription("Patched document")
+					.markAsCreated()
+					.build());
+			final Document bystander = repository.save(new Document.Builder()
+					.setName("BYSTANDER")
+					.setDescription("Bystander document")
+					.markAsCreated()
+					.build());
+			repository.findOne(patched.getId());
+			repository.findOne(bystander.getId());
+
+			new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+				@Override
+				protected void doInTransactionWithoutResult(final TransactionStatus status) {
+					assertEquals(1, repository.patchDocument(new Document.Builder()
+							.setId(patched.getId())
+							.setDescription("Patched again")
+							.build(), new Date()));
+				}
+			});
+
+			// other documents stay cached
+			statistics().clear();
+			assertEquals("Bystander document", repository.findOne(bystander.getId()).getDescription());
+			final SecondLevelCacheStatistics region = statistics().getSecondLevelCacheStatistics(Document.class.getName());
+			assertEquals(1, region.getHitCount());
+			assertEquals(0, region.getMissCount());
+
+			// the patched document is read afresh
+			assertEquals("Patched again", repository.findOne(patched.getId()).getDescription());
+			assertEquals(1, statistics().getSecondLevelCacheStatistics(Document.class.getName()).getMissCount());
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_patchEvictsOnlyPatchedDocument()");
+	}
+
+}
@@ -7,9 +7,12 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.util.Date;
+import java.util.List;
 
 import org.jrb.docasm.Application;
 import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentSummary;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -116,5 +119,72 @@ public class DocumentRepositoryTests {
 		}
 		LOG.info("END: test04_retrieveDocuments()");
 	}
-	
+
+	@Test
+	public void test05_findByCriteria() {
+		LOG.info("BEGIN: test05_findByCriteria()");
+		try {
+
+			List<Document> documents = repository.findByCriteria(new DocumentCriteria.Builder()
+					.setNamePrefix("DE")
+					.setDescriptionContains("est2")
+					.build());
+			assertThat(documents.size(), is(1));
+			assertEquals("DEF", documents.get(0).getName());
+
+			documents = repository.findByCriteria(new DocumentCriteria.Builder()
+					.setNamePrefix("%")
+					.build());
+			assertThat(documents.size(), is(0));
+
+			final Date now = new Date();
+			documents = repository.findByCriteria(new DocumentCriteria.Builder()
+					.setNamePrefix("ABC")
+					.setCreatedBefore(now)
+					.setUpdatedBefore(now)
+					.build());
+			assertThat(documents.size(), is(1));
+
+			documents = repository.findByCriteria(new DocumentCriteria.Builder()
+					.setNamePrefix("ABC")
+					.setCreatedAfter(now)
+					.build());
+			assertThat(documents.size(), is(0));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test05_findByCriteria()");
+	}
+
+	@Test
+	public void test06_findSummariesByCriteria() {
+		LOG.info("BEGIN: test06_findSummariesByCriteria()");
+		try {
+
+			final List<DocumentSummary> summaries = repository.findSummariesByCriteria(new DocumentCriteria.Builder()
+					.setNamePrefix("DE")
+					.build());
+			assertThat(summaries.size(), is(1));
+			final DocumentSummary summary = summaries.get(0);
+			assertNotNull(summary.getId());
+			assertEquals("DEF", summary.getName());
+			assertEquals("Test2", summary.getDescription());
+			assertNotNull(summary.getUpdatedOn());
+
+			final List<DocumentSummary> page = repository.findSummariesByCriteria(new DocumentCriteria.Builder()
+					.setAfterId(summary.getId())
+					.setLimit(1)
+					.build());
+			assertThat(page.size(), is(1));
+			assertEquals("GHI", page.get(0).getName());
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test06_findSummariesByCriteria()");
+	}
+
 }
@@ -0,0 +1,103 @@
+package org.jrb.docasm.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link DocumentShards}.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class DocumentShardsTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(DocumentShardsTest.class);
+
+	private final static int COUNT = 3;
+
+	@Test
+	public void test01_ConcurrentGathers() {
+		LOG.info("BEGIN: test01_ConcurrentGathers()");
+		final DocumentShards shards = new DocumentShards(COUNT);
+		final ExecutorService callers = Executors.newFixedThreadPool(2);
+		try {
+
+			// every shard of both gathers must be running at once for either to finish
+			final CountDownLatch running = new CountDownLatch(2 * COUNT);
+			final Callable<List<Integer>> gather = new Callable<List<Integer>>() {
+				@Override
+				public List<Integer> call() throws Exception {
+					return shards.gather(new DocumentShards.ShardCallback<Integer>() {
+						@Override
+						public Integer doInShard(final int shard) throws Exception {
+							assertEquals(shard, DocumentShards.current());
+							running.countDown();
+							assertTrue("Gathers waited on each other", running.await(10, TimeUnit.SECONDS));
+							return shard;
+						}
+					});
+				}
+			};
+			final Future<List<Integer>> first = callers.submit(gather);
+			final Future<List<Integer>> second = callers.submit(gather);
+			assertEquals(Arrays.asList(0, 1, 2), first.get());
+			assertEquals(Arrays.asList(0, 1, 2), second.get());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		} finally {
+			callers.shutdownNow();
+			shards.destroy();
+		}
+		LOG.info("END: test01_ConcurrentGathers()");
+	}
+
+	@Test
+	public void test02_NestedGather() {
+		LOG.info("BEGIN: test02_NestedGather()");
+		final DocumentShards shards = new DocumentShards(COUNT);
+		try {
+
+			// a gather run within a shard neither deadlocks nor loses its binding
+			final List<Integer> sums = shards.gather(new DocumentShards.ShardCallback<Integer>() {
+				@Override
+				public Integer doInShard(final int outer) throws Exception {
+					int sum = 0;
+					for (final Integer inner : shards.gather(new DocumentShards.ShardCallback<Integer>() {
+						@Override
+						public Integer doInShard(final int shard) {
+							return shard;
+						}
+					})) {
+						sum += inner;
+					}
+					assertEquals(outer, DocumentShards.current());
+					return outer + sum;
+				}
+			});
+			assertEquals(Arrays.asList(3, 4, 5), sums);
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		} finally {
+			shards.destroy();
+		}
+		LOG.info("END: test02_NestedGather()");
+	}
+
+}
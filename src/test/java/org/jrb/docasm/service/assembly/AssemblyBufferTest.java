@@ -0,0 +1,191 @@
+package org.jrb.docasm.service.assembly;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link AssemblyBuffer}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class AssemblyBufferTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(AssemblyBufferTest.class);
+
+	private final static File TEMP_DIR = new File(System.getProperty("java.io.tmpdir"));
+
+	private byte[] content(final int length) {
+		final byte[] content = new byte[length];
+		for (int i = 0; i < length; i++) {
+			content[i] = (byte) (i % 251);
+		}
+		return content;
+	}
+
+	private void verify(final AssemblyBuffer buffer, final byte[] expected) throws IOException {
+		assertEquals(expected.length, buffer.size());
+
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		buffer.writeTo(out);
+		assertArrayEquals(expected, out.toByteArray());
+
+		assertArrayEquals(expected, IOUtils.toByteArray(buffer.openInputStream()));
+	}
+
+	@Test
+	public void test01_InMemory() {
+		LOG.info("BEGIN: test01_InMemory()");
+		try {
+
+			final byte[] expected = content(10000);
+			final AssemblyBuffer buffer = new AssemblyBuffer(16384, TEMP_DIR);
+			buffer.write(expected, 0, 5000);
+			buffer.write(expected, 5000, 5000);
+			buffer.close();
+
+			assertFalse(buffer.isSpilled());
+			verify(buffer, expected);
+			buffer.release();
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_InMemory()");
+	}
+
+	@Test
+	public void test02_Spilled() {
+		LOG.info("BEGIN: test02_Spilled()");
+		try {
+
+			final byte[] expected = content(9 * 1024 * 1024 + 17);
+			final AssemblyBuffer buffer = new AssemblyBuffer(8192, TEMP_DIR);
+			for (int offset = 0; offset < expected.length; offset += 1000) {
+				buffer.write(expected, offset, Math.min(1000, expected.length - offset));
+			}
+			buffer.close();
+
+			assertTrue(buffer.isSpilled());
+			verify(buffer, expected);
+			verify(buffer, expected);
+			buffer.release();
+
+			try {
+				buffer.openInputStream();
+				fail("Unsuccessfully read a released buffer!");
+			} catch (final IOException e) {
+			}
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_Spilled()");
+	}
+
+	@Test
+	public void test03_Shared() {
+		LOG.info("BEGIN: test03_Shared()");
+		try {
+
+			final byte[] expected = content(16 * 1024 + 3);
+			final AssemblyBuffer buffer = new AssemblyBuffer(8192, TEMP_DIR);
+			buffer.write(expected, 0, expected.length);
+			buffer.close();
+			buffer.retain(2);
+
+			buffer.release();
+			verify(buffer, expected);
+			buffer.release();
+			verify(buffer, expected);
+			buffer.release();
+
+			try {
+				buffer.openInputStream();
+				fail("Unsuccessfully read a released buffer!");
+			} catch (final IOException e) {
+			}
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_Shared()");
+	}
+
+	@Test
+	public void test04_SingleBytes() {
+		LOG.info("BEGIN: test04_SingleBytes()");
+		try {
+
+			// single bytes fill the heap, spill and cross into a second region
+			final byte[] expected = content(4 * 1024 * 1024 + 10);
+			final AssemblyBuffer buffer = new AssemblyBuffer(8192, TEMP_DIR);
+			for (final byte b : expected) {
+				buffer.write(b);
+			}
+			buffer.close();
+
+			assertTrue(buffer.isSpilled());
+			verify(buffer, expected);
+			buffer.release();
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test04_SingleBytes()");
+	}
+
+	@Test
+	public void test05_ReleaseSpilled() {
+		LOG.info("BEGIN: test05_ReleaseSpilled()");
+		try {
+
+			final File directory = Files.createTempDirectory("docasm-test-").toFile();
+			final byte[] expected = content(5 * 1024 * 1024);
+			final AssemblyBuffer buffer = new AssemblyBuffer(8192, directory);
+			buffer.write(expected, 0, expected.length);
+			buffer.close();
+			buffer.retain(1);
+
+			final File[] spilled = directory.listFiles();
+			assertEquals(1, spilled.length);
+			final File maps = new File("/proc/self/maps");
+
+			// the spill file outlives all but the last release
+			buffer.release();
+			assertTrue(spilled[0].exists());
+			verify(buffer, expected);
+
+			// the last release deletes the file and unmaps its regions
+			buffer.release();
+			assertEquals(0, directory.listFiles().length);
+			if (maps.canRead()) {
+				assertFalse(FileUtils.readFileToString(maps).contains(spilled[0].getPath()));
+			}
+			assertTrue(directory.delete());
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test05_ReleaseSpilled()");
+	}
+
+}
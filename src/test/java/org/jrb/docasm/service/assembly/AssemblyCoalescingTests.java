@@ -0,0 +1,264 @@
+package org.jrb.docasm.service.assembly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jrb.docasm.Application;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.assembly.pipeline.AssemblyContext;
+import org.jrb.docasm.service.assembly.pipeline.AssemblyStage;
+import org.jrb.docasm.service.document.DocumentService;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationContextLoader;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Unit test cases for the coalescing of identical concurrent requests by
+ * {@link AssemblyServiceImpl}, held in flight by a stage that waits for the
+ * test to release it.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(
+		classes = Application.class,
+		loader = SpringApplicationContextLoader.class,
+		initializers = AssemblyCoalescingTests.StageRegistrar.class)
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AssemblyCoalescingTests {
+
+	public static class StageRegistrar implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+		@Override
+		public void initialize(final ConfigurableApplicationContext context) {
+			context.getBeanFactory().registerSingleton("holdingStage", STAGE);
+		}
+	}
+
+	/**
+	 * Stage counting its runs and holding each one until released.
+	 */
+	private static class HoldingStage implements AssemblyStage {
+
+		private final AtomicInteger runs = new AtomicInteger();
+		private volatile CountDownLatch entered;
+		private volatile CountDownLatch released;
+
+		@Override
+		public String getName() {
+			return "hold";
+		}
+
+		@Override
+		public int getOrder() {
+			return 0;
+		}
+
+		@Override
+		public void process(final AssemblyContext context) throws Exception {
+			runs.incrementAndGet();
+			entered.countDown();
+			released.await(TIMEOUT, TimeUnit.MILLISECONDS);
+		}
+
+		public void reset() {
+			runs.set(0);
+			entered = new CountDownLatch(1);
+			released = new CountDownLatch(1);
+		}
+
+	}
+
+	/**
+	 * Assembly request made on a thread of its own.
+	 */
+	private class Request extends Thread {
+
+		private final Map<String, Object> data = new HashMap<>();
+		private volatile AssemblyBuffer buffer;
+		private volatile Throwable error;
+
+		public Request() {
+			data.put("customer", "Bob");
+		}
+
+		/**
+		 * Determines if this request is waiting on the assembly in flight.
+		 */
+		public boolean isPassenger() {
+			if (getState() != State.WAITING) {
+				return false;
+			}
+			for (final StackTraceElement element : getStackTrace()) {
+				if (element.getClassName().equals(FutureTask.class.getName())
+						&& element.getMethodName().equals("get")) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		@Override
+		public void run() {
+			try {
+				buffer = assemblyService.assembleDocument(documentId, data, false);
+			} catch (final Throwable t) {
+				error = t;
+			}
+		}
+
+	}
+
+	private final static Logger LOG = LoggerFactory.getLogger(AssemblyCoalescingTests.class);
+
+	private final static HoldingStage STAGE = new HoldingStage();
+	private final static long TIMEOUT = 10000;
+
+	@Autowired
+	private AssemblyService assemblyService;
+
+	@Autowired
+	private DocumentService documentService;
+
+	private static Long documentId;
+
+	private void awaitPassengers(final List<Request> passengers) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		for (final Request passenger : passengers) {
+			while (!passenger.isPassenger()) {
+				assertTrue("Request never joined the flight", System.currentTimeMillis() < deadline);
+				Thread.sleep(10);
+			}
+		}
+	}
+
+	private String content(final AssemblyBuffer buffer) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		buffer.writeTo(out);
+		return out.toString("UTF-8");
+	}
+
+	private Request start() {
+		final Request request = new Request();
+		request.start();
+		return request;
+	}
+
+	private void startFlight() {
+		if (documentId == null) {
+			documentId = documentService.createDocument(new Document.Builder()
+					.setName("COALESCED")
+					.setTemplate("Hello ${customer}!")
+					.build()).getId();
+		}
+		STAGE.reset();
+	}
+
+	private void assertReleased(final AssemblyBuffer buffer) {
+		try {
+			buffer.openInputStream();
+			fail("Buffer was not released");
+		} catch (final IOException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void test01_CoalesceRequests() {
+		LOG.info("BEGIN: test01_CoalesceRequests()");
+		try {
+
+			startFlight();
+			final Request leader = start();
+			assertTrue(STAGE.entered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+			final List<Request> passengers = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				passengers.add(start());
+			}
+			awaitPassengers(passengers);
+			STAGE.released.countDown();
+
+			leader.join(TIMEOUT);
+			final List<Request> requests = new ArrayList<>(passengers);
+			requests.add(leader);
+			for (final Request request : requests) {
+				request.join(TIMEOUT);
+				assertNull(request.error);
+				assertSame(leader.buffer, request.buffer);
+				assertEquals("Hello Bob!", content(request.buffer));
+			}
+			assertEquals(1, STAGE.runs.get());
+
+			// the buffer outlives every reader but the last
+			for (final Request request : requests) {
+				content(request.buffer);
+				request.buffer.release();
+			}
+			assertReleased(leader.buffer);
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_CoalesceRequests()");
+	}
+
+	@Test
+	public void test02_InterruptPassenger() {
+		LOG.info("BEGIN: test02_InterruptPassenger()");
+		try {
+
+			startFlight();
+			final Request leader = start();
+			assertTrue(STAGE.entered.await(TIMEOUT, TimeUnit.MILLISECONDS));
+			final Request passenger = start();
+			awaitPassengers(Collections.singletonList(passenger));
+			passenger.interrupt();
+			passenger.join(TIMEOUT);
+			assertNotNull(passenger.error);
+			assertTrue(passenger.error instanceof AssemblyServiceException);
+
+			STAGE.released.countDown();
+			leader.join(TIMEOUT);
+			assertEquals("Hello Bob!", content(leader.buffer));
+			assertEquals(1, STAGE.runs.get());
+
+			// the interrupted passenger holds no share of the buffer
+			leader.buffer.release();
+			assertReleased(leader.buffer);
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_InterruptPassenger()");
+	}
+
+}
@@ -0,0 +1,180 @@
+package org.jrb.docasm.service.assembly;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.zip.GZIPInputStream;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.io.IOUtils;
+import org.jrb.docasm.Application;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.assembly.pipeline.SignatureStage;
+import org.jrb.docasm.service.document.DocumentService;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationContextLoader;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import com.google.common.io.BaseEncoding;
+
+/**
+ * Unit test cases for the assembly pipeline, through
+ * {@link AssemblyService}, with documents signed by a configured key.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(
+		classes = Application.class,
+		loader = SpringApplicationContextLoader.class,
+		initializers = AssemblyPipelineTests.SignatureEnabler.class)
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class AssemblyPipelineTests {
+
+	public static class SignatureEnabler implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+		@Override
+		public void initialize(final ConfigurableApplicationContext context) {
+			context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(
+					"signature",
+					Collections.<String, Object> singletonMap("assembly.signature.key", SIGNATURE_KEY)));
+		}
+	}
+
+	private final static Logger LOG = LoggerFactory.getLogger(AssemblyPipelineTests.class);
+
+	private final static String SIGNATURE_KEY = "pipeline-secret";
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	@Autowired
+	private AssemblyService assemblyService;
+
+	@Autowired
+	private DocumentService documentService;
+
+	private byte[] content(final AssemblyBuffer buffer) throws IOException {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		buffer.writeTo(out);
+		return out.toByteArray();
+	}
+
+	private Document createDocument(final String name, final int repeat) {
+		final StringBuilder template = new StringBuilder();
+		for (int i = 0; i < repeat; i++) {
+			template.append("Hello ${customer}! ");
+		}
+		return documentService.createDocument(new Document.Builder()
+				.setName(name)
+				.setTemplate(template.toString())
+				.build());
+	}
+
+	private String expected(final int repeat) {
+		final StringBuilder expected = new StringBuilder();
+		for (int i = 0; i < repeat; i++) {
+			expected.append("Hello Bob! ");
+		}
+		return expected.toString();
+	}
+
+	private String signature(final byte[] content) throws Exception {
+		final Mac mac = Mac.getInstance("HmacSHA256");
+		mac.init(new SecretKeySpec(SIGNATURE_KEY.getBytes(UTF8), "HmacSHA256"));
+		return "hmac-sha256=" + BaseEncoding.base64().encode(mac.doFinal(content));
+	}
+
+	@Test
+	public void test01_CompressAndSign() {
+		LOG.info("BEGIN: test01_CompressAndSign()");
+		try {
+
+			final Document document = createDocument("PIPELINE_LARGE", 200);
+			final AssemblyBuffer buffer = assemblyService.assembleDocument(
+					document.getId(),
+					Collections.<String, Object> singletonMap("customer", "Bob"),
+					true);
+			try {
+				final byte[] content = content(buffer);
+				assertEquals("gzip", buffer.getHeaders().get("Content-Encoding"));
+				assertEquals("Accept-Encoding", buffer.getHeaders().get("Vary"));
+				assertEquals(signature(content), buffer.getHeaders().get(SignatureStage.HEADER_SIGNATURE));
+				try (final InputStream in = new GZIPInputStream(new ByteArrayInputStream(content))) {
+					assertEquals(expected(200), IOUtils.toString(in, "UTF-8"));
+				}
+			} finally {
+				buffer.release();
+			}
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_CompressAndSign()");
+	}
+
+	@Test
+	public void test02_SkipCompression() {
+		LOG.info("BEGIN: test02_SkipCompression()");
+		try {
+
+			// not accepted by the client
+			final Document large = documentService.findDocument("PIPELINE_LARGE");
+			AssemblyBuffer buffer = assemblyService.assembleDocument(
+					large.getId(),
+					Collections.<String, Object> singletonMap("customer", "Bob"),
+					false);
+			try {
+				final byte[] content = content(buffer);
+				assertNull(buffer.getHeaders().get("Content-Encoding"));
+				assertEquals("Accept-Encoding", buffer.getHeaders().get("Vary"));
+				assertEquals(signature(content), buffer.getHeaders().get(SignatureStage.HEADER_SIGNATURE));
+				assertEquals(expected(200), new String(content, UTF8));
+			} finally {
+				buffer.release();
+			}
+
+			// too small to benefit
+			final Document small = createDocument("PIPELINE_SMALL", 1);
+			buffer = assemblyService.assembleDocument(
+					small.getId(),
+					Collections.<String, Object> singletonMap("customer", "Bob"),
+					true);
+			try {
+				final byte[] content = content(buffer);
+				assertNull(buffer.getHeaders().get("Content-Encoding"));
+				assertEquals("Accept-Encoding", buffer.getHeaders().get("Vary"));
+				assertEquals(signature(content), buffer.getHeaders().get(SignatureStage.HEADER_SIGNATURE));
+				assertEquals(expected(1), new String(content, UTF8));
+			} finally {
+				buffer.release();
+			}
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_SkipCompression()");
+	}
+
+}
@@ -0,0 +1,178 @@
+package org.jrb.docasm.service.assembly.template;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.assembly.InvalidTemplateException;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link PartialEvaluator}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class PartialEvaluatorTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(PartialEvaluatorTest.class);
+
+	private final TemplateParser parser = new TemplateParser(new ExpressionCompiler(100), 1000);
+
+	private final PartialEvaluator evaluator = new PartialEvaluator(100, 1000);
+
+	private final TemplateWriter writer = new TemplateWriter();
+
+	private final Document document = new Document.Builder()
+			.setName("notice")
+			.setDescription("Broadcast notice")
+			.build();
+
+	private Map<String, Object> data() {
+		final Map<String, Object> data = new HashMap<>();
+		data.put("name", "Bob");
+		data.put("total", 12);
+		data.put("document", Collections.singletonMap("name", "merged"));
+		return data;
+	}
+
+	private String render(final Template template) throws Exception {
+		final StringWriter out = new StringWriter();
+		template.render(template.bind(data(), document), out);
+		return out.toString();
+	}
+
+	private Template residual(final String source) throws Exception {
+		final Template template = parser.parse(source);
+		final Template residual = evaluator.evaluate(template, document);
+		assertEquals(render(template), render(residual));
+		return residual;
+	}
+
+	@Test
+	public void test01_Static() {
+		LOG.info("BEGIN: test01_Static()");
+		try {
+
+			Template template = residual("[${$document.name}#{if $document != null}: ${$document.description}#{end}]");
+			assertEquals(1, template.getNodes().size());
+			assertEquals("[notice: Broadcast notice]", render(template));
+
+			template = residual("#{for i : 3}${i}-#{= str(get($document, \"name\"))}#{end}");
+			assertEquals(1, template.getNodes().size());
+			assertEquals("0-notice1-notice2-notice", render(template));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_Static()");
+	}
+
+	@Test
+	public void test02_Residual() {
+		LOG.info("BEGIN: test02_Residual()");
+		try {
+
+			Template template = residual("${$document.name} for ${name}: #{if num(get(data, \"total\")) > 10}${$document.description}#{end}");
+			assertEquals(4, template.getNodes().size());
+			assertTrue(template.getNodes().get(1) instanceof PlaceholderNode);
+			final IfNode conditional = (IfNode) template.getNodes().get(3);
+			assertEquals("Broadcast notice", ((TextNode) conditional.getThenNodes().get(0)).getText());
+
+			template = residual("#{for i : 2}${i}${name}#{end}");
+			assertTrue(template.getNodes().get(0) instanceof ForNode);
+
+			template = residual("${$document.name}#{= new Object() != null}");
+			assertTrue(template.getNodes().get(1) instanceof ExpressionNode);
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_Residual()");
+	}
+
+	@Test
+	public void test03_Namespace() {
+		LOG.info("BEGIN: test03_Namespace()");
+		try {
+
+			// the document is reserved under a name merge data cannot take
+			final Template template = residual("${document.name}/${$document.name}");
+			assertEquals("merged/notice", render(template));
+
+			try {
+				parser.parse("#{for $item : 2}${$item}#{end}");
+				fail("Reserved loop variable was accepted");
+			} catch (final InvalidTemplateException e) {
+				// expected
+			}
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_Namespace()");
+	}
+
+	@Test
+	public void test04_WriteResidual() {
+		LOG.info("BEGIN: test04_WriteResidual()");
+		try {
+
+			// tags rendered into static text stay text once written out
+			final Template template = residual("${$document.name} costs $${total} #{= \"#{ok}\"} ${name}: "
+					+ "#{if num(get(data, \"total\")) > 10}big#{else}small#{end}"
+					+ "#{for i : 2}[${i}:${name}]#{end} #{= str(get(data, \"name\"))}");
+			final String source = writer.write(template);
+			assertTrue(source.startsWith("notice costs $"));
+			final Template reparsed = parser.parse(source);
+			assertEquals(source, writer.write(reparsed));
+			assertEquals(render(template), render(reparsed));
+			assertEquals("notice costs $12 #{ok} Bob: big[0:Bob][1:Bob] Bob", render(reparsed));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test04_WriteResidual()");
+	}
+
+	@Test
+	public void test05_UnrollLimits() {
+		LOG.info("BEGIN: test05_UnrollLimits()");
+		try {
+
+			// a known loop past the iteration budget is kept as it is
+			Template template = evaluator.evaluate(parser.parse("#{for i : 2000000000}x#{end}"), document);
+			assertEquals(1, template.getNodes().size());
+			final ForNode loop = (ForNode) template.getNodes().get(0);
+			assertEquals("x", ((TextNode) loop.getBody().get(0)).getText());
+
+			// nested loops share the budget
+			template = residual("#{for i : 20}#{for j : 20}x#{end}#{end}");
+			assertTrue(template.getNodes().get(0) instanceof ForNode);
+
+			// a known loop past the text limit is kept as it is
+			template = residual("#{for i : 80}${$document.description}#{end}");
+			assertTrue(template.getNodes().get(0) instanceof ForNode);
+
+			template = residual("#{for i : 50}${$document.description}#{end}");
+			assertTrue(template.getNodes().get(0) instanceof TextNode);
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test05_UnrollLimits()");
+	}
+
+}
@@ -0,0 +1,126 @@
+package org.jrb.docasm.service.assembly.template;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link PropertyPath}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class PropertyPathTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(PropertyPathTest.class);
+
+	public static class Customer {
+
+		public final String id;
+		private final String name;
+
+		public Customer(final String id, final String name) {
+			this.id = id;
+			this.name = name;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public int getNameLength() {
+			return name.length();
+		}
+
+	}
+
+	private static class Secret {
+
+		@SuppressWarnings("unused")
+		public String getValue() {
+			return "hidden";
+		}
+
+	}
+
+	@Test
+	public void test01_Resolve() {
+		LOG.info("BEGIN: test01_Resolve()");
+		try {
+
+			final PropertyPath name = PropertyPath.of("customer.name");
+			final PropertyPath length = PropertyPath.of("customer.nameLength");
+			final PropertyPath id = PropertyPath.of("customer.id");
+
+			final Map<String, Object> bean = new HashMap<>();
+			bean.put("customer", new Customer("C1", "Bob"));
+			assertEquals("Bob", name.resolve(bean));
+			assertEquals(3, length.resolve(bean));
+			assertEquals("C1", id.resolve(bean));
+
+			final Map<String, Object> customer = new LinkedHashMap<>();
+			customer.put("name", "Alice");
+			final Map<String, Object> tree = new LinkedHashMap<>();
+			tree.put("customer", customer);
+			assertEquals("Alice", name.resolve(tree));
+			assertEquals("Bob", name.resolve(bean));
+
+			assertNull(PropertyPath.of("customer.missing").resolve(bean));
+			assertNull(name.resolve(new HashMap<String, Object>()));
+			assertEquals("hidden", PropertyPath.of("value").resolve(new Secret()));
+
+			// reflective values are never reached
+			assertNull(PropertyPath.of("declaringClass").resolve(TimeUnit.SECONDS));
+			assertNull(PropertyPath.of("declaredFields").resolve(Customer.class));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_Resolve()");
+	}
+
+	@Test
+	public void test02_GenerateAccessors() {
+		LOG.info("BEGIN: test02_GenerateAccessors()");
+		try {
+
+			// getters of non-public classes are called through the public type declaring them
+			final Map<String, Object> map = new HashMap<>();
+			map.put("name", "Bob");
+			final Map.Entry<String, Object> entry = map.entrySet().iterator().next();
+			assertEquals("name", PropertyPath.of("key").resolve(entry));
+			assertGenerated(PropertyAccessors.accessor(entry.getClass(), "key"));
+			final List<String> list = Collections.unmodifiableList(Arrays.asList("a"));
+			assertEquals(false, PropertyPath.of("empty").resolve(list));
+			assertGenerated(PropertyAccessors.accessor(list.getClass(), "empty"));
+
+			// members no public type declares are read reflectively
+			assertTrue(PropertyAccessors.accessor(Secret.class, "value").getClass().getName()
+					.startsWith(PropertyAccessors.class.getName()));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_GenerateAccessors()");
+	}
+
+	private void assertGenerated(final PropertyAccessor accessor) {
+		assertFalse(accessor.getClass().getName().startsWith(PropertyAccessors.class.getName()));
+	}
+
+}
@@ -0,0 +1,192 @@
+package org.jrb.docasm.service.assembly.template;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jrb.docasm.service.assembly.InvalidTemplateException;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link TemplateParser}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class TemplateParserTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(TemplateParserTest.class);
+
+	private final TemplateParser parser = new TemplateParser(new ExpressionCompiler(100), 1000);
+
+	private Map<String, Object> data() {
+		final Map<String, Object> customer = new HashMap<>();
+		customer.put("name", "Bob");
+
+		final List<Map<String, Object>> rows = new ArrayList<>();
+		for (int i = 0; i < 3; i++) {
+			final Map<String, Object> row = new HashMap<>();
+			row.put("id", i);
+			row.put("qty", i + 1);
+			rows.add(row);
+		}
+
+		final Map<String, Object> data = new HashMap<>();
+		data.put("customer", customer);
+		data.put("total", 12);
+		data.put("rows", rows);
+		return data;
+	}
+
+	private String render(final String source) throws Exception {
+		final StringWriter out = new StringWriter();
+		parser.parse(source).render(data(), out);
+		return out.toString();
+	}
+
+	private void reject(final String source) {
+		try {
+			parser.parse(source);
+			fail("Unsuccessfully parsed an invalid template! source = " + source);
+		} catch (final InvalidTemplateException e) {
+		}
+	}
+
+	@Test
+	public void test01_Render() {
+		LOG.info("BEGIN: test01_Render()");
+		try {
+
+			assertEquals("Hello Bob!", render("Hello ${customer.name}!"));
+			assertEquals("big", render("#{if num(get(data, \"total\")) > 10}big#{else}small#{end}"));
+			assertEquals("small", render("#{if size(get(data, \"missing\")) > 0}big#{else}small#{end}"));
+			assertEquals("[0:2][1:4][2:6]", render("#{for row : get(data, \"rows\")}[${row.id}:#{= (int) num(get(row, \"qty\")) * 2}]#{end}"));
+			assertEquals("012", render("#{for i : 3}${i}#{end}"));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_Render()");
+	}
+
+	@Test
+	public void test02_Reject() {
+		LOG.info("BEGIN: test02_Reject()");
+		try {
+
+			reject("#{= System.exit(0)}");
+			reject("#{= java.lang.Runtime.getRuntime()}");
+			reject("#{= new java.io.File(\"x\")}");
+			reject("#{= ((Object) data).getClass()}");
+			reject("#{= Class.class}");
+			reject("#{= java.lang.Thread.currentThread()}");
+			reject("#{= new java.util.HashMap()}");
+			reject("#{= new long[1 << 28]}");
+			reject("#{= (variables[0] = null)}");
+			reject("#{= data = null}");
+			reject("#{= size(data) += 1}");
+			reject("${customer.class}");
+			assertEquals("true", render("#{= num(get(data, \"total\")) >= 12 && size(data) != 0}"));
+			try {
+				render("#{= get(get(data, \"customer\"), \"class\")}");
+				fail("Selected the class of merge data");
+			} catch (final InvalidTemplateException e) {
+				// expected
+			}
+			reject("#{if true}unterminated");
+			reject("#{end}");
+			reject("#{unknown}");
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_Reject()");
+	}
+
+	@Test
+	public void test03_RejectEscapesAndSideEffects() {
+		LOG.info("BEGIN: test03_RejectEscapesAndSideEffects()");
+		try {
+
+			reject("#{= \\u0043lass.forName(\"java.lang.Runtime\")}");
+			reject("#{= ((Object) data).getClass().\\u006eewInstance()}");
+			reject("#{= java.lang.\\u0043lass.forName(\"java.lang.System\")}");
+			reject("#{= size(data)) \\u003b java.lang.System.exit(0\\u003b (0}");
+			reject("#{= ((java.util.Map) data).put(\"total\", null)}");
+			reject("#{= ((java.util.List) get(data, \"rows\")).clear()}");
+			reject("#{= ((java.util.Map.Entry) data).setValue(null)}");
+			assertEquals("\u00e9", render("#{= \"\\u00e9\"}"));
+			assertEquals("3", render("#{= size(get(data, \"rows\"))}"));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_RejectEscapesAndSideEffects()");
+	}
+
+	@Test
+	public void test04_IterationBudget() {
+		LOG.info("BEGIN: test04_IterationBudget()");
+		try {
+
+			final Template template = parser.parse("#{for i : get(data, \"n\")}x#{end}");
+			final Map<String, Object> data = new HashMap<>();
+			data.put("n", 1000);
+			final StringWriter out = new StringWriter();
+			template.render(data, out);
+			assertEquals(1000, out.toString().length());
+
+			// a range drawn from merge data may not exceed the budget
+			data.put("n", 2000000000);
+			try {
+				template.render(data, new StringWriter());
+				fail("Rendered a loop beyond the iteration budget");
+			} catch (final InvalidTemplateException e) {
+				// expected
+			}
+
+			// nested loops share the budget of the rendering
+			try {
+				render("#{for i : 40}#{for j : 40}x#{end}#{end}");
+				fail("Rendered nested loops beyond the iteration budget");
+			} catch (final InvalidTemplateException e) {
+				// expected
+			}
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test04_IterationBudget()");
+	}
+
+	@Test
+	public void test05_DataKey() {
+		LOG.info("BEGIN: test05_DataKey()");
+		try {
+
+			// a top-level merge data key named data is a plain property
+			final Map<String, Object> data = data();
+			data.put("data", Collections.singletonMap("x", "inner"));
+			final StringWriter out = new StringWriter();
+			parser.parse("${data.x}/${$data.total}/${$data.data.x}/#{= get(get(data, \"data\"), \"x\")}").render(data, out);
+			assertEquals("inner/12/inner/inner", out.toString());
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test05_DataKey()");
+	}
+
+}
@@ -2,14 +2,22 @@ package org.jrb.docasm.service.document;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.jrb.docasm.Application;
 import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentChange;
+import org.jrb.docasm.domain.DocumentResidual;
+import org.jrb.docasm.repository.DocumentCriteria;
+import org.jrb.docasm.repository.DocumentRepositoryCustom.DocumentCallback;
+import org.jrb.docasm.repository.DocumentResidualRepository;
 import org.junit.FixMethodOrder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -45,6 +53,19 @@ public class DocumentServiceTest {
 
 	@Autowired
 	private DocumentService documentService;
+
+	@Autowired
+	private DocumentResidualRepository residualRepository;
+
+	private DocumentResidual awaitResidual(final Long id) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10000;
+		DocumentResidual residual;
+		while ((residual = residualRepository.findOne(id)) == null) {
+			assertTrue("Residual template was never saved", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+		return residual;
+	}
 	
 	private Document createDocument(final String name, final URI templateUri, final String description) throws IOException {
 		final Document document = documentService.createDocument(name, templateUri, description);
@@ -158,4 +179,293 @@ public class DocumentServiceTest {
 		LOG.info("END: test04_DeleteDocuments()");
 	}
 
+	@Test
+	public void test05_ExportDocuments() {
+		LOG.info("BEGIN: test05_ExportDocuments()");
+		try {
+
+			// export remaining documents, a fetch of two at a time
+			final List<Long> ids = new ArrayList<>();
+			documentService.exportDocuments(new DocumentCriteria.Builder().build(), 2, new DocumentCallback() {
+				@Override
+				public void processDocument(final Document document) {
+					ids.add(document.getId());
+				}
+			});
+			assertEquals(3, ids.size());
+			assertTrue(ids.get(0) < ids.get(1) && ids.get(1) < ids.get(2));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test05_ExportDocuments()");
+	}
+
+	@Test
+	public void test06_ImportDocuments() {
+		LOG.info("BEGIN: test06_ImportDocuments()");
+		try {
+
+			// import a mix of new, duplicate and invalid documents, two at a time
+			final List<Document> submitted = Arrays.asList(
+					new Document.Builder().setName("DOC_5").setTemplateUri(TEMPLATE1.getURI()).build(),
+					new Document.Builder().setName("DOC_2").setTemplateUri(TEMPLATE2.getURI()).build(),
+					new Document.Builder().setDescription("No name").build(),
+					new Document.Builder().setName("DOC_6").setTemplateUri(TEMPLATE2.getURI())
+							.setDescription("This is document #6").build(),
+					new Document.Builder().setName("DOC_6").build());
+			final List<Long> rejected = new ArrayList<>();
+			final List<Long> committed = new ArrayList<>();
+			final DocumentImportStatus status = documentService.importDocuments(
+					submitted.iterator(),
+					2,
+					new DocumentImportCallback() {
+						@Override
+						public void chunkCommitted(final DocumentImportStatus status) {
+							committed.add(status.getProcessed());
+						}
+
+						@Override
+						public void documentRejected(
+								final long record,
+								final Document document,
+								final DocumentImportStatus.Rejection reason) {
+							rejected.add(record);
+						}
+					});
+			assertEquals(5, status.getProcessed());
+			assertEquals(2, status.getImported());
+			assertEquals(2, status.getDuplicates());
+			assertEquals(1, status.getInvalid());
+			assertEquals(Arrays.asList(2L, 3L, 5L), rejected);
+			assertEquals(Arrays.asList(2L, 5L), committed);
+
+			// imported documents are stored like any other
+			final Document document = documentService.findDocument("DOC_5");
+			assertEquals(TEMPLATE1.getURI(), document.getTemplateUri());
+			assertNotNull(document.getTemplate());
+			assertEquals(Integer.valueOf(0), document.getVersion());
+			assertEquals("This is document #6", documentService.findDocument("DOC_6").getDescription());
+			assertEquals(5, documentService.retrieveDocuments(null).size());
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test06_ImportDocuments()");
+	}
+
+	@Test
+	public void test07_StoredTemplates() {
+		LOG.info("BEGIN: test07_StoredTemplates()");
+		try {
+
+			// create a document whose template is stored rather than fetched
+			final String text = "Hello ${data.name} from ${document.name}";
+			final Document created = documentService.createDocument(new Document.Builder()
+					.setName("DOC_7")
+					.setTemplate(text)
+					.build());
+			assertNotNull(created.getStoredTemplate());
+			assertEquals(Integer.valueOf(text.length()), created.getStoredTemplate().getLength());
+
+			// the stored template is read back without a template URI
+			final Document found = documentService.findDocument("DOC_7");
+			assertEquals(null, found.getTemplateUri());
+			assertEquals(text, found.getTemplate());
+
+			// pointing the document at a template URI replaces the stored template
+			documentService.updateDocument(new Document.Builder()
+					.from(found)
+					.setTemplateUri(TEMPLATE1.getURI())
+					.build());
+			final Document updated = documentService.findDocument("DOC_7");
+			assertEquals(TEMPLATE1.getURI(), updated.getTemplateUri());
+			assertTrue(!text.equals(updated.getTemplate()));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test07_StoredTemplates()");
+	}
+
+	@Test
+	public void test08_PatchDocuments() {
+		LOG.info("BEGIN: test08_PatchDocuments()");
+		try {
+
+			// patch a cached document without naming a version
+			final Document original = documentService.findDocument("DOC_2");
+			final Document patched = documentService.patchDocument(new Document.Builder()
+					.setId(original.getId())
+					.setDescription("Patched document #2")
+					.build());
+			assertEquals(original.getId(), patched.getId());
+			assertNotNull(patched.getUpdatedOn());
+
+			// the patched document is answered whole, with its new version
+			assertEquals("DOC_2", patched.getName());
+			assertEquals("Patched document #2", patched.getDescription());
+			assertEquals(TEMPLATE2.getURI(), patched.getTemplateUri());
+			assertEquals(original.getCreatedOn(), patched.getCreatedOn());
+			assertEquals(Integer.valueOf(original.getVersion() + 1), patched.getVersion());
+
+			// the cached copy is replaced by the patched document
+			final Document found = documentService.findDocument("DOC_2");
+			assertEquals("Patched document #2", found.getDescription());
+			assertEquals(Integer.valueOf(original.getVersion() + 1), found.getVersion());
+			assertEquals(TEMPLATE2.getURI(), found.getTemplateUri());
+
+			// a patch of a superseded version is refused
+			try {
+				documentService.patchDocument(new Document.Builder()
+						.setId(original.getId())
+						.setVersion(original.getVersion())
+						.setDescription("Stale")
+						.build());
+				fail("Unsuccessfully patched a stale document!");
+			} catch (final StaleDocumentException e) {
+			}
+
+			// a patch of the current version renames the document
+			documentService.patchDocument(new Document.Builder()
+					.setId(found.getId())
+					.setVersion(found.getVersion())
+					.setName("DOC_2_RENAMED")
+					.build());
+			assertEquals(found.getId(), documentService.findDocument("DOC_2_RENAMED").getId());
+			try {
+				documentService.findDocument("DOC_2");
+				fail("Unsuccessfully found a renamed document!");
+			} catch (final UnknownDocumentException e) {
+			}
+
+			// renaming onto another document is a duplicate
+			try {
+				documentService.patchDocument(new Document.Builder()
+						.setId(found.getId())
+						.setName("DOC_3")
+						.build());
+				fail("Unsuccessfully renamed onto a duplicate document!");
+			} catch (final DuplicateDocumentException e) {
+			}
+
+			// an unknown document cannot be patched
+			try {
+				documentService.patchDocument(new Document.Builder().setId(-1L).setDescription("None").build());
+				fail("Unsuccessfully patched an unknown document!");
+			} catch (final UnknownDocumentException e) {
+			}
+
+			// an empty patch changes nothing, not even the version
+			final Document renamed = documentService.findDocument("DOC_2_RENAMED");
+			final Document unchanged = documentService.patchDocument(new Document.Builder()
+					.setId(renamed.getId())
+					.build());
+			assertEquals(renamed.getVersion(), unchanged.getVersion());
+			assertEquals(renamed.getUpdatedOn(), unchanged.getUpdatedOn());
+			assertEquals(renamed.getVersion(), documentService.findDocumentVersion(renamed.getId()).getVersion());
+			try {
+				documentService.patchDocument(new Document.Builder()
+						.setId(renamed.getId())
+						.setVersion(original.getVersion())
+						.build());
+				fail("Unsuccessfully patched a stale document!");
+			} catch (final StaleDocumentException e) {
+			}
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test08_PatchDocuments()");
+	}
+
+	@Test
+	public void test09_DocumentChanges() {
+		LOG.info("BEGIN: test09_DocumentChanges()");
+		try {
+
+			// every change so far is logged in increasing sequence
+			final List<DocumentChange> changes = documentService.retrieveDocumentChanges(0L, 1000);
+			assertTrue(changes.size() > 0);
+			for (int i = 1; i < changes.size(); i++) {
+				assertTrue(changes.get(i).getSequence() > changes.get(i - 1).getSequence());
+			}
+
+			// a reader resuming from the last sequence sees only new changes
+			final Long last = changes.get(changes.size() - 1).getSequence();
+			assertEquals(0, documentService.retrieveDocumentChanges(last, 1000).size());
+			final Document created = createDocument("DOC_CHANGED", TEMPLATE1.getURI(), "Changed document");
+			final Document patched = documentService.patchDocument(new Document.Builder()
+					.setId(created.getId())
+					.setDescription("Patched changed document")
+					.build());
+			assertEquals("DOC_CHANGED", patched.getName());
+			assertEquals(Integer.valueOf(created.getVersion() + 1), patched.getVersion());
+			documentService.deleteDocument(created.getId());
+			final List<DocumentChange> since = documentService.retrieveDocumentChanges(last, 1000);
+			assertEquals(3, since.size());
+			assertEquals(DocumentChange.Type.CREATED, since.get(0).getType());
+			assertEquals("DOC_CHANGED", since.get(0).getDocumentName());
+			assertEquals(DocumentChange.Type.UPDATED, since.get(1).getType());
+			assertEquals("DOC_CHANGED", since.get(1).getDocumentName());
+			assertEquals(patched.getVersion(), since.get(1).getDocumentVersion());
+			assertEquals(DocumentChange.Type.DELETED, since.get(2).getType());
+			for (final DocumentChange change : since) {
+				assertEquals(created.getId(), change.getDocumentId());
+			}
+
+			// the range is bounded by the limit
+			assertEquals(2, documentService.retrieveDocumentChanges(last, 2).size());
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test09_DocumentChanges()");
+	}
+
+	@Test
+	public void test10_ResidualTemplates() {
+		LOG.info("BEGIN: test10_ResidualTemplates()");
+		try {
+
+			// the residual of a stored template is saved once the document is written
+			final Document created = documentService.createDocument(new Document.Builder()
+					.setName("DOC_RESIDUAL")
+					.setTemplate("Hello ${name} from ${$document.name}")
+					.build());
+			final DocumentResidual residual = awaitResidual(created.getId());
+			assertEquals(created.getVersion(), residual.getDocumentVersion());
+			assertEquals("Hello ${$data.name} from DOC_RESIDUAL", residual.getTemplate().getText());
+
+			// a residual is kept over that of an earlier version
+			final Integer next = created.getVersion() + 1;
+			documentService.saveResidualTemplate(created.getId(), next, "Hello ${$data.name}!");
+			documentService.saveResidualTemplate(created.getId(), created.getVersion(), "Stale");
+			assertEquals(next, residualRepository.findOne(created.getId()).getDocumentVersion());
+
+			// the residual is loaded with the document version it was saved for
+			documentService.patchDocument(new Document.Builder()
+					.setId(created.getId())
+					.setDescription("Patched residual")
+					.build());
+			final Document patched = documentService.findDocument(created.getId());
+			assertEquals(next, patched.getVersion());
+			assertEquals("Hello ${$data.name}!", patched.getResidualTemplate());
+
+			// and deleted with its document
+			documentService.deleteDocument(created.getId());
+			assertEquals(null, residualRepository.findOne(created.getId()));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test10_ResidualTemplates()");
+	}
+
 }
@@ -0,0 +1,326 @@
+package org.jrb.docasm.service.document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.jrb.docasm.Application;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentChange;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.repository.DocumentCriteria;
+import org.jrb.docasm.repository.DocumentRepositoryCustom.DocumentCallback;
+import org.jrb.docasm.repository.DocumentShards;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.SpringApplicationContextLoader;
+import org.springframework.context.ApplicationContextInitializer;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Unit test cases for {@link DocumentServiceImpl} over a catalogue partitioned
+ * across three local HSQLDB databases.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(
+		classes = Application.class,
+		loader = SpringApplicationContextLoader.class,
+		initializers = DocumentShardingTest.ShardEnabler.class)
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class DocumentShardingTest {
+
+	public static class ShardEnabler implements ApplicationContextInitializer<ConfigurableApplicationContext> {
+		@Override
+		public void initialize(final ConfigurableApplicationContext context) {
+			context.getEnvironment().getPropertySources().addFirst(new MapPropertySource(
+					"shards",
+					Collections.<String, Object> singletonMap(
+							"document.storage.shards",
+							"jdbc:hsqldb:mem:shard1,jdbc:hsqldb:mem:shard2")));
+		}
+	}
+
+	private final static Logger LOG = LoggerFactory.getLogger(DocumentShardingTest.class);
+
+	private final static int CREATED = 12;
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private DocumentShards shards;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Test
+	public void test01_CreateDocuments() {
+		LOG.info("BEGIN: test01_CreateDocuments()");
+		try {
+
+			assertEquals(3, shards.getCount());
+			final Set<Integer> used = new HashSet<>();
+			for (int i = 0; i < CREATED; i++) {
+				final String name = "SHARDED_" + i;
+				final Document document = documentService.createDocument(new Document.Builder()
+						.setName(name)
+						.setDescription("Sharded document #" + i)
+						.setTemplate("Document " + name)
+						.build());
+				assertEquals(shards.shardOf(name), shards.shardOf(document.getId()));
+				used.add(shards.shardOf(document.getId()));
+
+				assertEquals(name, documentService.findDocument(document.getId()).getName());
+				assertEquals(document.getId(), documentService.findDocument(name).getId());
+				assertEquals("Document " + name, documentService.findDocument(name).getTemplate());
+			}
+			assertEquals(3, used.size());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_CreateDocuments()");
+	}
+
+	@Test
+	public void test02_RetrieveDocuments() {
+		LOG.info("BEGIN: test02_RetrieveDocuments()");
+		try {
+
+			assertEquals(CREATED, documentService.retrieveDocuments(null).size());
+
+			// keyset pages cross shard boundaries in identifier order
+			final List<Long> ids = new ArrayList<>();
+			Long afterId = null;
+			List<DocumentSummary> page;
+			do {
+				page = documentService.retrieveDocumentSummaries(new DocumentCriteria.Builder()
+						.setAfterId(afterId)
+						.setLimit(5)
+						.build());
+				for (final DocumentSummary summary : page) {
+					assertTrue(afterId == null || summary.getId() > afterId);
+					afterId = summary.getId();
+					ids.add(afterId);
+				}
+			} while (page.size() == 5);
+			assertEquals(CREATED, ids.size());
+
+			// offset pages are merged in the order of their sort
+			final List<String> names = new ArrayList<>();
+			for (int i = 0; i < CREATED; i++) {
+				names.add("SHARDED_" + i);
+			}
+			Collections.sort(names);
+			final Page<Document> documents = documentService.retrieveDocuments(null,
+					new PageRequest(1, 5, new Sort("name")));
+			assertEquals(CREATED, documents.getTotalElements());
+			assertEquals(5, documents.getContent().size());
+			for (int i = 0; i < 5; i++) {
+				assertEquals(names.get(5 + i), documents.getContent().get(i).getName());
+			}
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_RetrieveDocuments()");
+	}
+
+	@Test
+	public void test03_ImportDocuments() {
+		LOG.info("BEGIN: test03_ImportDocuments()");
+		try {
+
+			final List<Document> submitted = new ArrayList<>();
+			for (int i = 0; i < 20; i++) {
+				submitted.add(new Document.Builder().setName("IMPORTED_" + i).setDescription("Imported").build());
+			}
+			submitted.add(new Document.Builder().setName("SHARDED_0").build());
+			submitted.add(new Document.Builder().setName("IMPORTED_3").build());
+
+			final List<Long> rejected = new ArrayList<>();
+			final DocumentImportStatus status = documentService.importDocuments(
+					submitted.iterator(),
+					8,
+					new DocumentImportCallback() {
+						@Override
+						public void chunkCommitted(final DocumentImportStatus status) {
+						}
+
+						@Override
+						public void documentRejected(
+								final long record,
+								final Document document,
+								final DocumentImportStatus.Rejection reason) {
+							rejected.add(record);
+						}
+					});
+			assertEquals(20, status.getImported());
+			assertEquals(2, rejected.size());
+			for (int i = 0; i < 20; i++) {
+				final Document document = documentService.findDocument("IMPORTED_" + i);
+				assertNotNull(document);
+				assertEquals(shards.shardOf(document.getName()), shards.shardOf(document.getId()));
+			}
+
+			// every creation is recorded in the change log of the home shard
+			final Set<Long> created = new HashSet<>();
+			for (final DocumentChange change : documentService.retrieveDocumentChanges(0L, 1000)) {
+				if (change.getType() == DocumentChange.Type.CREATED) {
+					created.add(change.getDocumentId());
+				}
+			}
+			assertEquals(CREATED + 20, created.size());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_ImportDocuments()");
+	}
+
+	@Test
+	public void test04_ExportDocuments() {
+		LOG.info("BEGIN: test04_ExportDocuments()");
+		try {
+
+			final List<Long> ids = new ArrayList<>();
+			documentService.exportDocuments(new DocumentCriteria.Builder().build(), 3, new DocumentCallback() {
+				@Override
+				public void processDocument(final Document document) {
+					ids.add(document.getId());
+				}
+			});
+			assertEquals(CREATED + 20, ids.size());
+			for (int i = 1; i < ids.size(); i++) {
+				assertTrue(ids.get(i) > ids.get(i - 1));
+			}
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test04_ExportDocuments()");
+	}
+
+	@Test
+	public void test05_ChangeDocuments() {
+		LOG.info("BEGIN: test05_ChangeDocuments()");
+		try {
+
+			final Document document = documentService.findDocument("SHARDED_1");
+			String moved = null;
+			for (int i = 0; moved == null; i++) {
+				if (shards.shardOf("RENAMED_" + i) != shards.shardOf(document.getId())) {
+					moved = "RENAMED_" + i;
+				}
+			}
+			try {
+				documentService.patchDocument(new Document.Builder().setId(document.getId()).setName(moved).build());
+				fail("Renamed document to another shard");
+			} catch (final InvalidDocumentException e) {
+				// expected
+			}
+
+			final Document patched = documentService.patchDocument(new Document.Builder()
+					.setId(document.getId())
+					.setDescription("Patched sharded document")
+					.build());
+			assertEquals("Patched sharded document",
+					documentService.findDocument(patched.getId()).getDescription());
+
+			documentService.deleteDocument(document.getId());
+			try {
+				documentService.findDocument(document.getId());
+				fail("Found deleted document");
+			} catch (final UnknownDocumentException e) {
+				// expected
+			}
+			final List<DocumentChange> changes = documentService.retrieveDocumentChanges(0L, 1000);
+			assertEquals(DocumentChange.Type.DELETED, changes.get(changes.size() - 1).getType());
+			assertEquals(document.getId(), changes.get(changes.size() - 1).getDocumentId());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test05_ChangeDocuments()");
+	}
+
+	@Test
+	public void test06_RolledBackChanges() {
+		LOG.info("BEGIN: test06_RolledBackChanges()");
+		try {
+
+			String name = null;
+			for (int i = 2; name == null; i++) {
+				if (shards.shardOf("SHARDED_" + i) != DocumentShards.HOME) {
+					name = "SHARDED_" + i;
+				}
+			}
+			final Document document = documentService.findDocument(name);
+			final int shard = shards.shardOf(document.getId());
+			final List<DocumentChange> before = documentService.retrieveDocumentChanges(0L, 1000);
+
+			// a change to another shard that rolls back leaves no trace in the change log
+			try (final DocumentShards.Binding binding = DocumentShards.bind(shard)) {
+				new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+					@Override
+					protected void doInTransactionWithoutResult(final TransactionStatus transaction) {
+						documentService.patchDocument(new Document.Builder()
+								.setId(document.getId())
+								.setDescription("Rolled back")
+								.build());
+						transaction.setRollbackOnly();
+					}
+				});
+			}
+			assertEquals(document.getDescription(), documentService.findDocument(document.getId()).getDescription());
+			assertEquals(before.size(), documentService.retrieveDocumentChanges(0L, 1000).size());
+
+			// once committed, it is recorded
+			documentService.patchDocument(new Document.Builder()
+					.setId(document.getId())
+					.setDescription("Committed")
+					.build());
+			final List<DocumentChange> after = documentService.retrieveDocumentChanges(0L, 1000);
+			assertEquals(before.size() + 1, after.size());
+			assertEquals(document.getId(), after.get(after.size() - 1).getDocumentId());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test06_RolledBackChanges()");
+	}
+
+}
@@ -0,0 +1,133 @@
+package org.jrb.docasm.service.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link InvertedIndex}.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class InvertedIndexTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(InvertedIndexTest.class);
+
+	private Map<String, Float> frequencies(final String... terms) {
+		final Map<String, Float> frequencies = new HashMap<>();
+		for (final String term : terms) {
+			final Float frequency = frequencies.get(term);
+			frequencies.put(term, (frequency != null) ? frequency + 1 : 1f);
+		}
+		return frequencies;
+	}
+
+	private Long[] ids(final List<InvertedIndex.Hit> hits) {
+		final Long[] ids = new Long[hits.size()];
+		for (int i = 0; i < ids.length; i++) {
+			ids[i] = hits.get(i).getId();
+		}
+		return ids;
+	}
+
+	@Test
+	public void test01_Rank() {
+		LOG.info("BEGIN: test01_Rank()");
+		try {
+
+			final InvertedIndex index = new InvertedIndex();
+			index.put(1L, frequencies("invoice", "letter"));
+			index.put(2L, frequencies("invoice", "invoice", "notice"));
+			index.put(3L, frequencies("welcome", "letter"));
+
+			// entries matching more, and rarer, terms rank first
+			InvertedIndex.Result result = index.search(Arrays.asList("invoice", "letter"), 0, 10);
+			assertEquals(3, result.getTotal());
+			assertEquals(1L, (long) result.getHits().get(0).getId());
+
+			// ties rank by identifier, and pages are cut from the ranking
+			result = index.search(Collections.singletonList("letter"), 1, 1);
+			assertEquals(2, result.getTotal());
+			assertEquals(Arrays.asList(3L), Arrays.asList(ids(result.getHits())));
+
+			// unknown terms match nothing
+			assertEquals(0, index.search(Collections.singletonList("missing"), 0, 10).getTotal());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_Rank()");
+	}
+
+	@Test
+	public void test02_ManyEntries() {
+		LOG.info("BEGIN: test02_ManyEntries()");
+		try {
+
+			// one rare term among many entries, most of them since retired
+			final InvertedIndex index = new InvertedIndex();
+			for (long id = 0; id < 5000; id++) {
+				index.put(id, frequencies("common", (id % 1000 == 0) ? "rare" : "other"));
+			}
+			for (long id = 0; id < 4000; id++) {
+				index.remove(id);
+			}
+			index.put(4500L, frequencies("rare"));
+			assertEquals(1000, index.size());
+
+			final InvertedIndex.Result rare = index.search(Arrays.asList("rare", "absent"), 0, 10);
+			assertEquals(2, rare.getTotal());
+			assertEquals(Arrays.asList(4500L, 4000L), Arrays.asList(ids(rare.getHits())));
+
+			final InvertedIndex.Result common = index.search(Arrays.asList("common", "rare"), 0, 1000);
+			assertEquals(1000, common.getTotal());
+			assertEquals(1000, common.getHits().size());
+			for (int i = 1; i < common.getHits().size(); i++) {
+				assertTrue(common.getHits().get(i - 1).getScore() >= common.getHits().get(i).getScore());
+			}
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_ManyEntries()");
+	}
+
+	@Test
+	public void test03_PageBeyondHits() {
+		LOG.info("BEGIN: test03_PageBeyondHits()");
+		try {
+
+			final InvertedIndex index = new InvertedIndex();
+			index.put(1L, frequencies("invoice"));
+			index.put(2L, frequencies("invoice", "letter"));
+
+			// a huge offset neither sizes the ranking queue nor overflows
+			for (final long offset : new long[] { 2L, 20000000L * 100, (long) Integer.MAX_VALUE * 100 }) {
+				final InvertedIndex.Result result = index.search(Collections.singletonList("invoice"), offset, 100);
+				assertEquals(2, result.getTotal());
+				assertTrue(result.getHits().isEmpty());
+			}
+
+			// a limit beyond the hits returns them all
+			assertEquals(2, index.search(Collections.singletonList("invoice"), 0, Integer.MAX_VALUE).getHits().size());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_PageBeyondHits()");
+	}
+
+}
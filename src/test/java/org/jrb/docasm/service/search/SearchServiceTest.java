@@ -0,0 +1,209 @@
+package org.jrb.docasm.service.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jrb.docasm.Application;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.domain.DocumentSummary;
+import org.jrb.docasm.service.document.DocumentService;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+/**
+ * Unit test cases for {@link SearchServiceImpl}.
+ * 
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ * 
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = Application.class)
+@ActiveProfiles("LOCAL")
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class SearchServiceTest {
+
+	private final static Logger LOG = LoggerFactory.getLogger(SearchServiceTest.class);
+
+	private final static Resource TEMPLATE = new ClassPathResource("templates/test.xml");
+
+	@Autowired
+	private DocumentService documentService;
+
+	@Autowired
+	private SearchService searchService;
+
+	private void createDocument(final String name, final String template, final String description) {
+		documentService.createDocument(new Document.Builder()
+				.setName(name)
+				.setTemplate(template)
+				.setDescription(description)
+				.build());
+	}
+
+	private List<String> completeNames(final String prefix, final int limit) {
+		final List<String> names = new ArrayList<>();
+		for (final DocumentSummary summary : searchService.completeNames(prefix, limit)) {
+			names.add(summary.getName());
+		}
+		return names;
+	}
+
+	private List<String> awaitSearch(final String query, final List<String> expected) throws InterruptedException {
+		final long deadline = System.currentTimeMillis() + 10000;
+		List<String> names;
+		while (!(names = search(query)).equals(expected) && System.currentTimeMillis() < deadline) {
+			Thread.sleep(10);
+		}
+		return names;
+	}
+
+	private List<String> search(final String query) {
+		final List<String> names = new ArrayList<>();
+		for (final DocumentSearchHit hit : searchService.searchDocuments(query, new PageRequest(0, 10))) {
+			names.add(hit.getName());
+		}
+		return names;
+	}
+
+	@Test
+	public void test01_SearchDocuments() {
+		LOG.info("BEGIN: test01_SearchDocuments()");
+		try {
+
+			createDocument("SEARCH_1", "Dear ${data.name}, your invoice is attached.", "Invoice cover letter");
+			createDocument("SEARCH_2", "Your order has shipped. Invoice to follow.", "Shipping notice");
+			createDocument("SEARCH_3", "Welcome aboard!", "Welcome letter");
+
+			// description terms outrank template terms
+			assertEquals(Arrays.asList("SEARCH_1", "SEARCH_2"), search("invoice"));
+
+			// terms are matched regardless of case, and hits match any term
+			assertEquals(Arrays.asList("SEARCH_3", "SEARCH_1"), search("WELCOME letter"));
+
+			// template directives are not indexed
+			assertEquals(Arrays.asList(), search("data"));
+
+			// hits are paged, with the total number of matches
+			final Page<DocumentSearchHit> page = searchService.searchDocuments("letter", new PageRequest(1, 1));
+			assertEquals(2, page.getTotalElements());
+			assertEquals(1, page.getNumberOfElements());
+
+			// pages far beyond the hits are empty, even where their offset overflows an int
+			for (final int number : new int[] { 20000000, Integer.MAX_VALUE }) {
+				final Page<DocumentSearchHit> beyond = searchService.searchDocuments("letter", new PageRequest(number, 100));
+				assertEquals(0, beyond.getNumberOfElements());
+			}
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_SearchDocuments()");
+	}
+
+	@Test
+	public void test02_ReindexDocuments() {
+		LOG.info("BEGIN: test02_ReindexDocuments()");
+		try {
+
+			// a patched description is re-indexed, keeping the template terms
+			final Document document = documentService.findDocument("SEARCH_3");
+			documentService.patchDocument(new Document.Builder()
+					.setId(document.getId())
+					.setDescription("Onboarding note")
+					.build());
+			assertEquals(Arrays.asList("SEARCH_1"), search("letter"));
+			assertEquals(Arrays.asList("SEARCH_3"), search("onboarding"));
+			assertEquals(Arrays.asList("SEARCH_3"), search("aboard"));
+
+			// a deleted document is no longer found
+			documentService.deleteDocument("SEARCH_1");
+			assertEquals(Arrays.asList("SEARCH_2"), search("invoice"));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_ReindexDocuments()");
+	}
+
+	@Test
+	public void test03_CompleteNames() {
+		LOG.info("BEGIN: test03_CompleteNames()");
+		try {
+
+			createDocument("Search_4", "Fourth", "Mixed case name");
+
+			// names are completed in order, ignoring case, up to the limit
+			assertEquals(Arrays.asList("SEARCH_2", "SEARCH_3", "Search_4"), completeNames("search_", 10));
+			assertEquals(Arrays.asList("SEARCH_2", "SEARCH_3"), completeNames("SEARCH", 2));
+			assertEquals(Arrays.asList(), completeNames("SEARCH_1", 10));
+
+			// a renamed document is completed by its new name only
+			final Document document = documentService.findDocument("SEARCH_3");
+			documentService.patchDocument(new Document.Builder()
+					.setId(document.getId())
+					.setName("RENAMED_3")
+					.build());
+			assertEquals(Arrays.asList("SEARCH_2", "Search_4"), completeNames("search_", 10));
+			assertEquals(Arrays.asList("RENAMED_3"), completeNames("ren", 10));
+
+			// a deleted document is no longer completed
+			documentService.deleteDocument("Search_4");
+			assertEquals(Arrays.asList("SEARCH_2"), completeNames("search_", 10));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_CompleteNames()");
+	}
+
+	@Test
+	public void test04_FetchTemplates() {
+		LOG.info("BEGIN: test04_FetchTemplates()");
+		try {
+
+			// a template fetched from its URI is indexed after the commit
+			final Document document = documentService.createDocument(
+					"SEARCH_FETCHED",
+					TEMPLATE.getURI(),
+					"Fetched template");
+			assertEquals(Arrays.asList("SEARCH_FETCHED"), search("fetched"));
+			assertEquals(Arrays.asList("SEARCH_FETCHED"), awaitSearch("field", Arrays.asList("SEARCH_FETCHED")));
+
+			// and its terms stand until the fetched template replaces them
+			documentService.updateDocument(new Document.Builder()
+					.from(document)
+					.setDescription("Refetched template")
+					.build());
+			assertEquals(Arrays.asList("SEARCH_FETCHED"), search("refetched"));
+			assertEquals(Arrays.asList("SEARCH_FETCHED"), search("field"));
+
+		} catch (Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test04_FetchTemplates()");
+	}
+
+}
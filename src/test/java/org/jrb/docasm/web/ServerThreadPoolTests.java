@@ -0,0 +1,73 @@
+package org.jrb.docasm.web;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Unit test cases for {@link ServerThreadPool}.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+public class ServerThreadPoolTests {
+
+	private final static Logger LOG = LoggerFactory.getLogger(ServerThreadPoolTests.class);
+
+	@Test
+	public void testBoundedQueue() {
+		LOG.info("BEGIN: testBoundedQueue()");
+		final ServerThreadPool threadPool = new ServerThreadPool(2);
+		threadPool.setMinThreads(1);
+		threadPool.setMaxThreads(1);
+		final CountDownLatch started = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		try {
+
+			threadPool.start();
+			final Runnable blocker = new Runnable() {
+				@Override
+				public void run() {
+					started.countDown();
+					try {
+						release.await();
+					} catch (final InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			};
+			assertTrue(threadPool.dispatch(blocker));
+			assertTrue(started.await(5, TimeUnit.SECONDS));
+			assertEquals(1, threadPool.getBusyThreads());
+			assertEquals(1.0, threadPool.getUtilisation(), 0.0);
+
+			// the queue holds two requests, and the third is turned away
+			assertTrue(threadPool.dispatch(blocker));
+			assertTrue(threadPool.dispatch(blocker));
+			assertEquals(2, threadPool.getQueueSize());
+			assertEquals(2, threadPool.getQueueCapacity());
+			assertFalse(threadPool.dispatch(blocker));
+			assertEquals(1, threadPool.getRejected());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		} finally {
+			release.countDown();
+			try {
+				threadPool.stop();
+			} catch (final Exception e) {
+				LOG.warn(e.getMessage(), e);
+			}
+		}
+		LOG.info("END: testBoundedQueue()");
+	}
+
+}
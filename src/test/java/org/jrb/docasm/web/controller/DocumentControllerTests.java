@@ -0,0 +1,221 @@
+package org.jrb.docasm.web.controller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.fail;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+import java.util.Date;
+
+import org.jrb.commons.web.KeysetCursor;
+import org.jrb.docasm.Application;
+import org.jrb.docasm.domain.Document;
+import org.jrb.docasm.service.document.DocumentService;
+import org.junit.Before;
+import org.junit.FixMethodOrder;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.MethodSorters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.test.annotation.DirtiesContext;
+import org.springframework.test.annotation.DirtiesContext.ClassMode;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.context.web.WebAppConfiguration;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.RequestPostProcessor;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.WebApplicationContext;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import com.jayway.jsonpath.JsonPath;
+
+/**
+ * Unit test cases for {@link DocumentController}.
+ *
+ * @author <a href="mailto:brulejr@gmail.com">Jon Brule</a>
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@WebAppConfiguration
+@ContextConfiguration(classes = Application.class)
+@ActiveProfiles("LOCAL")
+@DirtiesContext(classMode = ClassMode.AFTER_CLASS)
+@FixMethodOrder(MethodSorters.NAME_ASCENDING)
+public class DocumentControllerTests {
+
+	private final static Logger LOG = LoggerFactory.getLogger(DocumentControllerTests.class);
+
+	private final static long ASYNC_TIMEOUT = 5000;
+
+	@Autowired
+	private WebApplicationContext wac;
+
+	@Autowired
+	private DocumentService documentService;
+
+	private MockMvc mockMvc;
+
+	@Before
+	public void setup() {
+		this.mockMvc = MockMvcBuilders.webAppContextSetup(this.wac).build();
+	}
+
+	private ResultActions perform(final MockHttpServletRequestBuilder builder) throws Exception {
+		final MvcResult started = mockMvc.perform(builder)
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		started.getAsyncResult(ASYNC_TIMEOUT);
+		return mockMvc.perform(asyncDispatch(started));
+	}
+
+	@Test
+	public void test01_FindDocumentConditionally() {
+		LOG.info("BEGIN: test01_FindDocumentConditionally()");
+		try {
+
+			final Document document = documentService.createDocument(new Document.Builder()
+					.setName("CONDITIONAL")
+					.setTemplate("Conditional document")
+					.build());
+			final String uri = "/api/document/" + document.getId();
+
+			final MvcResult found = perform(get(uri))
+					.andExpect(status().isOk())
+					.andExpect(header().string("ETag", "\"" + document.getVersion() + "\""))
+					.andExpect(jsonPath("$.entity.name").value("CONDITIONAL"))
+					.andReturn();
+			final String etag = found.getResponse().getHeader("ETag");
+			final String lastModified = found.getResponse().getHeader("Last-Modified");
+			assertNotNull(lastModified);
+			final HttpHeaders headers = new HttpHeaders();
+			headers.set("Last-Modified", lastModified);
+			final Date modifiedSince = new Date(headers.getLastModified());
+
+			perform(get(uri).header("If-None-Match", etag))
+					.andExpect(status().isNotModified())
+					.andExpect(header().string("ETag", etag))
+					.andExpect(content().string(""));
+			perform(get(uri).header("If-Modified-Since", modifiedSince))
+					.andExpect(status().isNotModified());
+			perform(get(uri).header("If-None-Match", "\"-1\"").header("If-Modified-Since", modifiedSince))
+					.andExpect(status().isOk());
+
+			documentService.patchDocument(new Document.Builder()
+					.setId(document.getId())
+					.setDescription("Patched conditional document")
+					.build());
+			final MvcResult changed = perform(get(uri).header("If-None-Match", etag))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.entity.description").value("Patched conditional document"))
+					.andReturn();
+			assertEquals(
+					"\"" + documentService.findDocument(document.getId()).getVersion() + "\"",
+					changed.getResponse().getHeader("ETag"));
+			assertNotEquals(etag, changed.getResponse().getHeader("ETag"));
+
+			perform(get("/api/document/" + Long.MAX_VALUE).header("If-None-Match", etag))
+					.andExpect(status().isNotFound());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test01_FindDocumentConditionally()");
+	}
+
+	@Test
+	public void test02_CreateDocumentLinks() {
+		LOG.info("BEGIN: test02_CreateDocumentLinks()");
+		try {
+
+			final MvcResult created = mockMvc.perform(post("/api/document")
+					.contentType(MediaType.APPLICATION_JSON)
+					.content("{\"name\":\"LINKED\",\"template\":\"Linked document\"}"))
+					.andExpect(status().isCreated())
+					.andExpect(jsonPath("$.links[0].rel").value("self"))
+					.andExpect(jsonPath("$.links[1].rel").value("documents"))
+					.andExpect(jsonPath("$.links[1].href").value("http://localhost/api/document"))
+					.andReturn();
+			final Long id = documentService.findDocument("LINKED").getId();
+			assertEquals("http://localhost/api/document/" + id, created.getResponse().getHeader("Location"));
+
+			// links follow the host each request was addressed to
+			for (final String host : new String[] { "docasm.example.com", "localhost" }) {
+				perform(get("/api/document/" + id).with(new RequestPostProcessor() {
+					@Override
+					public MockHttpServletRequest postProcessRequest(final MockHttpServletRequest request) {
+						request.setServerName(host);
+						return request;
+					}
+				}))
+						.andExpect(status().isOk())
+						.andExpect(jsonPath("$.links[0].rel").value("documents"))
+						.andExpect(jsonPath("$.links[0].href").value("http://" + host + "/api/document"));
+			}
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test02_CreateDocumentLinks()");
+	}
+
+	@Test
+	public void test03_RetrieveDocumentPages() {
+		LOG.info("BEGIN: test03_RetrieveDocumentPages()");
+		try {
+
+			for (int i = 0; i < 3; i++) {
+				documentService.createDocument(new Document.Builder()
+						.setName("PAGED_" + i)
+						.setTemplate("Paged document")
+						.build());
+			}
+
+			// a full page links to the next by an opaque cursor
+			final MvcResult first = mockMvc.perform(get("/api/document").param("name", "PAGED_").param("limit", "2"))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.content[0].name").value("PAGED_0"))
+					.andExpect(jsonPath("$.content[1].name").value("PAGED_1"))
+					.andExpect(jsonPath("$.links[0].rel").value("next"))
+					.andReturn();
+			final String next = JsonPath.read(first.getResponse().getContentAsString(), "$.links[0].href");
+			final String cursor = UriComponentsBuilder.fromUriString(next).build().getQueryParams().getFirst("after");
+			assertEquals(documentService.findDocument("PAGED_1").getId(), KeysetCursor.decode(cursor));
+
+			// the last page has no next link
+			mockMvc.perform(get(next))
+					.andExpect(status().isOk())
+					.andExpect(jsonPath("$.content[0].name").value("PAGED_2"))
+					.andExpect(jsonPath("$.content[1]").doesNotExist())
+					.andExpect(jsonPath("$.links").doesNotExist());
+
+			// a malformed cursor is refused
+			mockMvc.perform(get("/api/document").param("after", "not-a-cursor"))
+					.andExpect(status().isBadRequest());
+
+		} catch (final Throwable t) {
+			LOG.error(t.getMessage(), t);
+			fail(t.getMessage());
+		}
+		LOG.info("END: test03_RetrieveDocumentPages()");
+	}
+
+}
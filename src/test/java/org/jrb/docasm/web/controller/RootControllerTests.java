@@ -22,12 +22,15 @@
  */
 package org.jrb.docasm.web.controller;
 
+import static org.hamcrest.Matchers.notNullValue;
 import static org.junit.Assert.fail;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
+import org.jrb.commons.web.AbstractResponse;
 import org.jrb.docasm.Application;
 import org.jrb.docasm.web.controller.RootController;
 import org.junit.Before;
@@ -60,6 +63,12 @@ public class RootControllerTests {
 
 	private final static Logger LOG = LoggerFactory.getLogger(RootControllerTests.class);
 
+	@Autowired
+	private String product;
+
+	@Autowired
+	private String version;
+
 	@Autowired
 	private WebApplicationContext wac;
 
@@ -79,7 +88,12 @@ public class RootControllerTests {
 			        .andExpect(status().isOk())
 			        .andExpect(content().contentType("application/json;charset=UTF-8"))
 			        .andExpect(jsonPath("$.links").isArray())
-			        .andExpect(jsonPath("$.message").exists());
+			        .andExpect(jsonPath("$.message").exists())
+			        .andExpect(header().string(AbstractResponse.HEADER_PRODUCT, product))
+			        .andExpect(header().string(AbstractResponse.HEADER_VERSION, version))
+			        .andExpect(header().string(AbstractResponse.HEADER_STATUS, "200"))
+			        .andExpect(header().string(AbstractResponse.HEADER_ELAPSED_TIME, notNullValue()))
+			        .andExpect(header().string(AbstractResponse.HEADER_START_TIME, notNullValue()));
 
 		} catch (final Throwable t) {
 			LOG.error(t.getMessage(), t);